@@ -0,0 +1,247 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.bqt.client.QueryTest;
+import org.jboss.bqt.client.xml.TagNames;
+import org.jboss.bqt.client.xml.XMLQueryVisitationStrategy;
+import org.jboss.bqt.core.xml.JdomHelper;
+import org.jboss.bqt.framework.resultsreaders.ResultSetReader;
+import org.jboss.bqt.framework.util.AssertResults;
+import org.jdom2.CDATA;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.output.XMLOutputter;
+
+/**
+ * Builds the data of the benchmarks: rows of an integer, a string, a decimal and a
+ * double column, a result set that returns them, and the files BQT reads.  The first
+ * column repeats every 1000 rows, so sorting on the first columns compares the nested ones.
+ */
+final class BenchmarkData {
+
+	static final String SCENARIO_ID = "benchmark_scenario"; //$NON-NLS-1$
+	static final String QUERY_SET_ID = "benchmark_queries"; //$NON-NLS-1$
+
+	static final String[] NAMES = {"GROUP_ID", "NAME", "AMOUNT", "RATIO"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	static final String[] TYPE_NAMES = {"integer", "string", "bigdecimal", "double"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	private static final int[] TYPES = {Types.INTEGER, Types.VARCHAR, Types.DECIMAL, Types.DOUBLE};
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * Each call returns new, equal, values, so the compare cannot take the identity shortcut.
+	 * @param count
+	 * @return the rows, in the order of the row number
+	 */
+	static List<List<Object>> rows(int count) {
+		List<List<Object>> rows = new ArrayList<List<Object>>(count);
+		for (int i = 0; i < count; i++) {
+			List<Object> row = new ArrayList<Object>(NAMES.length);
+			row.add(Integer.valueOf(i % 1000));
+			row.add("name_" + i); //$NON-NLS-1$
+			row.add(BigDecimal.valueOf(i * 100L + 99, 2));
+			row.add(Double.valueOf(i / 7d));
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * @param rows
+	 * @return a copy of the rows, in a random but repeatable order
+	 */
+	static List<List<Object>> shuffled(List<List<Object>> rows) {
+		List<List<Object>> copy = new ArrayList<List<Object>>(rows);
+		Collections.shuffle(copy, new Random(rows.size()));
+		return copy;
+	}
+
+	static List<String> identifiers() {
+		List<String> identifiers = new ArrayList<String>(NAMES.length);
+		Collections.addAll(identifiers, NAMES);
+		return identifiers;
+	}
+
+	static List<String> typeNames() {
+		List<String> types = new ArrayList<String>(TYPE_NAMES.length);
+		Collections.addAll(types, TYPE_NAMES);
+		return types;
+	}
+
+	static QueryTest queryTest() {
+		return new QueryTest(SCENARIO_ID, QUERY_SET_ID, "Query1", null); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns a forward only result set over the rows, which costs little more than
+	 * iterating the list, so the benchmarks measure BQT and not a driver.
+	 * @param rows
+	 * @return ResultSet
+	 */
+	static ResultSet resultSet(final List<List<Object>> rows) {
+		final ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(
+				ResultSetMetaData.class.getClassLoader(), new Class<?>[] { ResultSetMetaData.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if ("getColumnCount".equals(name)) { //$NON-NLS-1$
+							return NAMES.length;
+						} else if ("getColumnName".equals(name) || "getColumnLabel".equals(name)) { //$NON-NLS-1$ //$NON-NLS-2$
+							return NAMES[(Integer) args[0] - 1];
+						} else if ("getColumnTypeName".equals(name)) { //$NON-NLS-1$
+							return TYPE_NAMES[(Integer) args[0] - 1];
+						} else if ("getColumnType".equals(name)) { //$NON-NLS-1$
+							return TYPES[(Integer) args[0] - 1];
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class }, new InvocationHandler() {
+					private int row = -1;
+					private boolean closed = false;
+
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if ("next".equals(name)) { //$NON-NLS-1$
+							return ++row < rows.size();
+						} else if ("getObject".equals(name)) { //$NON-NLS-1$
+							return rows.get(row).get((Integer) args[0] - 1);
+						} else if ("getMetaData".equals(name)) { //$NON-NLS-1$
+							return metaData;
+						} else if ("getType".equals(name)) { //$NON-NLS-1$
+							return ResultSet.TYPE_FORWARD_ONLY;
+						} else if ("getRow".equals(name)) { //$NON-NLS-1$
+							return row + 1;
+						} else if ("isClosed".equals(name)) { //$NON-NLS-1$
+							return closed;
+						} else if ("close".equals(name)) { //$NON-NLS-1$
+							closed = true;
+							return null;
+						} else if ("wasNull".equals(name)) { //$NON-NLS-1$
+							return Boolean.FALSE;
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+
+	/**
+	 * Writes the expected results file of the rows, as the generate result mode does.
+	 * @param dir
+	 * @param rows
+	 * @return File
+	 * @throws Exception
+	 */
+	static File writeExpectedResults(File dir, List<List<Object>> rows) throws Exception {
+		Element rootElement = new Element(TagNames.Elements.ROOT_ELEMENT);
+		Element queryElement = new Element(TagNames.Elements.QUERY);
+		queryElement.addContent(new CDATA("select * from benchmark")); //$NON-NLS-1$
+		rootElement.addContent(queryElement);
+		Element resultsElement = new XMLQueryVisitationStrategy().produceResults(resultSet(rows));
+		resultsElement.setAttribute(TagNames.Attributes.NAME, QUERY_SET_ID + "_Query1"); //$NON-NLS-1$
+		rootElement.addContent(resultsElement);
+
+		File file = new File(dir, QUERY_SET_ID + "_Query1_" + rows.size() + ".xml"); //$NON-NLS-1$ //$NON-NLS-2$
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+		try {
+			new XMLOutputter(JdomHelper.getFormat("  ", true)).output(new Document(rootElement), out); //$NON-NLS-1$
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Writes a query file of <code>count</code> queries, every tenth one with parameters.
+	 * @param dir
+	 * @param count
+	 * @return File
+	 * @throws IOException
+	 */
+	static File writeQueryFile(File dir, int count) throws IOException {
+		File file = new File(dir, QUERY_SET_ID + "_" + count + ".xml"); //$NON-NLS-1$ //$NON-NLS-2$
+		PrintWriter out = new PrintWriter(file, "UTF-8"); //$NON-NLS-1$
+		try {
+			out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"); //$NON-NLS-1$
+			out.println("<root>"); //$NON-NLS-1$
+			for (int i = 0; i < count; i++) {
+				if (i % 10 == 9) {
+					out.println("  <query name=\"Query" + i + "\">"); //$NON-NLS-1$ //$NON-NLS-2$
+					out.println("    <sql>select NAME, AMOUNT from benchmark where GROUP_ID = ? and RATIO &lt; ?"); //$NON-NLS-1$
+					out.println("      <parm type=\"integer\">" + i + "</parm>"); //$NON-NLS-1$ //$NON-NLS-2$
+					out.println("      <parm type=\"double\">" + (i / 7d) + "</parm>"); //$NON-NLS-1$ //$NON-NLS-2$
+					out.println("    </sql>"); //$NON-NLS-1$
+					out.println("  </query>"); //$NON-NLS-1$
+				} else {
+					out.println("  <query name=\"Query" + i + "\">select GROUP_ID, NAME, AMOUNT, RATIO from benchmark" //$NON-NLS-1$ //$NON-NLS-2$
+							+ " where GROUP_ID = " + i + " order by NAME</query>"); //$NON-NLS-1$ //$NON-NLS-2$
+				}
+			}
+			out.println("</root>"); //$NON-NLS-1$
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * @param rows
+	 * @return the lines {@link AssertResults} expects for the rows
+	 * @throws IOException
+	 */
+	static String[] lines(List<List<Object>> rows) throws IOException {
+		BufferedReader reader = new BufferedReader(new ResultSetReader(resultSet(rows), AssertResults.DELIMITER));
+		try {
+			List<String> lines = new ArrayList<String>(rows.size() + 1);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+			return lines.toArray(new String[lines.size()]);
+		} finally {
+			reader.close();
+		}
+	}
+}
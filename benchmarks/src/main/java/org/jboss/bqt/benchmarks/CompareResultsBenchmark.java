@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.benchmarks;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.bqt.client.QueryTest;
+import org.jboss.bqt.client.results.ExpectedResultsHolder;
+import org.jboss.bqt.client.results.xml.XMLCompareResults;
+import org.jboss.bqt.client.xml.TagNames;
+import org.jboss.bqt.framework.TestCase;
+import org.jboss.bqt.framework.TestResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link XMLCompareResults#compareResults(TestCase, org.jboss.bqt.framework.ExpectedResults, java.sql.ResultSet, boolean)}
+ * of results that match the expected results, including reading the result set.  The unordered
+ * results are returned in another order than the expected results, so both are sorted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CompareResultsBenchmark {
+
+	@Param({"1000", "100000", "1000000"})
+	private int rows;
+
+	@Param({"true", "false"})
+	private boolean ordered;
+
+	private XMLCompareResults compare;
+	private QueryTest test;
+	private ExpectedResultsHolder expected;
+	private List<List<Object>> actualRows;
+
+	@Setup
+	public void setUp() {
+		this.compare = XMLCompareResults.create(new Properties());
+		this.test = BenchmarkData.queryTest();
+		this.expected = new ExpectedResultsHolder(TagNames.Elements.QUERY_RESULTS, this.test);
+		this.expected.setRows(BenchmarkData.rows(this.rows));
+		this.expected.setIdentifiers(BenchmarkData.identifiers());
+		this.expected.setTypes(BenchmarkData.typeNames());
+		this.actualRows = BenchmarkData.rows(this.rows);
+		if (!this.ordered) {
+			this.actualRows = BenchmarkData.shuffled(this.actualRows);
+		}
+	}
+
+	@Benchmark
+	public TestCase compareResults() throws Exception {
+		TestCase testcase = new TestCase(this.test);
+		testcase.setTestResult(new TestResult(this.test.getQuerySetID(), this.test.getQueryID()));
+		this.compare.compareResults(testcase, this.expected, BenchmarkData.resultSet(this.actualRows), this.ordered);
+		return testcase;
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.bqt.client.QueryTest;
+import org.jboss.bqt.client.query.xml.XMLQueryReader;
+import org.jboss.bqt.client.xml.XMLQueryVisitationStrategy;
+import org.jboss.bqt.core.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a query file, which is what {@link XMLQueryReader#getQueries(String)} does
+ * for each query set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryFileBenchmark {
+
+	@Param({"100", "10000"})
+	private int queries;
+
+	private File dir;
+	private File queryFile;
+
+	@Setup
+	public void setUp() throws Exception {
+		this.dir = Files.createTempDirectory("bqt-benchmark").toFile(); //$NON-NLS-1$
+		this.queryFile = BenchmarkData.writeQueryFile(this.dir, this.queries);
+	}
+
+	@TearDown
+	public void tearDown() {
+		FileUtils.removeDirectoryAndChildren(this.dir);
+	}
+
+	@Benchmark
+	public List<QueryTest> parseXMLQueryFile() throws Exception {
+		return new XMLQueryVisitationStrategy().parseXMLQueryFile(BenchmarkData.SCENARIO_ID, this.queryFile,
+				BenchmarkData.QUERY_SET_ID);
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.bqt.client.QueryTest;
+import org.jboss.bqt.client.results.ExpectedResultsHolder;
+import org.jboss.bqt.client.xml.XMLQueryVisitationStrategy;
+import org.jboss.bqt.core.util.FileUtils;
+import org.jdom2.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading an expected results file with {@link XMLQueryVisitationStrategy#parseXMLResultsFile(QueryTest, String, File)},
+ * and converting a result set to XML with {@link XMLQueryVisitationStrategy#produceResults(java.sql.ResultSet)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class XMLResultsBenchmark {
+
+	@Param({"1000", "100000"})
+	private int rows;
+
+	private List<List<Object>> data;
+	private QueryTest test;
+	private File dir;
+	private File resultsFile;
+
+	@Setup
+	public void setUp() throws Exception {
+		this.data = BenchmarkData.rows(this.rows);
+		this.test = BenchmarkData.queryTest();
+		this.dir = Files.createTempDirectory("bqt-benchmark").toFile(); //$NON-NLS-1$
+		this.resultsFile = BenchmarkData.writeExpectedResults(this.dir, this.data);
+	}
+
+	@TearDown
+	public void tearDown() {
+		FileUtils.removeDirectoryAndChildren(this.dir);
+	}
+
+	@Benchmark
+	public ExpectedResultsHolder parseXMLResultsFile() throws Exception {
+		return new XMLQueryVisitationStrategy().parseXMLResultsFile(this.test, BenchmarkData.QUERY_SET_ID, this.resultsFile);
+	}
+
+	@Benchmark
+	public Element produceResults() throws Exception {
+		return new XMLQueryVisitationStrategy().produceResults(BenchmarkData.resultSet(this.data));
+	}
+}
@@ -22,6 +22,7 @@
 package org.jboss.bqt.client;
 
 import java.io.Serializable;
+import java.util.Map;
 
 /**
  * The QuerySQL represents a single sql statement to be executed in a given
@@ -38,6 +39,8 @@ public class QuerySQL {
 	private int updateCnt = -1;
 	private int rowCnt = -1;
 	private int runtimes = 1;
+	// executions before the measured ones, -1 uses the default of the scenario
+	private int warmupTimes = -1;
 	
 	// payload is set on the statement before execution
 	private Serializable payload;
@@ -48,6 +51,22 @@ public class QuerySQL {
 		return false;
 	}
 	
+	public boolean isUpdate() {
+		String s = sql.toLowerCase();
+		return s.startsWith("insert") || s.startsWith("update") || s.startsWith("delete") //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				|| s.startsWith("merge") || s.startsWith("upsert"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+	
+	/**
+	 * @return <code>true</code> when the statement can be added to a JDBC batch:
+	 * an update without parameters or payload, that is run once and has no row count check
+	 */
+	public boolean isBatchable() {
+		return isUpdate() && (parms == null || parms.length == 0)
+				&& (payload == null || (payload instanceof Map && ((Map<?, ?>) payload).isEmpty()))
+				&& runtimes == 1 && rowCnt < 0 && sql.indexOf('?') == -1;
+	}
+	
 	public int getRowCnt() {
 		return rowCnt;
 	}
@@ -64,6 +83,14 @@ public class QuerySQL {
 		this.runtimes = times;
 	}
 
+	public int getWarmupTimes() {
+		return this.warmupTimes;
+	}
+	
+	public void setWarmupTimes(int times) {
+		this.warmupTimes = times;
+	}
+
 	public int getUpdateCnt() {
 		return updateCnt;
 	}
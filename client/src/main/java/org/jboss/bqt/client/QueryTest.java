@@ -38,6 +38,8 @@ public class QueryTest extends ActualTest {
 	private String querySetID;
 	private String queryID;
 	private String queryScenarioID;
+	// null when the setting of the scenario is used
+	private Boolean digest;
 
 	public QueryTest(String queryScenarioID, String querySetID, String queryID, 
 			QuerySQL[] queries) {
@@ -62,6 +64,18 @@ public class QueryTest extends ActualTest {
 	public String getQueryScenarioID() {
 		return this.queryScenarioID;
 	}
+
+	/**
+	 * @return <code>true</code> when the digest of the rows is generated instead of the rows,
+	 * <code>null</code> when the setting of the scenario is used
+	 */
+	public Boolean getDigest() {
+		return this.digest;
+	}
+
+	public void setDigest(Boolean digest) {
+		this.digest = digest;
+	}
 	
 	
 	
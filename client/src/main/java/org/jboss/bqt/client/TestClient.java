@@ -24,22 +24,33 @@ package org.jboss.bqt.client;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jboss.bqt.client.api.ExpectedResultsReader;
 import org.jboss.bqt.client.api.QueryReader;
 import org.jboss.bqt.client.api.QueryScenario;
+import org.jboss.bqt.client.jmx.RunMonitor;
+import org.jboss.bqt.client.util.MetricsExporter;
 import org.jboss.bqt.core.exception.FrameworkException;
 import org.jboss.bqt.core.exception.FrameworkRuntimeException;
 import org.jboss.bqt.core.util.ArgCheck;
 import org.jboss.bqt.core.util.FileUtils;
 import org.jboss.bqt.core.util.PropertiesUtils;
+import org.jboss.bqt.framework.AdaptiveFetchSize;
 import org.jboss.bqt.framework.ConfigPropertyLoader;
 import org.jboss.bqt.framework.TestCaseLifeCycle;
 import org.jboss.bqt.framework.TransactionAPI;
 import org.jboss.bqt.framework.TransactionFactory;
+import org.jboss.bqt.framework.connection.PooledConnection;
 
 /**
  * TestClient is the starter class for running bulk sql testing against a JDBC database
@@ -65,9 +76,14 @@ public class TestClient {
 	public static final SimpleDateFormat TSFORMAT = new SimpleDateFormat(
 			"HH:mm:ss.SSS"); //$NON-NLS-1$
 	
+	/**
+	 * The configuration of the test run.  Each scenario runs with its own copy,
+	 * see {@link #runScenario(File)}.
+	 */
 	public static ConfigPropertyLoader CONFIG = null;
 	
-	private QueryScenario scenario;
+	// the scenario run by the current thread, scenarios can run concurrently
+	private final ThreadLocal<QueryScenario> scenario = new ThreadLocal<QueryScenario>();
 
 	public TestClient() {
 
@@ -118,48 +134,121 @@ public class TestClient {
 		
 		PRE1_SUPPORTED = PropertiesUtils.getBooleanProperty(System.getProperties(), 
 				TestProperties.PRE1_0_SCENARIO_SUPPORT.SUPPORT_PRE1_0_SCENARIO, false);
+		boolean jmx = PropertiesUtils.getBooleanProperty(CONFIG.getProperties(), TestProperties.JMX_ENABLED, true);
+		RunMonitor.getInstance().runStarted();
+		if (jmx) {
+			RunMonitor.getInstance().register();
+		}
+		MetricsExporter.getInstance().start(CONFIG.getProperties());
 		try {
 			ExclusionManager em = new ExclusionManager(CONFIG);
 
-			List<File> scenarios = getScenarios();
-			for (File f:scenarios) {
+			List<File> scenarios = new ArrayList<File>();
+			for (File f:getScenarios()) {
 				// if the scenario is excluded or not included by the properties, skip it
-				if (!em.isScenarioActive(f)) {
-					continue;
+				if (em.isScenarioActive(f)) {
+					scenarios.add(f);
 				}
+			}
 
-				try{
-					runScenario(f);
-				} catch (FrameworkRuntimeException ex){
-					String code = ex.getCode();
-					if(FrameworkException.ErrorCodes.SERVER_CONNECTION_EXCEPTION.equals(code)
-							|| FrameworkException.ErrorCodes.BQT_INTERRUPTED.equals(code)){
-						throw ex;   // server is not available - running next scenario does not make sense
-									// or BQT has been interrupted
-					} else {
-						// server is available, but something went wrong (no DB, ping did not succeed, ...); next scenario may pass
-						ex.printStackTrace();
-					}
+			int scenarioThreads = PropertiesUtils.getIntProperty(CONFIG.getProperties(), TestProperties.SCENARIO_THREADS, 1);
+			if (scenarioThreads > 1 && scenarios.size() > 1) {
+				runScenarios(scenarios, scenarioThreads);
+			} else {
+				for (File f:scenarios) {
+					runActiveScenario(f);
 				}
-				
-				// reset for reloading cause there are points that call setProperty(..)
-				// on the ConfigurationProperties
-
-				ConfigPropertyLoader.reset();
-				
-				CONFIG = ConfigPropertyLoader.getInstance();
-				
 			}
 
-
 		} catch (Throwable t) {
 			throw new RuntimeException(t);
 		} finally {
+			if (jmx) {
+				RunMonitor.getInstance().unregister();
+			}
+			MetricsExporter.getInstance().stop();
+			PooledConnection.closePools();
+			AdaptiveFetchSize.saveAll();
 			ConfigPropertyLoader.reset();
 		}
 
 	}
 	
+	/**
+	 * Runs the scenarios using a pool of {@link TestProperties#SCENARIO_THREADS} threads,
+	 * which bounds how many scenarios run at the same time.
+	 * When a scenario fails in a way that stops the run, the scenarios that have not
+	 * started yet are skipped, and the exception is thrown once the running ones complete.
+	 * @param scenarios
+	 * @param scenarioThreads
+	 * @throws Throwable
+	 */
+	private void runScenarios(List<File> scenarios, int scenarioThreads) throws Throwable {
+		ClientPlugin.LOGGER.info("Running " + scenarios.size() + " scenarios, " + scenarioThreads + " at a time");
+
+		// the first failure that stops the run
+		final AtomicReference<Throwable> stopRun = new AtomicReference<Throwable>();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(scenarioThreads);
+		List<Future<Void>> results = new ArrayList<Future<Void>>(scenarios.size());
+		for (final File f:scenarios) {
+			results.add(executor.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					if (stopRun.get() != null) {
+						ClientPlugin.LOGGER.info("Skipping scenario: " + f.getName());
+						return null;
+					}
+					try {
+						runActiveScenario(f);
+					} catch (Throwable t) {
+						stopRun.compareAndSet(null, t);
+					}
+					return null;
+				}
+			}));
+		}
+		executor.shutdown();
+
+		// wait for all the scenarios, the resources they share are closed once the run ends
+		try {
+			for (Future<Void> result:results) {
+				result.get();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new FrameworkRuntimeException(FrameworkException.ErrorCodes.BQT_INTERRUPTED, "BQT thread has been interrupted.");
+		} catch (ExecutionException e) {
+			// not expected, the failures of the scenarios are kept in stopRun
+			throw e.getCause();
+		}
+
+		if (stopRun.get() != null) {
+			throw stopRun.get();
+		}
+	}
+
+	/**
+	 * Runs the scenario, only throwing the exceptions that should stop the run.
+	 * @param f
+	 * @throws Throwable
+	 */
+	private void runActiveScenario(File f) throws Throwable {
+		try{
+			runScenario(f);
+		} catch (FrameworkRuntimeException ex){
+			String code = ex.getCode();
+			if(FrameworkException.ErrorCodes.SERVER_CONNECTION_EXCEPTION.equals(code)
+					|| FrameworkException.ErrorCodes.BQT_INTERRUPTED.equals(code)){
+				throw ex;   // server is not available - running next scenario does not make sense
+							// or BQT has been interrupted
+			} else {
+				// server is available, but something went wrong (no DB, ping did not succeed, ...); next scenario may pass
+				ex.printStackTrace();
+			}
+		}
+	}
+	
 	private List<File> getScenarios() throws Exception {
 
 		String scenario_file = CONFIG.getProperty(TestProperties.PROP_SCENARIO_FILE);
@@ -186,12 +275,30 @@ public class TestClient {
 
 	}	
 
+	/**
+	 * Runs the scenario with its own configuration, which is loaded fresh for the
+	 * scenario and is what {@link ConfigPropertyLoader#getInstance()} returns to
+	 * the threads running the scenario.
+	 * @param scenarioFile
+	 * @throws Throwable
+	 */
 	public void runScenario(File scenarioFile) throws Throwable {
+		ConfigPropertyLoader config = ConfigPropertyLoader.createInstance();
+		ConfigPropertyLoader.setScenarioInstance(config);
+		try {
+			runScenario(scenarioFile, config);
+		} finally {
+			ConfigPropertyLoader.setScenarioInstance(null);
+		}
+	}
+
+	private void runScenario(File scenarioFile, ConfigPropertyLoader config) throws Throwable {
 		
-		String scenario_name = init(scenarioFile);
+		String scenario_name = init(scenarioFile, config);
 
 		
-		this.scenario = QueryScenario.createInstance(scenario_name, CONFIG.getProperties());
+		QueryScenario scenario = QueryScenario.createInstance(scenario_name, config.getProperties());
+		this.scenario.set(scenario);
 		
 		if (scenario.isSQL()) {
 			this.createSQL(scenario);
@@ -199,30 +306,35 @@ public class TestClient {
 		}
 		ClientPlugin.LOGGER.info("Starting scenario: " + scenario.getQueryScenarioIdentifier());
 		
-		TransactionAPI tc = getTransactionContainer(CONFIG.getProperties());
+		TransactionAPI tc = getTransactionContainer(config.getProperties());
 
 		TestCaseLifeCycle testCase = scenario.getTestCase();
 		
 		testCase.setup(tc);
 		
+		RunMonitor.getInstance().scenarioStarted(scenario.getQueryScenarioIdentifier());
 		try{
 			testCase.runTestCase(); //a RuntimeException could be thrown
 		} finally {
 			testCase.cleanup();
+			RunMonitor.getInstance().scenarioFinished(scenario.getQueryScenarioIdentifier());
 			
 			ClientPlugin.LOGGER.info("Completed scenario: " + scenario.getQueryScenarioIdentifier());
 		}
 	}
 	
+	/**
+	 * @return the scenario run by the current thread
+	 */
 	protected QueryScenario getScenario() {
-		return this.scenario;
+		return this.scenario.get();
 	}
 	
 	protected TransactionAPI getTransactionContainer(Properties props) {
-		return TransactionFactory.create(CONFIG.getProperties());
+		return TransactionFactory.create(ConfigPropertyLoader.getInstance().getProperties());
 	}
 	
-	private String init(File scenarioFile) throws Exception {
+	private String init(File scenarioFile, ConfigPropertyLoader config) throws Exception {
 		
 		Properties sc_props = PropertiesUtils.load(scenarioFile.getAbsolutePath());
 		
@@ -253,7 +365,7 @@ public class TestClient {
 			}
 		}
 				
-		CONFIG.setProperties(sc_props);
+		config.setProperties(sc_props);
 		
 		return scenario_name;
 	}
@@ -278,7 +390,7 @@ public class TestClient {
 
 
 			// userTxn.getConnectionStrategy().shutdown();
-			ConfigPropertyLoader.reset();
+			// the scenario configuration is discarded by runScenario(File)
 		}
 		
 		ClientPlugin.LOGGER.info("Completed creating sql: " + scenario.getQueryScenarioIdentifier() );
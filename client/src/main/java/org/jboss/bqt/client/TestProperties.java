@@ -121,6 +121,29 @@ public interface TestProperties {
 	 */
 	public static final String ALLOWED_DIVERGENCE = "bqt.compare.big.decimal.allowed.divergence";
 	
+	/**
+	 * How the rows of a query that is not ordered are compared.  <code>sort</code> (default) sorts
+	 * both results on their first three columns and compares them row by row, <code>hash</code>
+	 * matches the rows regardless of their order and reports the missing and unexpected rows.
+	 */
+	public static final String UNORDERED_COMPARE = "bqt.compare.unordered";
+	
+	/**
+	 * Ordered results are compared while they are read, without keeping the rows.  For a forward only
+	 * result set, the error file gets the rows before and after the first mismatch, at most this many
+	 * of each.  For results compared with a digest, the error file gets this many first rows.
+	 * Default is 100.
+	 */
+	public static final String COMPARE_ERROR_WINDOW = "bqt.compare.error.window";
+	
+	/**
+	 * Maximum number of actual rows that are kept in memory to sort the results of a query
+	 * that is not ordered, the sorted rows over it are written to files in the {@link #PROP_OUTPUT_DIR}
+	 * and merged.  The expected rows are read into memory from their file, only their positions
+	 * are sorted.  Default is 1000000, 0 sorts all the rows in memory.
+	 */
+	public static final String COMPARE_SORT_ROWS = "bqt.compare.sort.rows";
+	
 	/**
 	 * Estimated time for one query.
 	 */
@@ -130,6 +153,126 @@ public interface TestProperties {
 	 * "Ping-query" for scenario.
 	 */
 	public static final String PING_QUERY = "bqt.scenario.ping.query";
+	
+	/**
+	 * Milliseconds a query may run, including reading its results, before its statement
+	 * is cancelled and the query is reported as timed out.  A query can override it
+	 * with the <code>timeout</code> attribute of the query file.  Not set by default.
+	 */
+	public static final String QUERY_TIMEOUT = "bqt.query.timeout";
+	
+	/**
+	 * Milliseconds the queries of a query set may run.  When it passes, the running query is
+	 * cancelled and the remaining queries of the query set are reported as timed out
+	 * without executing them.  Not set by default.
+	 */
+	public static final String QUERY_SET_TIMEOUT = "bqt.queryset.timeout";
+	
+	/**
+	 * Number of executions of a query with <code>numtimes</code> greater than 1, before the
+	 * executions whose latencies are reported.  A query can override it with the
+	 * <code>warmup</code> attribute of the query file.  Default is 0.
+	 */
+	public static final String QUERY_WARMUP = "bqt.query.warmup";
+	
+	/**
+	 * Registers the {@link org.jboss.bqt.client.jmx.RunMonitorMBean} that shows the progress of the
+	 * run and can pause it or abort a running scenario.  Default is true.
+	 */
+	public static final String JMX_ENABLED = "bqt.jmx.enabled";
+	
+	/**
+	 * Directory where the metrics of the run are written, in the Prometheus text format and
+	 * as JSON lines, see {@link org.jboss.bqt.client.util.MetricsExporter}.  Not set by default,
+	 * which does not write them.
+	 */
+	public static final String METRICS_DIR = "bqt.metrics.dir";
+	
+	/**
+	 * Seconds between two writes of the metrics.  Default is 15.
+	 */
+	public static final String METRICS_INTERVAL = "bqt.metrics.interval";
+	
+	/**
+	 * Number of times each query set is executed, before it is measured, by the
+	 * {@link RESULT_MODES#BENCHMARK} result mode.  Default is 1.
+	 */
+	public static final String BENCHMARK_WARMUP = "bqt.benchmark.warmup";
+	
+	/**
+	 * Number of times each query set is executed, while it is measured, by the
+	 * {@link RESULT_MODES#BENCHMARK} result mode.  Default is 5.
+	 */
+	public static final String BENCHMARK_ITERATIONS = "bqt.benchmark.iterations";
+	
+	/**
+	 * Number of threads used to execute the queries of a query set.  Each thread
+	 * uses its own connection.  Default is 1, which executes the queries serially.
+	 */
+	public static final String EXECUTION_THREADS = "bqt.execution.threads";
+	
+	/**
+	 * How the threads executing the queries are created. 
+	 * Default is {@link #EXECUTION_MODE_POOL}.
+	 */
+	public static final String EXECUTION_MODE = "bqt.execution.mode";
+	
+	/**
+	 * Queries are executed by a fixed pool of {@link #EXECUTION_THREADS} threads.
+	 */
+	public static final String EXECUTION_MODE_POOL = "pool";
+	
+	/**
+	 * Each query is executed on its own virtual thread, at most {@link #EXECUTION_THREADS}
+	 * queries are executed at the same time.  Requires JDK 21, older runtimes
+	 * fall back to platform threads.
+	 */
+	public static final String EXECUTION_MODE_VIRTUAL = "virtual";
+	
+	/**
+	 * Number of simulated clients.  Each additional client replays every read only query set
+	 * of the scenario at the same time as the first client, using its own connection.  Only the
+	 * results of the first client are compared or generated, the other clients are used to put 
+	 * load on the server.  Default is 1.
+	 */
+	public static final String CLIENTS = "bqt.clients";
+	
+	/**
+	 * Number of scenarios that are run at the same time.  Each scenario has its own
+	 * configuration and connections.  Default is 1, which runs the scenarios one after the other.
+	 */
+	public static final String SCENARIO_THREADS = "bqt.scenario.threads";
+	
+	/**
+	 * Maximum number of statements executed in one JDBC batch.  When greater than 1, consecutive
+	 * insert, update and delete statements without parameters, of a test or of consecutive tests
+	 * in a query set, are executed as a batch, and the update count of each statement is checked
+	 * as if it had been executed on its own.  Default is 1, which executes each statement on its own.
+	 * When the driver does not return the update counts of a batch, the statements whose update
+	 * count is checked, or written to the expected results, are executed on their own.
+	 */
+	public static final String BATCH_SIZE = "bqt.batch.size";
+	
+	/**
+	 * Number of executed query tests whose results can wait to be compared and written.
+	 * When greater than 0, the rows of each query are read into memory and the next query
+	 * is executed while a second thread compares and writes the results, in query set order.
+	 * The execution waits when that many results are waiting.  Default is 0, which processes
+	 * the results of each query before the next query is executed.
+	 */
+	public static final String PIPELINE_DEPTH = "bqt.pipeline.depth";
+	
+	/**
+	 * Number of threads writing the error and expected results files in the background.
+	 * Default is 0, which writes each file on the thread that processes the results.
+	 */
+	public static final String OUTPUT_WRITER_THREADS = "bqt.output.writer.threads";
+	
+	/**
+	 * Maximum number of files waiting to be written by the {@link #OUTPUT_WRITER_THREADS},
+	 * when full the thread that processes the results writes the file.  Default is 100.
+	 */
+	public static final String OUTPUT_WRITER_QUEUE = "bqt.output.writer.queue";
 
 	/**
 	 * All test options will produce the following basic information at the end
@@ -161,6 +304,12 @@ public interface TestProperties {
 		 */
 		static final String SQL = "SQL";
 		
+		/**
+		 * BENCHMARK - will execute each query set several times, read the rows without keeping
+		 * them and write a report of the latency and the throughput of each query.
+		 */
+		static final String BENCHMARK = "BENCHMARK";
+		
 
 	}
 	
@@ -170,7 +319,7 @@ public interface TestProperties {
 	 *  {@link RESULT_MODES#GENERATE}, that will generate a file that contains the query plan
 	 *  for the executed query, or compare a query plan based on whats expected.
 	 */
-	static final String QUERY_PLAN = "bqt.query.plan";
+	public static final String QUERY_PLAN = "bqt.query.plan";
 
 
 	/**
@@ -192,6 +341,13 @@ public interface TestProperties {
 	 * written to a different location than the existing expected results.
 	 */
 	public static final String PROP_GENERATE_DIR = "bqt.generate.dir"; //$NON-NLS-1$
+	
+	/**
+	 * <code>true</code> to generate, as the expected results of a query, the digest of the rows instead
+	 * of the rows, see {@link org.jboss.bqt.client.results.ResultsDigest}.  Can be overridden by the
+	 * <code>digest</code> attribute of the query file or of a query.  Default is false.
+	 */
+	public static final String GENERATE_DIGEST = "bqt.generate.digest"; //$NON-NLS-1$
 
 	/**
 	 * The {@link #PROP_SQL_DIR} property indicates where newly generated
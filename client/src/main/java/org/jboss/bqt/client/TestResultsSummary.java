@@ -42,9 +42,13 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.jboss.bqt.client.api.QueryScenario;
+import org.jboss.bqt.client.jmx.RunMonitor;
+import org.jboss.bqt.client.util.MetricsExporter;
+import org.jboss.bqt.framework.LatencyHistogram;
 import org.jboss.bqt.framework.TestResult;
 
 public class TestResultsSummary {
@@ -54,6 +58,12 @@ public class TestResultsSummary {
 	private static final String CONNECTION_EXCEPTION_SUMMARY_ERROR_FILE = "Summary_connection_exception_errors.txt";
 	private static final SimpleDateFormat FILE_NAME_DATE_FORMATER = new SimpleDateFormat(
 			"yyyyMMdd_HHmmss"); //$NON-NLS-1$
+	
+	/**
+	 * Guards the summary files that are shared by all the scenarios of a run,
+	 * because scenarios can run at the same time.
+	 */
+	private static final Object OVERALL_SUMMARY_LOCK = new Object();
 
 //	private static final String NL = System.getProperty("line.separator"); //$NON-NLS-1$
 
@@ -63,6 +73,7 @@ public class TestResultsSummary {
 	private int total_fail = 0;
 	private int total_querysets = 0;
 	private long total_seconds = 0;
+	private int total_reconnects = 0;
 	private List<String> failed_queries = new ArrayList<String>();
 	private List<String> query_sets = new ArrayList<String>(10);
 	private QueryScenario scenario = null;
@@ -70,14 +81,23 @@ public class TestResultsSummary {
 	private Map<String, Collection<TestResult>> TestResults = Collections
 			.synchronizedMap(new HashMap<String, Collection<TestResult>>());
 
+	// results of the simulated clients 2..n, only used for throughput and latency
+	private Map<String, Collection<TestResult>> loadResults = Collections
+			.synchronizedMap(new HashMap<String, Collection<TestResult>>());
+
 	public TestResultsSummary(QueryScenario queryscenario) {
 		this.scenario = queryscenario;
 	}
 
 	public void cleanup() {
+		if (scenario != null) {
+			// the files of the scenario are written before it ends
+			scenario.closeOutputWriter();
+		}
 		failed_queries.clear();
 		query_sets.clear();
 		TestResults.clear();
+		loadResults.clear();
 		scenario=null;
 	}
 
@@ -98,6 +118,9 @@ public class TestResultsSummary {
 			this.TestResults.put(querySetID, results);
 		}
 		results.add(result);
+		RunMonitor.getInstance().testCompleted(result);
+		MetricsExporter.getInstance().testCompleted(
+				scenario == null ? "" : scenario.getQueryScenarioIdentifier(), result); //$NON-NLS-1$
 
 	}
 
@@ -105,6 +128,28 @@ public class TestResultsSummary {
 		return this.TestResults.get(querySetID);
 	}
 
+	/**
+	 * Adds the result of a query executed by one of the simulated clients 2..n.
+	 * These results are not counted as passed or failed queries, they are only
+	 * used for the throughput and latency of the clients.
+	 * 
+	 * @param querySetID
+	 * @param result
+	 */
+	public synchronized void addLoadTest(String querySetID, TestResult result) {
+		Collection<TestResult> results = this.loadResults.get(querySetID);
+		if (results == null) {
+			results = new ArrayList<TestResult>();
+			this.loadResults.put(querySetID, results);
+		}
+		results.add(result);
+	}
+
+	public synchronized Collection<TestResult> getLoadTests(String querySetID) {
+		Collection<TestResult> results = this.loadResults.get(querySetID);
+		return results == null ? Collections.<TestResult>emptyList() : new ArrayList<TestResult>(results);
+	}
+
 	private static PrintStream getSummaryStream(String outputDir,
 			String summaryName) throws IOException {
 		File summaryFile = createSummaryFile(outputDir, summaryName);
@@ -266,7 +311,7 @@ public class TestResultsSummary {
 
 	private void printQueryTests(PrintStream outputStream,
 			Date testStartTS, Date endTS, Date length, int numberOfClients,
-			SimpleDateFormat formatter, Collection<TestResult> results) {
+			SimpleDateFormat formatter, Collection<TestResult> results, Collection<TestResult> loadResults) {
 		outputStream.println("Query TestResult Results [" + this.scenario.getResultsMode() + "]"); //$NON-NLS-1$
 		outputStream.println("=================="); //$NON-NLS-1$
 		outputStream.println("Start        Time: " + testStartTS); //$NON-NLS-1$
@@ -285,7 +330,22 @@ public class TestResultsSummary {
 				.println("Of Pass, Number Expected Failures: " + passFailGenMap.get(MAP_EXP_FAIL)); //$NON-NLS-1$ //$NON-NLS-2$
 		outputStream
 				.println("Number Failed    : " + passFailGenMap.get(MAP_FAIL)); //$NON-NLS-1$ //$NON-NLS-2$
+		outputStream
+				.println("Number of Reconnects: " + passFailGenMap.get(MAP_RECONNECTS)); //$NON-NLS-1$ //$NON-NLS-2$
 
+		if (numberOfClients > 1) {
+			List<TestResult> allResults = new ArrayList<TestResult>(results);
+			allResults.addAll(loadResults);
+			printClientThroughput(outputStream, length.getTime(), allResults);
+		}
+
+		printLatencies(outputStream, results);
+
+		StringBuilder header = new StringBuilder("Query,Status,Begin,End,Time(ms)"); //$NON-NLS-1$
+		for (String phase : TestResult.PHASE.NAMES) {
+			header.append(',').append(phase).append("(ms)"); //$NON-NLS-1$
+		}
+		outputStream.println(header.append(",Message")); //$NON-NLS-1$
 		Iterator<TestResult> resultItr = results.iterator();
 		while (resultItr.hasNext()) {
 			TestResult stat = resultItr.next();
@@ -294,10 +354,102 @@ public class TestResultsSummary {
 
 	}
 	
+	/**
+	 * Prints the number of queries, the throughput and the latency of each client
+	 * and of all clients together.  The throughput is computed over the elapsed time
+	 * of the query set, the latency is the execution time of the queries.
+	 */
+	static void printClientThroughput(PrintStream outputStream, long elapsedMillis,
+			Collection<TestResult> results) {
+		Map<Integer, long[]> clients = new TreeMap<Integer, long[]>();
+		long[] total = new long[5];
+		for (TestResult stat : results) {
+			long[] client = clients.get(stat.getClientID());
+			if (client == null) {
+				client = new long[5];
+				clients.put(stat.getClientID(), client);
+			}
+			addClientStat(client, stat);
+			addClientStat(total, stat);
+		}
+
+		outputStream.println();
+		outputStream.println("Client Throughput"); //$NON-NLS-1$
+		outputStream.println("=================="); //$NON-NLS-1$
+		outputStream.println("Client\tQueries\tFailed\tQueries/sec\tAvg(ms)\tMax(ms)"); //$NON-NLS-1$
+		for (Map.Entry<Integer, long[]> client : clients.entrySet()) {
+			printClientStat(outputStream, String.valueOf(client.getKey()), client.getValue(), elapsedMillis);
+		}
+		printClientStat(outputStream, "All", total, elapsedMillis); //$NON-NLS-1$
+		outputStream.println();
+	}
+
+	/**
+	 * Prints the latency distribution of each query that was executed more than once,
+	 * and of all the executions of the query set.  Nothing is printed when every query
+	 * was executed once.
+	 */
+	static void printLatencies(PrintStream outputStream, Collection<TestResult> results) {
+		LatencyHistogram total = new LatencyHistogram();
+		List<TestResult> repeated = new ArrayList<TestResult>();
+		for (TestResult stat : results) {
+			total.merge(stat.getLatencies());
+			if (stat.getLatencies().getCount() > 1) {
+				repeated.add(stat);
+			}
+		}
+		if (repeated.isEmpty()) {
+			return;
+		}
+
+		outputStream.println();
+		outputStream.println("Query Latency (ms)"); //$NON-NLS-1$
+		outputStream.println("=================="); //$NON-NLS-1$
+		outputStream.println("Query\tRuns\tMin\tMean\tP50\tP95\tP99\tMax"); //$NON-NLS-1$
+		for (TestResult stat : repeated) {
+			printLatency(outputStream, stat.getQueryID(), stat.getLatencies());
+		}
+		printLatency(outputStream, "All", total); //$NON-NLS-1$
+		outputStream.println();
+	}
+
+	private static void printLatency(PrintStream outputStream, String query, LatencyHistogram latencies) {
+		outputStream.println(query + "\t" + latencies.getCount() //$NON-NLS-1$
+				+ "\t" + millis(latencies.getMin()) + "\t" + millis(latencies.getMean()) //$NON-NLS-1$ //$NON-NLS-2$
+				+ "\t" + millis(latencies.getPercentile(50)) + "\t" + millis(latencies.getPercentile(95)) //$NON-NLS-1$ //$NON-NLS-2$
+				+ "\t" + millis(latencies.getPercentile(99)) + "\t" + millis(latencies.getMax())); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.3f", nanos / 1000000.0); //$NON-NLS-1$
+	}
+
+	// stat = {queries, failed, timed queries, total execution millis, max execution millis}
+	private static void addClientStat(long[] stat, TestResult result) {
+		stat[0]++;
+		if (result.getStatus() == TestResult.RESULT_STATE.TEST_EXCEPTION
+				|| result.getStatus() == TestResult.RESULT_STATE.TEST_TIMEOUT) {
+			stat[1]++;
+		}
+		if (result.getBeginTS() > 0) {
+			stat[2]++;
+			stat[3] += result.getExecutionTime();
+			stat[4] = Math.max(stat[4], result.getExecutionTime());
+		}
+	}
+
+	private static void printClientStat(PrintStream outputStream, String client, long[] stat, long elapsedMillis) {
+		double throughput = stat[0] * 1000.0 / Math.max(elapsedMillis, 1);
+		double avg = stat[2] > 0 ? ((double) stat[3]) / stat[2] : -1.0;
+		outputStream.println(client + "\t" + stat[0] + "\t" + stat[1] + "\t" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ String.format("%.2f", throughput) + "\t" + String.format("%.2f", avg) + "\t" + stat[4]); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
 	private static final String MAP_QUERIES = "queries";
 	private static final String MAP_PASS = "pass";
 	private static final String MAP_FAIL = "fail";
 	private static final String MAP_EXP_FAIL = "expfail";
+	private static final String MAP_RECONNECTS = "reconnects";
 	
 
 	private static Map<String, String> getPassFailGen(Collection<TestResult> results) {
@@ -307,12 +459,17 @@ public class TestResultsSummary {
 		int fail = 0;
 //		int gen = 0;
 		int expected_fail = 0;
+		int reconnects = 0;
 
 		for (Iterator<TestResult> resultsItr = results.iterator(); resultsItr.hasNext();) {
 			TestResult stat = resultsItr.next();
 			++queries;
+			if (stat.isReconnected()) {
+				++reconnects;
+			}
 			switch (stat.getStatus()) {
 			case TestResult.RESULT_STATE.TEST_EXCEPTION:
+			case TestResult.RESULT_STATE.TEST_TIMEOUT:
 				++fail;
 				break;
 			case TestResult.RESULT_STATE.TEST_SUCCESS:
@@ -328,6 +485,7 @@ public class TestResultsSummary {
 		passFailGenMap.put(MAP_PASS, Integer.toString(pass)); //$NON-NLS-1$
 		passFailGenMap.put(MAP_FAIL, Integer.toString(fail)); //$NON-NLS-1$
 		passFailGenMap.put(MAP_EXP_FAIL, Integer.toString(expected_fail)); //$NON-NLS-1$
+		passFailGenMap.put(MAP_RECONNECTS, Integer.toString(reconnects)); //$NON-NLS-1$
 		//       passFailGenMap.put("gen", Integer.toString(gen)); //$NON-NLS-1$
 		return passFailGenMap;
 	}
@@ -352,10 +510,14 @@ public class TestResultsSummary {
 			if (queryset == null) {
 				queryset = stat.getQuerySetID();
 			}
+			if (stat.isReconnected()) {
+				total_reconnects++;
+			}
 
 			++queries;
 			switch (stat.getStatus()) {
 			case TestResult.RESULT_STATE.TEST_EXCEPTION:
+			case TestResult.RESULT_STATE.TEST_TIMEOUT:
 				++fail;
 
 				String msg = 
@@ -394,11 +556,24 @@ public class TestResultsSummary {
 
 	public void printResults(String querySetID,
 			long beginTS, long endTS) throws Exception {
+		printResults(querySetID, beginTS, endTS, 1);
+	}
+
+	/**
+	 * Print test results, a failure to write the summary files is only printed.
+	 * @param querySetID
+	 * @param beginTS
+	 * @param endTS
+	 * @param numberOfClients
+	 * @throws Exception
+	 */
+	public void printResults(String querySetID,
+			long beginTS, long endTS, int numberOfClients) throws Exception {
 
 		ClientPlugin.LOGGER.debug("Print results for Query Set [" + querySetID + "]");
 
 		try {
-			printResults(querySetID, beginTS, endTS, 1, 1);
+			printResults(querySetID, beginTS, endTS, numberOfClients, 1);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -461,11 +636,13 @@ public class TestResultsSummary {
 
 			addTotalPassFailGen(testname, TestResults, starttest, endtest,
 					diffdate);
-			// Text File output
+			// Text File output, SimpleDateFormat isn't thread safe
+			SimpleDateFormat formatter = (SimpleDateFormat) TestClient.TSFORMAT.clone();
+			Collection<TestResult> clientResults = getLoadTests(querySetID);
 			printQueryTests(outputStream, starttest, endtest, diffdate,
-					numberOfClients, TestClient.TSFORMAT, TestResults);
+					numberOfClients, formatter, TestResults, clientResults);
 			printQueryTests(overwriteStream, starttest, endtest,
-					diffdate, numberOfClients, TestClient.TSFORMAT, TestResults);
+					diffdate, numberOfClients, formatter, TestResults, clientResults);
 
 
 			// Wiki Update
@@ -528,6 +705,12 @@ public class TestResultsSummary {
 	 * @throws IOException
 	 */
 	public void printServerConnectionException(Exception ex) throws IOException{
+		synchronized (OVERALL_SUMMARY_LOCK) {
+			printServerConnectionExceptionToSummary(ex);
+		}
+	}
+	
+	private void printServerConnectionExceptionToSummary(Exception ex) throws IOException{
 		String scenarioName = scenario.getQueryScenarioIdentifier();
 		Writer outputWriter = null;
 		try {
@@ -619,6 +802,12 @@ public class TestResultsSummary {
 	 * @throws Exception
 	 */
 	public void printTotals(int expectedQueryCount) throws Exception {
+		synchronized (OVERALL_SUMMARY_LOCK) {
+			printTotalsToSummary(expectedQueryCount);
+		}
+	}
+	
+	private void printTotalsToSummary(int expectedQueryCount) throws Exception {
 		// String outputDir = scenario.getResultsGenerator().getOutputDir();
 		String scenario_name = scenario.getQueryScenarioIdentifier();
 		String querysetname = scenario.getQuerySetName();
@@ -666,6 +855,7 @@ public class TestResultsSummary {
 		outputStream.println("\t" + pad("Totals", 42, ' ')
 				+ "\t" + total_pass + "\t"
 				+ total_fail + "\t" + total_queries + "\t" +  (total_seconds / 1000) );
+		outputStream.println("Number of Reconnects: " + total_reconnects); //$NON-NLS-1$
 
 		try {
 			overallsummary.write(pad(scenario_name, 42, ' ') + " \t"
@@ -745,8 +935,10 @@ public class TestResultsSummary {
 	}
 
 	private static String generateFileName(String configName, String resultmode, long timestamp) {
-		return configName + "_" + resultmode
+		synchronized (FILE_NAME_DATE_FORMATER) {
+			return configName + "_" + resultmode
 				+ "_" + FILE_NAME_DATE_FORMATER.format(new Date(timestamp));
+		}
 		//+ "_Run-" + runNumber; //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
@@ -948,6 +1140,13 @@ public class TestResultsSummary {
 		outputStream.print(","); //$NON-NLS-1$
 		outputStream.print(String.valueOf(stat.getExecutionTime()));
 		outputStream.print(","); //$NON-NLS-1$
+		// the phases that did not happen are left empty
+		for (int phase = 0; phase < TestResult.PHASE.NAMES.length; phase++) {
+			if (stat.getPhaseNanos(phase) >= 0) {
+				outputStream.print(millis(stat.getPhaseNanos(phase)));
+			}
+			outputStream.print(","); //$NON-NLS-1$
+		}
 
 		outputStream
 				.println((stat.getStatus() != TestResult.RESULT_STATE.TEST_SUCCESS ? stat
@@ -33,12 +33,14 @@ import org.jboss.bqt.client.QueryTest;
 import org.jboss.bqt.client.TestProperties;
 import org.jboss.bqt.client.TestProperties.RESULT_MODES;
 import org.jboss.bqt.client.TestResultsSummary;
+import org.jboss.bqt.client.resultmode.Benchmark;
 import org.jboss.bqt.client.resultmode.Compare;
 import org.jboss.bqt.client.resultmode.CreateSQLQuery;
 import org.jboss.bqt.client.resultmode.GenerateExpectedResults;
 import org.jboss.bqt.client.resultmode.None;
 import org.jboss.bqt.client.testcase.ProcessResults;
 import org.jboss.bqt.client.util.BQTUtil;
+import org.jboss.bqt.client.util.OutputWriter;
 import org.jboss.bqt.core.exception.FrameworkException;
 import org.jboss.bqt.core.exception.FrameworkRuntimeException;
 import org.jboss.bqt.core.exception.QueryTestFailedException;
@@ -70,6 +72,7 @@ public abstract class QueryScenario {
 	
 	private List<ExpectedResultsWriter> resultsWriters = null;
 	private ErrorWriter errorWriter = null;
+	private OutputWriter outputWriter = null;
 	private TestResultsSummary summary = null;
 
 	private Properties props = null;
@@ -90,6 +93,8 @@ public abstract class QueryScenario {
 			scenario = new GenerateExpectedResults(scenarioName, properties);
 		} else if (resultModeStr.equals(TestProperties.RESULT_MODES.NONE)) {
 			scenario = new None(scenarioName, properties);
+		} else if (resultModeStr.equals(TestProperties.RESULT_MODES.BENCHMARK)) {
+			scenario = new Benchmark(scenarioName, properties);
 		} else {
 			// default is SQL
 			scenario = new CreateSQLQuery(scenarioName, properties);
@@ -182,6 +187,10 @@ public abstract class QueryScenario {
 		return false;
 	}
 	
+	public boolean isBenchmark() {
+		return false;
+	}
+	
 
 	public boolean isExpectedResultsNeeded() {
 		return (isCompare());
@@ -269,7 +278,7 @@ public abstract class QueryScenario {
 	}
 
 	
-	public List<ExpectedResultsWriter> getExpectedResultsWriters() throws FrameworkException {
+	public synchronized List<ExpectedResultsWriter> getExpectedResultsWriters() throws FrameworkException {
 		if (resultsWriters == null) {
 			resultsWriters = fileType.getExpectedResultsWriters(this, getProperties());
 		}
@@ -304,6 +313,29 @@ public abstract class QueryScenario {
 		return this.errorWriter;
 	}
 	
+	/**
+	 * Return the {@link OutputWriter} that writes the error and
+	 * expected results files.
+	 * 
+	 * @return OutputWriter
+	 */
+	public synchronized OutputWriter getOutputWriter() {
+		if (this.outputWriter == null) {
+			this.outputWriter = new OutputWriter(getQueryScenarioIdentifier(), this.props);
+		}
+		return this.outputWriter;
+	}
+	
+	/**
+	 * Waits until the error and expected results files are written.
+	 */
+	public synchronized void closeOutputWriter() {
+		if (this.outputWriter != null) {
+			this.outputWriter.close();
+			this.outputWriter = null;
+		}
+	}
+	
 	/**
 	 * Return the {@link QueryWriter} that is to be used to writer 
 	 * to process.
@@ -0,0 +1,357 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.bqt.client.ClientPlugin;
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.framework.AbstractQuery;
+import org.jboss.bqt.framework.LatencyHistogram;
+import org.jboss.bqt.framework.TestResult;
+import org.jboss.bqt.framework.connection.PooledConnection;
+
+/**
+ * Keeps the progress of the test run for JMX.  The scenarios, query sets and queries report
+ * to the instance returned by {@link #getInstance()}, which {@link #register()} makes available
+ * as {@link #OBJECT_NAME} when {@link TestProperties#JMX_ENABLED} is set.
+ * <br>
+ * The run can be paused, the queries then wait in {@link #awaitResume(String)} before they execute,
+ * and a running scenario can be aborted, see {@link #isAborted(String)}.
+ */
+public class RunMonitor implements RunMonitorMBean {
+
+	public static final String OBJECT_NAME = "org.jboss.bqt:type=RunMonitor"; //$NON-NLS-1$
+
+	private static final RunMonitor INSTANCE = new RunMonitor();
+
+	// scenario -> query set
+	private final Map<String, String> running = new LinkedHashMap<String, String>();
+	private final Set<String> aborted = new HashSet<String>();
+	private final Map<Thread, InFlight> inFlight = new LinkedHashMap<Thread, InFlight>();
+	private final LatencyHistogram[] phases = new LatencyHistogram[TestResult.PHASE.NAMES.length];
+
+	private long runStarted = System.currentTimeMillis();
+	private long completed = 0;
+	private long passed = 0;
+	private long failed = 0;
+	private boolean paused = false;
+
+	RunMonitor() {
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = new LatencyHistogram();
+		}
+	}
+
+	public static RunMonitor getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers the instance with the platform MBean server.
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(this, name);
+			}
+		} catch (Exception e) {
+			ClientPlugin.LOGGER.warn("Unable to register the run monitor: " + e.getMessage());
+		}
+	}
+
+	public void unregister() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (Exception e) {
+			ClientPlugin.LOGGER.warn("Unable to unregister the run monitor: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Starts counting a new test run.
+	 */
+	public synchronized void runStarted() {
+		this.runStarted = System.currentTimeMillis();
+		this.completed = 0;
+		this.passed = 0;
+		this.failed = 0;
+		this.paused = false;
+		this.running.clear();
+		this.aborted.clear();
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = new LatencyHistogram();
+		}
+		notifyAll();
+	}
+
+	public synchronized void scenarioStarted(String scenario) {
+		this.running.put(scenario, ""); //$NON-NLS-1$
+		this.aborted.remove(scenario);
+	}
+
+	public synchronized void scenarioFinished(String scenario) {
+		this.running.remove(scenario);
+		this.aborted.remove(scenario);
+	}
+
+	public synchronized void querySetStarted(String scenario, String querySetID) {
+		this.running.put(scenario, querySetID);
+	}
+
+	/**
+	 * @param scenario
+	 * @return <code>true</code> when the scenario was aborted and should stop
+	 */
+	public synchronized boolean isAborted(String scenario) {
+		return this.aborted.contains(scenario);
+	}
+
+	/**
+	 * Waits while the run is paused, unless the scenario is aborted.
+	 * @param scenario
+	 */
+	public synchronized void awaitResume(String scenario) {
+		while (this.paused && !this.aborted.contains(scenario)) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * The current thread starts executing a query.
+	 * @param scenario
+	 * @param queryID
+	 * @param query cancelled when the scenario is aborted
+	 */
+	public synchronized void queryStarted(String scenario, String queryID, AbstractQuery query) {
+		this.inFlight.put(Thread.currentThread(), new InFlight(scenario, queryID, query));
+	}
+
+	/**
+	 * The query of the current thread is done.  Waits for a cancel of the query that is in
+	 * progress, so that the cancel cannot reach the next query of the thread.
+	 */
+	public void queryFinished() {
+		InFlight q;
+		synchronized (this) {
+			q = this.inFlight.remove(Thread.currentThread());
+		}
+		if (q != null) {
+			q.finish();
+		}
+	}
+
+	/**
+	 * Counts a completed test and its phases.
+	 * @param result
+	 */
+	public synchronized void testCompleted(TestResult result) {
+		this.completed++;
+		if (result.isFailure()) {
+			this.failed++;
+		} else {
+			this.passed++;
+		}
+		for (int i = 0; i < phases.length; i++) {
+			if (result.getPhaseNanos(i) >= 0) {
+				phases[i].record(result.getPhaseNanos(i));
+			}
+		}
+	}
+
+	public synchronized String getCurrentScenario() {
+		return join(this.running.keySet());
+	}
+
+	public synchronized String getCurrentQuerySet() {
+		return join(this.running.values());
+	}
+
+	public synchronized long getQueriesCompleted() {
+		return this.completed;
+	}
+
+	public synchronized long getQueriesPassed() {
+		return this.passed;
+	}
+
+	public synchronized long getQueriesFailed() {
+		return this.failed;
+	}
+
+	public synchronized double getQueriesPerSecond() {
+		long elapsed = System.currentTimeMillis() - this.runStarted;
+		return this.completed * 1000.0 / Math.max(elapsed, 1);
+	}
+
+	public synchronized String getInFlightQueryID() {
+		InFlight oldest = getOldest();
+		return oldest == null ? "" : oldest.queryID; //$NON-NLS-1$
+	}
+
+	public synchronized long getInFlightElapsedMillis() {
+		InFlight oldest = getOldest();
+		return oldest == null ? 0 : System.currentTimeMillis() - oldest.started;
+	}
+
+	public synchronized String[] getInFlightQueries() {
+		long now = System.currentTimeMillis();
+		List<String> queries = new ArrayList<String>();
+		for (InFlight q : this.inFlight.values()) {
+			queries.add(q.scenario + " " + q.queryID + ": " + (now - q.started) + " ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+		return queries.toArray(new String[queries.size()]);
+	}
+
+	public String[] getConnectionPoolStatistics() {
+		return PooledConnection.getAllPoolStatistics();
+	}
+
+	public synchronized String[] getPhaseLatencies() {
+		String[] latencies = new String[phases.length];
+		for (int i = 0; i < phases.length; i++) {
+			LatencyHistogram h = phases[i];
+			latencies[i] = TestResult.PHASE.NAMES[i] + ": count " + h.getCount() //$NON-NLS-1$
+					+ ", mean " + millis(h.getMean()) //$NON-NLS-1$
+					+ ", p95 " + millis(h.getPercentile(95)) //$NON-NLS-1$
+					+ ", max " + millis(h.getMax()) + " ms"; //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		return latencies;
+	}
+
+	public synchronized boolean isPaused() {
+		return this.paused;
+	}
+
+	public synchronized void pause() {
+		ClientPlugin.LOGGER.info("Test run paused");
+		this.paused = true;
+	}
+
+	public synchronized void resume() {
+		ClientPlugin.LOGGER.info("Test run resumed");
+		this.paused = false;
+		notifyAll();
+	}
+
+	public boolean abortScenario(String scenario) {
+		List<InFlight> queries = new ArrayList<InFlight>();
+		synchronized (this) {
+			if (!this.running.containsKey(scenario)) {
+				ClientPlugin.LOGGER.warn("Scenario " + scenario + " is not running, running scenarios: " + this.running.keySet());
+				return false;
+			}
+			ClientPlugin.LOGGER.warn("Aborting scenario " + scenario);
+			this.aborted.add(scenario);
+			for (InFlight q : this.inFlight.values()) {
+				if (q.scenario.equals(scenario)) {
+					queries.add(q);
+				}
+			}
+			// the paused queries of the scenario have to run to see the abort
+			notifyAll();
+		}
+		for (InFlight q : queries) {
+			q.cancel();
+		}
+		return true;
+	}
+
+	private InFlight getOldest() {
+		InFlight oldest = null;
+		for (InFlight q : this.inFlight.values()) {
+			if (oldest == null || q.started < oldest.started) {
+				oldest = q;
+			}
+		}
+		return oldest;
+	}
+
+	private static String join(Iterable<String> values) {
+		StringBuilder sb = new StringBuilder();
+		for (String v : values) {
+			if (sb.length() > 0) {
+				sb.append(", "); //$NON-NLS-1$
+			}
+			sb.append(v);
+		}
+		return sb.toString();
+	}
+
+	private static String millis(long nanos) {
+		return String.format("%.3f", nanos / 1000000.0); //$NON-NLS-1$
+	}
+
+	private static class InFlight {
+		private final String scenario;
+		private final String queryID;
+		private final AbstractQuery query;
+		private final long started = System.currentTimeMillis();
+
+		private boolean finished = false;
+
+		InFlight(String scenario, String queryID, AbstractQuery query) {
+			this.scenario = scenario;
+			this.queryID = queryID;
+			this.query = query;
+		}
+
+		/**
+		 * Cancels the query, unless the thread executing it has finished it.
+		 */
+		synchronized void cancel() {
+			if (this.finished) {
+				return;
+			}
+			try {
+				this.query.cancelQuery();
+			} catch (Exception e) {
+				ClientPlugin.LOGGER.debug("Unable to cancel query [" + this.queryID + "]: " + e.getMessage());
+			}
+		}
+
+		synchronized void finish() {
+			this.finished = true;
+		}
+	}
+}
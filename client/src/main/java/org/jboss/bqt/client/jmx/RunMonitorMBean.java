@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.jmx;
+
+/**
+ * The live progress of a test run, registered as {@link RunMonitor#OBJECT_NAME}.
+ */
+public interface RunMonitorMBean {
+
+	/**
+	 * @return the scenarios that are running
+	 */
+	String getCurrentScenario();
+
+	/**
+	 * @return the query sets that are running
+	 */
+	String getCurrentQuerySet();
+
+	long getQueriesCompleted();
+
+	long getQueriesPassed();
+
+	long getQueriesFailed();
+
+	/**
+	 * @return queries completed per second since the start of the run
+	 */
+	double getQueriesPerSecond();
+
+	/**
+	 * @return ID of the query that has been running the longest, empty when none is running
+	 */
+	String getInFlightQueryID();
+
+	/**
+	 * @return milliseconds the query that has been running the longest has been running
+	 */
+	long getInFlightElapsedMillis();
+
+	/**
+	 * @return each running query with the milliseconds it has been running
+	 */
+	String[] getInFlightQueries();
+
+	/**
+	 * @return the statistics of each connection pool
+	 */
+	String[] getConnectionPoolStatistics();
+
+	/**
+	 * @return count, mean, p95 and max of each phase of the completed queries
+	 */
+	String[] getPhaseLatencies();
+
+	boolean isPaused();
+
+	/**
+	 * The queries that are running finish, the next queries wait until {@link #resume()}.
+	 */
+	void pause();
+
+	void resume();
+
+	/**
+	 * Cancels the running queries of the scenario and stops it, the run continues
+	 * with the next scenario.  The other running scenarios are not affected.
+	 * @param scenario name of a running scenario, see {@link #getCurrentScenario()}
+	 * @return <code>false</code> when the scenario is not running
+	 */
+	boolean abortScenario(String scenario);
+}
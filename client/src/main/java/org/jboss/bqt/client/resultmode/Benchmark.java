@@ -0,0 +1,398 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.resultmode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.bqt.client.ClientPlugin;
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.client.api.QueryScenario;
+import org.jboss.bqt.client.api.QueryWriter;
+import org.jboss.bqt.client.util.OutputWriter;
+import org.jboss.bqt.core.exception.FrameworkException;
+import org.jboss.bqt.core.util.ArgCheck;
+import org.jboss.bqt.core.util.PropertiesUtils;
+import org.jboss.bqt.framework.AbstractQuery;
+import org.jboss.bqt.framework.LatencyHistogram;
+import org.jboss.bqt.framework.TestCase;
+import org.jboss.bqt.framework.TestResult;
+import org.jboss.bqt.framework.TransactionAPI;
+
+/**
+ * The Benchmark Result Mode measures the queries instead of checking their results.  Each query
+ * set is executed {@link TestProperties#BENCHMARK_WARMUP} times to warm up, then
+ * {@link TestProperties#BENCHMARK_ITERATIONS} times while measuring.  The rows are read and dropped,
+ * nothing is kept in memory and no expected results or error files are written.
+ * <br>
+ * For each query, the latency (execution and reading of the rows), the rows per second and the
+ * bytes per second are written to the <code>&lt;querySetID&gt;_BENCHMARK.json</code> and
+ * <code>&lt;querySetID&gt;_BENCHMARK.csv</code> reports.  The summary reports the tests of the
+ * last iteration.
+ * <br>
+ * The bytes are the size of the data of the values that are read, not of the wire format of the
+ * driver: UTF-8 length of character values, length of binary values, storage size of the SQL
+ * type of numeric values and the precision of the column for the other types.
+ * 
+ */
+public class Benchmark extends QueryScenario {
+
+	// query set ID -> query ID -> statistics of the measured executions
+	private final Map<String, Map<String, QueryStats>> stats = new LinkedHashMap<String, Map<String, QueryStats>>();
+
+	private volatile boolean measuring = false;
+
+	/**
+	 * @param scenarioName
+	 * @param queryProperties
+	 */
+	public Benchmark(String scenarioName, Properties queryProperties) {
+		super(scenarioName, queryProperties);
+
+	}
+
+	@Override
+	public boolean isBenchmark() {
+		return true;
+	}
+
+	@Override
+	public String getResultsMode()
+	{
+		return TestProperties.RESULT_MODES.BENCHMARK;
+	}
+
+	@Override
+	public synchronized QueryWriter getQueryWriter() {
+		return null;
+	}
+
+	/**
+	 * @return number of times a query set is executed before it is measured
+	 */
+	public int getWarmupIterations() {
+		return Math.max(0, PropertiesUtils.getIntProperty(getProperties(), TestProperties.BENCHMARK_WARMUP, 1));
+	}
+
+	/**
+	 * @return number of times a query set is executed while it is measured
+	 */
+	public int getIterations() {
+		return Math.max(1, PropertiesUtils.getIntProperty(getProperties(), TestProperties.BENCHMARK_ITERATIONS, 5));
+	}
+
+	/**
+	 * @param measuring <code>false</code> while warming up, the executions are not recorded
+	 */
+	public void setMeasuring(boolean measuring) {
+		this.measuring = measuring;
+	}
+
+	/**
+	 * Reads the rows of the query and records the execution when measuring.
+	 */
+	@Override
+	public void handleTestResult(TestCase testCase, TransactionAPI transaction) throws FrameworkException {
+		ArgCheck.isNotNull(testCase, "TestResult must be passed in");
+
+		TestResult tr = testCase.getTestResult();
+		AbstractQuery query = (AbstractQuery) transaction;
+		long rows = 0;
+		long bytes = 0;
+		long nanos = query.getExecutionNanos();
+		if (tr.getStatus() != TestResult.RESULT_STATE.TEST_EXCEPTION && query.getResultSet() != null) {
+			ResultSet rs = query.getResultSet();
+			long begin = System.nanoTime();
+			try {
+				ResultSetMetaData md = rs.getMetaData();
+				int columnCount = md.getColumnCount();
+				int[] widths = new int[columnCount];
+				for (int col = 1; col <= columnCount; col++) {
+					widths[col - 1] = width(md, col);
+				}
+				while (rs.next()) {
+					rows++;
+					for (int col = 1; col <= columnCount; col++) {
+						bytes += width(rs.getObject(col), widths[col - 1]);
+					}
+				}
+			} catch (SQLException e) {
+				tr.setStatus(TestResult.RESULT_STATE.TEST_EXCEPTION);
+				tr.setException(e);
+				tr.setFailureMessage(e.getMessage());
+			}
+			nanos += System.nanoTime() - begin;
+			tr.setRowCount(rows);
+		}
+		if (this.measuring) {
+			record(tr, nanos, rows, bytes);
+		}
+	}
+
+	private synchronized void record(TestResult tr, long nanos, long rows, long bytes) {
+		Map<String, QueryStats> querySet = this.stats.get(tr.getQuerySetID());
+		if (querySet == null) {
+			querySet = new LinkedHashMap<String, QueryStats>();
+			this.stats.put(tr.getQuerySetID(), querySet);
+		}
+		QueryStats query = querySet.get(tr.getQueryID());
+		if (query == null) {
+			query = new QueryStats();
+			querySet.put(tr.getQueryID(), query);
+		}
+		query.executions++;
+		if (tr.getStatus() == TestResult.RESULT_STATE.TEST_EXCEPTION) {
+			query.failures++;
+			return;
+		}
+		query.latency.record(nanos);
+		query.rows += rows;
+		query.bytes += bytes;
+		query.nanos += nanos;
+	}
+
+	/**
+	 * Writes the JSON and CSV reports of the query set.
+	 * @param querySetID
+	 * @throws FrameworkException
+	 */
+	public void writeReport(final String querySetID) throws FrameworkException {
+		final Map<String, QueryStats> querySet;
+		synchronized (this) {
+			querySet = this.stats.remove(querySetID);
+		}
+		if (querySet == null) {
+			return;
+		}
+		File dir = new File(getTestRunDir());
+		dir.mkdirs();
+		String name = querySetID + "_" + getResultsMode(); //$NON-NLS-1$
+		final int warmup = getWarmupIterations();
+		final int iterations = getIterations();
+
+		OutputWriter writer = getOutputWriter();
+		writer.write(new File(dir, name + ".json"), new OutputWriter.Output() { //$NON-NLS-1$
+			public void writeTo(OutputStream out) throws Exception {
+				writeJson(out, querySetID, warmup, iterations, querySet);
+			}
+		});
+		writer.write(new File(dir, name + ".csv"), new OutputWriter.Output() { //$NON-NLS-1$
+			public void writeTo(OutputStream out) throws Exception {
+				writeCsv(out, querySet);
+			}
+		});
+		ClientPlugin.LOGGER.info("Benchmark report written: " + new File(dir, name + ".json").getPath());
+	}
+
+	private void writeJson(OutputStream out, String querySetID, int warmup, int iterations,
+			Map<String, QueryStats> querySet) {
+		PrintWriter w = new PrintWriter(new OutputStreamWriter(out, Charset.forName("UTF-8"))); //$NON-NLS-1$
+		w.println("{"); //$NON-NLS-1$
+		w.println("  \"scenario\": " + quote(getQueryScenarioIdentifier()) + ","); //$NON-NLS-1$ //$NON-NLS-2$
+		w.println("  \"querySet\": " + quote(querySetID) + ","); //$NON-NLS-1$ //$NON-NLS-2$
+		w.println("  \"warmupIterations\": " + warmup + ","); //$NON-NLS-1$ //$NON-NLS-2$
+		w.println("  \"iterations\": " + iterations + ","); //$NON-NLS-1$ //$NON-NLS-2$
+		w.println("  \"queries\": ["); //$NON-NLS-1$
+		int i = 0;
+		for (Map.Entry<String, QueryStats> query : querySet.entrySet()) {
+			QueryStats s = query.getValue();
+			w.print("    {\"query\": " + quote(query.getKey()) //$NON-NLS-1$
+					+ ", \"executions\": " + s.executions //$NON-NLS-1$
+					+ ", \"failures\": " + s.failures //$NON-NLS-1$
+					+ ", \"rows\": " + s.rows //$NON-NLS-1$
+					+ ", \"bytes\": " + s.bytes //$NON-NLS-1$
+					+ ", \"minMs\": " + millis(s.latency.getMin()) //$NON-NLS-1$
+					+ ", \"meanMs\": " + millis(s.latency.getMean()) //$NON-NLS-1$
+					+ ", \"p50Ms\": " + millis(s.latency.getPercentile(50)) //$NON-NLS-1$
+					+ ", \"p95Ms\": " + millis(s.latency.getPercentile(95)) //$NON-NLS-1$
+					+ ", \"p99Ms\": " + millis(s.latency.getPercentile(99)) //$NON-NLS-1$
+					+ ", \"maxMs\": " + millis(s.latency.getMax()) //$NON-NLS-1$
+					+ ", \"rowsPerSec\": " + perSecond(s.rows, s.nanos) //$NON-NLS-1$
+					+ ", \"bytesPerSec\": " + perSecond(s.bytes, s.nanos) + "}"); //$NON-NLS-1$ //$NON-NLS-2$
+			w.println(++i < querySet.size() ? "," : ""); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		w.println("  ]"); //$NON-NLS-1$
+		w.println("}"); //$NON-NLS-1$
+		w.flush();
+	}
+
+	private void writeCsv(OutputStream out, Map<String, QueryStats> querySet) {
+		PrintWriter w = new PrintWriter(new OutputStreamWriter(out, Charset.forName("UTF-8"))); //$NON-NLS-1$
+		w.println("query,executions,failures,rows,bytes,min_ms,mean_ms,p50_ms,p95_ms,p99_ms,max_ms,rows_per_sec,bytes_per_sec"); //$NON-NLS-1$
+		for (Map.Entry<String, QueryStats> query : querySet.entrySet()) {
+			QueryStats s = query.getValue();
+			w.println(csv(query.getKey()) + "," + s.executions + "," + s.failures + "," + s.rows + "," + s.bytes //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+					+ "," + millis(s.latency.getMin()) + "," + millis(s.latency.getMean()) //$NON-NLS-1$ //$NON-NLS-2$
+					+ "," + millis(s.latency.getPercentile(50)) + "," + millis(s.latency.getPercentile(95)) //$NON-NLS-1$ //$NON-NLS-2$
+					+ "," + millis(s.latency.getPercentile(99)) + "," + millis(s.latency.getMax()) //$NON-NLS-1$ //$NON-NLS-2$
+					+ "," + perSecond(s.rows, s.nanos) + "," + perSecond(s.bytes, s.nanos)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		w.flush();
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.US, "%.3f", nanos / 1000000.0); //$NON-NLS-1$
+	}
+
+	private static String perSecond(long count, long nanos) {
+		return String.format(Locale.US, "%.1f", nanos <= 0 ? 0.0 : count * 1000000000.0 / nanos); //$NON-NLS-1$
+	}
+
+	private static String quote(String value) {
+		StringBuilder sb = new StringBuilder("\""); //$NON-NLS-1$
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c)); //$NON-NLS-1$
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static String csv(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\""; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
+	/**
+	 * @return the size of the values of the column, in bytes, when it does not depend on the value
+	 */
+	private static int width(ResultSetMetaData md, int col) throws SQLException {
+		switch (md.getColumnType(col)) {
+		case Types.BIT:
+		case Types.BOOLEAN:
+		case Types.TINYINT:
+			return 1;
+		case Types.SMALLINT:
+			return 2;
+		case Types.INTEGER:
+		case Types.REAL:
+			return 4;
+		case Types.BIGINT:
+		case Types.FLOAT:
+		case Types.DOUBLE:
+			return 8;
+		default:
+			return Math.max(md.getPrecision(col), 0);
+		}
+	}
+
+	/**
+	 * @param value
+	 * @param width size of the values of the column, used for the values of other types
+	 * @return the size of the data of the value, in bytes
+	 */
+	private static long width(Object value, int width) throws SQLException {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof String) {
+			return utf8Length((String) value);
+		} else if (value instanceof byte[]) {
+			return ((byte[]) value).length;
+		} else if (value instanceof Clob) {
+			return utf8Length(((Clob) value).getCharacterStream());
+		} else if (value instanceof Blob) {
+			return ((Blob) value).length();
+		} else if (value instanceof BigDecimal) {
+			// unscaled value and scale
+			return ((BigDecimal) value).unscaledValue().bitLength() / 8 + 1 + 4;
+		} else if (value instanceof BigInteger) {
+			return ((BigInteger) value).bitLength() / 8 + 1;
+		}
+		return width;
+	}
+
+	private static long utf8Length(CharSequence value) {
+		long length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			length += utf8Length(value.charAt(i));
+		}
+		return length;
+	}
+
+	private static long utf8Length(Reader reader) throws SQLException {
+		long length = 0;
+		char[] buf = new char[8192];
+		try {
+			try {
+				int n;
+				while ((n = reader.read(buf)) > 0) {
+					length += utf8Length(CharBuffer.wrap(buf, 0, n));
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+		return length;
+	}
+
+	/**
+	 * @return the UTF-8 length of the char, 2 for each half of a surrogate pair
+	 */
+	private static int utf8Length(char c) {
+		if (c < 0x80) {
+			return 1;
+		} else if (c < 0x800 || Character.isSurrogate(c)) {
+			return 2;
+		}
+		return 3;
+	}
+
+	/**
+	 * The measured executions of one query.
+	 */
+	private static class QueryStats {
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private long executions = 0;
+		private long failures = 0;
+		private long rows = 0;
+		private long bytes = 0;
+		private long nanos = 0;
+	}
+}
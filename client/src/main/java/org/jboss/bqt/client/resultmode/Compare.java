@@ -88,10 +88,24 @@ public class Compare extends QueryScenario {
 
 		TestResult tr = testCase.getTestResult();
 
+		try {
+			handleTestResult(testCase, transaction, readers, tr);
+		} finally {
+			// the rows kept by the comparison are only needed for the error file
+			testCase.setActualResults(null);
+		}
+	}
+
+	private void handleTestResult(TestCase testCase, TransactionAPI transaction,
+			List<ExpectedResultsReader> readers, TestResult tr) throws FrameworkException,
+			QueryTestFailedException {
 		for (ExpectedResultsReader reader : readers) {
+			long begin = tr.beginPhase();
 			ExpectedResults es = reader.getExpectedResults(testCase.getActualTest());
+			tr.endPhase(TestResult.PHASE.EXPECTED_RESULTS, begin);
 
 			List<Throwable> exs = new ArrayList<Throwable>();
+			begin = tr.beginPhase();
 			try {
 				reader.compareResults(testCase, transaction, es, isOrdered(tr.getQuery()));
 			} catch (MultiTestFailedException mtf) {
@@ -102,9 +116,12 @@ public class Compare extends QueryScenario {
 			} catch (QueryTestFailedException qtf) {
 				tr.setFailureMessage(qtf.getMessage());
 				exs.add(qtf);
+			} finally {
+				tr.endPhase(TestResult.PHASE.COMPARE, begin);
 			}
 
 			if (exs.size() > 0) {
+				begin = tr.beginPhase();
 				// there was some failure to the test
 				tr.setStatus(TestResult.RESULT_STATE.TEST_EXCEPTION);
 
@@ -119,6 +136,7 @@ public class Compare extends QueryScenario {
 				if (exs.size() > 1) {
 					getErrorWriter().generateErrorMessagesFile(tr, exs);
 				}
+				tr.endPhase(TestResult.PHASE.OUTPUT, begin);
 			}
 		}
 	}
@@ -32,6 +32,7 @@ import org.jboss.bqt.client.api.QueryWriter;
 import org.jboss.bqt.core.exception.FrameworkException;
 import org.jboss.bqt.core.util.ArgCheck;
 import org.jboss.bqt.framework.TestCase;
+import org.jboss.bqt.framework.TestResult;
 import org.jboss.bqt.framework.TransactionAPI;
 
 /**
@@ -76,16 +77,21 @@ public class GenerateExpectedResults extends QueryScenario {
 		
 		List<ExpectedResultsWriter> resultsWriters = this.getExpectedResultsWriters();
 		
-		 for (ExpectedResultsWriter writer : resultsWriters) {
-			 try {
-				 writer.generateExpectedResultFile(testCase, transaction);
-			} catch (FrameworkException fe) {
-				ArrayList<Throwable> failures = new ArrayList<Throwable>(1);
-				failures.add(fe);
-				getErrorWriter().generateErrorFile(testCase.getTestResult(), failures);
-			}
-
-		 }
+		long begin = testCase.getTestResult().beginPhase();
+		try {
+			 for (ExpectedResultsWriter writer : resultsWriters) {
+				 try {
+					 writer.generateExpectedResultFile(testCase, transaction);
+				} catch (FrameworkException fe) {
+					ArrayList<Throwable> failures = new ArrayList<Throwable>(1);
+					failures.add(fe);
+					getErrorWriter().generateErrorFile(testCase.getTestResult(), failures);
+				}
+	
+			 }
+		} finally {
+			testCase.getTestResult().endPhase(TestResult.PHASE.OUTPUT, begin);
+		}
 	
 		// If there was an exeception in the test results, create the error file
 //		if (testCase.getTestResult().getStatus() == TestResult.RESULT_STATE.TEST_EXCEPTION) {
@@ -72,7 +72,9 @@ public class None extends QueryScenario {
 		ArgCheck.isNotNull(testCase, "TestResult must be passed in");
 
 		if (testCase.getTestResult().getStatus() == TestResult.RESULT_STATE.TEST_EXCEPTION) {
+				long begin = testCase.getTestResult().beginPhase();
 				this.getErrorWriter().generateErrorFile(testCase.getTestResult(), null);
+				testCase.getTestResult().endPhase(TestResult.PHASE.OUTPUT, begin);
 		}
 	}
 
@@ -48,6 +48,8 @@ public class ExpectedResultsHolder extends ExpectedResults {
 	private List<List<Object>> rows;
 	private List<String> types;
 	private List<String> identifiers;
+	// instead of the rows
+	private ResultsDigest digest;
 	
 	// Update count
 	private int updCount = -1;
@@ -115,6 +117,17 @@ public class ExpectedResultsHolder extends ExpectedResults {
 		this.rows = rows;
 	}
 
+	/**
+	 * @return the digest of the rows, <code>null</code> when the rows were written
+	 */
+	public ResultsDigest getDigest() {
+		return digest;
+	}
+
+	public void setDigest(final ResultsDigest digest) {
+		this.digest = digest;
+	}
+
 	public List<String> getTypes() {
 		return types;
 	}
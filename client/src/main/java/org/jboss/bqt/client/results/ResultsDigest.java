@@ -0,0 +1,188 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.results;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLXML;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.jboss.bqt.core.util.ObjectConverterUtil;
+
+/**
+ * Digest of the rows of a result, written as the expected results of a query instead of
+ * the rows when they are too many to be kept in a file.  The digest is built while the rows
+ * are read, in constant memory, and has:
+ * <li>the number of rows</li>
+ * <li>a hash of the rows in the order they were read</li>
+ * <li>a hash of the rows in any order</li>
+ * <li>a hash of the values of each column in any order, which tells the column that differs</li>
+ * <br>
+ * Numbers are hashed on their value, lobs on their content and the other values on their
+ * string, so numbers have to be equal, the allowed divergence does not apply.
+ */
+public class ResultsDigest {
+
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+	private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+
+	private long rowCount;
+	private long orderedHash;
+	private long unorderedHash;
+	private final long[] columnHashes;
+
+	/**
+	 * Empty digest, the rows are added by {@link #addRow(ResultSet)}.
+	 * @param columnCount
+	 */
+	public ResultsDigest(int columnCount) {
+		this.columnHashes = new long[columnCount];
+	}
+
+	/**
+	 * Digest read from the expected results.
+	 * @param rowCount
+	 * @param orderedHash
+	 * @param unorderedHash
+	 * @param columnHashes
+	 */
+	public ResultsDigest(long rowCount, long orderedHash, long unorderedHash, long[] columnHashes) {
+		this.rowCount = rowCount;
+		this.orderedHash = orderedHash;
+		this.unorderedHash = unorderedHash;
+		this.columnHashes = columnHashes;
+	}
+
+	/**
+	 * Adds the current row of the result set.
+	 * @param rs
+	 * @throws SQLException
+	 */
+	public void addRow(ResultSet rs) throws SQLException {
+		List<Object> values = new ArrayList<Object>(this.columnHashes.length);
+		for (int col = 1; col <= this.columnHashes.length; col++) {
+			values.add(rs.getObject(col));
+		}
+		addRow(values);
+	}
+
+	/**
+	 * Adds a row that was read from the result set.
+	 * @param values
+	 * @throws SQLException when a lob cannot be read
+	 */
+	public void addRow(List<Object> values) throws SQLException {
+		long rowHash = FNV_OFFSET;
+		for (int col = 0; col < this.columnHashes.length; col++) {
+			long valueHash = hash(values.get(col));
+			// the same values in other columns give other hashes
+			rowHash = mix(rowHash * FNV_PRIME + valueHash);
+			this.columnHashes[col] += mix(valueHash + col);
+		}
+		this.orderedHash = mix(this.orderedHash * FNV_PRIME + rowHash);
+		this.unorderedHash += mix(rowHash);
+		this.rowCount++;
+	}
+
+	public long getRowCount() {
+		return this.rowCount;
+	}
+
+	public long getOrderedHash() {
+		return this.orderedHash;
+	}
+
+	public long getUnorderedHash() {
+		return this.unorderedHash;
+	}
+
+	public int getColumnCount() {
+		return this.columnHashes.length;
+	}
+
+	public long getColumnHash(int col) {
+		return this.columnHashes[col];
+	}
+
+	static long hash(Object value) throws SQLException {
+		if (value == null) {
+			return NULL_HASH;
+		}
+		try {
+			if (value instanceof Clob) {
+				return hash(ObjectConverterUtil.convertToString(((Clob) value).getAsciiStream()));
+			} else if (value instanceof SQLXML) {
+				return hash(ObjectConverterUtil.convertToString(((SQLXML) value).getBinaryStream()));
+			} else if (value instanceof Blob) {
+				return hash(ObjectConverterUtil.convertToByteArray(((Blob) value).getBinaryStream()));
+			}
+		} catch (IOException e) {
+			throw new SQLException("Unable to read the lob: " + e.getMessage(), e); //$NON-NLS-1$
+		}
+		if (value instanceof byte[]) {
+			return hash((byte[]) value);
+		} else if (value instanceof Byte[]) {
+			return hash(ArrayUtils.toPrimitive((Byte[]) value));
+		} else if (value instanceof BigDecimal) {
+			BigDecimal d = (BigDecimal) value;
+			return hash(d.signum() == 0 ? "0" : d.stripTrailingZeros().toPlainString()); //$NON-NLS-1$
+		} else if (value instanceof Double || value instanceof Float) {
+			double d = ((Number) value).doubleValue();
+			// 0.0 and -0.0 are equal
+			return mix(Double.doubleToLongBits(d == 0 ? 0 : d));
+		}
+		return hash(value.toString());
+	}
+
+	private static long hash(String value) {
+		long h = FNV_OFFSET;
+		for (int i = 0; i < value.length(); i++) {
+			h = (h ^ value.charAt(i)) * FNV_PRIME;
+		}
+		return mix(h);
+	}
+
+	private static long hash(byte[] value) {
+		long h = FNV_OFFSET;
+		for (byte b : value) {
+			h = (h ^ (b & 0xff)) * FNV_PRIME;
+		}
+		return mix(~h);
+	}
+
+	/**
+	 * Spreads the bits of the hash, so sums of hashes do not collide for similar values.
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+}
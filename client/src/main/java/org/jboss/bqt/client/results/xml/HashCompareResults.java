@@ -0,0 +1,368 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.results.xml;
+
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLXML;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.jboss.bqt.core.exception.MultiTestFailedException;
+import org.jboss.bqt.core.exception.QueryTestFailedException;
+import org.jboss.bqt.core.util.ObjectConverterUtil;
+import org.teiid.core.util.Base64;
+
+/**
+ * Compares the rows of results that are not ordered as multisets.  The expected rows are
+ * hashed on their values, and each actual row takes an equal expected row, so rows match
+ * regardless of their order and of how many columns they have in common.  The rows left
+ * on either side are reported as missing or unexpected, with their row in the results.
+ * <br>
+ * Lobs are compared on their content, numbers on their value.  When a divergence is allowed,
+ * the rows are hashed on the other columns only.  The expected and actual rows with the same
+ * hash are sorted on their numeric columns and matched in one pass, the nearest values first,
+ * within the divergence.
+ */
+class HashCompareResults {
+
+	private final BigDecimal allowedDivergence;
+	private final String eMsg;
+
+	/**
+	 * @param allowedDivergence <code>null</code> when numbers have to be equal
+	 * @param eMsg prefix of the failure messages
+	 */
+	HashCompareResults(BigDecimal allowedDivergence, String eMsg) {
+		this.allowedDivergence = allowedDivergence;
+		this.eMsg = eMsg;
+	}
+
+	/**
+	 * @param actualResults
+	 * @param expectedResults
+	 * @throws QueryTestFailedException listing the missing and unexpected rows
+	 */
+	void compare(final List<List<Object>> actualResults, final List<List<Object>> expectedResults)
+			throws QueryTestFailedException {
+		final boolean[] tolerant = tolerantColumns(expectedResults);
+
+		// expected rows with the same key, in the order of the expected results
+		final Map<List<Object>, Bucket> buckets = new HashMap<List<Object>, Bucket>(expectedResults.size() * 4 / 3 + 1);
+		for (int row = 0; row < expectedResults.size(); row++) {
+			List<Object> key = key(expectedResults.get(row), tolerant);
+			Bucket bucket = buckets.get(key);
+			if (bucket == null) {
+				bucket = new Bucket();
+				buckets.put(key, bucket);
+			}
+			bucket.add(row);
+		}
+
+		final boolean[] matched = new boolean[expectedResults.size()];
+		final boolean[] actualMatched = new boolean[actualResults.size()];
+		for (int row = 0; row < actualResults.size(); row++) {
+			Bucket bucket = buckets.get(key(actualResults.get(row), tolerant));
+			if (bucket == null) {
+				continue;
+			}
+			if (tolerant != null) {
+				// matched once all the actual rows of the bucket are known
+				bucket.addActual(row);
+				continue;
+			}
+			int expectedRow = bucket.take();
+			if (expectedRow >= 0) {
+				matched[expectedRow] = true;
+				actualMatched[row] = true;
+			}
+		}
+		if (tolerant != null) {
+			for (Bucket bucket : buckets.values()) {
+				bucket.match(expectedResults, actualResults, tolerant, matched, actualMatched);
+			}
+		}
+
+		MultiTestFailedException multiException = new MultiTestFailedException();
+		if (actualResults.size() != expectedResults.size()) {
+			multiException.addFailure(new QueryTestFailedException(this.eMsg
+					+ "Expected " + expectedResults.size() + //$NON-NLS-1$
+					" records but received " + actualResults.size())); //$NON-NLS-1$
+		}
+		for (int row = 0; row < matched.length; row++) {
+			if (!matched[row]) {
+				multiException.addFailure(new QueryTestFailedException(this.eMsg
+						+ "Missing row (row in expected result: " + (row + 1) + "): " //$NON-NLS-1$ //$NON-NLS-2$
+						+ values(expectedResults.get(row))));
+			}
+		}
+		for (int row = 0; row < actualMatched.length; row++) {
+			if (!actualMatched[row]) {
+				multiException.addFailure(new QueryTestFailedException(this.eMsg
+						+ "Unexpected row (row in actual result: " + (row + 1) + "): " //$NON-NLS-1$ //$NON-NLS-2$
+						+ values(actualResults.get(row))));
+			}
+		}
+
+		if (multiException.getTotalFailures() == 1) {
+			throw multiException.getFailures().get(0);
+		} else if (multiException.getTotalFailures() > 1) {
+			throw multiException;
+		}
+	}
+
+	/**
+	 * @return the columns whose expected values are matched within the divergence,
+	 * <code>null</code> when no divergence is allowed or no column is numeric
+	 */
+	private boolean[] tolerantColumns(List<List<Object>> expectedResults) {
+		if (this.allowedDivergence == null || expectedResults.isEmpty()) {
+			return null;
+		}
+		boolean[] tolerant = new boolean[expectedResults.get(0).size()];
+		boolean any = false;
+		for (int col = 0; col < tolerant.length; col++) {
+			// the type of the column is the type of its first value
+			for (List<Object> record : expectedResults) {
+				Object value = record.get(col);
+				if (value != null) {
+					tolerant[col] = value instanceof BigDecimal || value instanceof Double || value instanceof Float;
+					break;
+				}
+			}
+			any |= tolerant[col];
+		}
+		return any ? tolerant : null;
+	}
+
+	/**
+	 * @return the values of the record that have to be equal, the tolerant columns are left out
+	 */
+	private static List<Object> key(List<Object> record, boolean[] tolerant) throws QueryTestFailedException {
+		List<Object> key = new ArrayList<Object>(record.size());
+		for (int col = 0; col < record.size(); col++) {
+			if (tolerant == null || col >= tolerant.length || !tolerant[col]) {
+				key.add(canonical(record.get(col)));
+			}
+		}
+		return key;
+	}
+
+	/**
+	 * Converts the value to the one it is compared as, so equal values have the same hash.
+	 */
+	static Object canonical(Object value) throws QueryTestFailedException {
+		try {
+			if (value instanceof Clob) {
+				return ObjectConverterUtil.convertToString(((Clob) value).getAsciiStream());
+			} else if (value instanceof SQLXML) {
+				return ObjectConverterUtil.convertToString(((SQLXML) value).getBinaryStream());
+			} else if (value instanceof Blob) {
+				return Base64.encodeBytes(ObjectConverterUtil.convertToByteArray(((Blob) value).getBinaryStream()));
+			}
+		} catch (Throwable e) {
+			throw new QueryTestFailedException(e);
+		}
+		if (value instanceof byte[]) {
+			return Base64.encodeBytes((byte[]) value);
+		} else if (value instanceof Byte[]) {
+			return Base64.encodeBytes(ArrayUtils.toPrimitive((Byte[]) value));
+		} else if (value instanceof BigDecimal) {
+			// 1.0 and 1.00 are equal
+			BigDecimal d = (BigDecimal) value;
+			return d.signum() == 0 ? BigDecimal.ZERO : d.stripTrailingZeros();
+		} else if (value instanceof Double) {
+			// 0.0 and -0.0 are equal
+			return ((Double) value).doubleValue() == 0 ? Double.valueOf(0) : value;
+		} else if (value instanceof Float) {
+			return ((Float) value).floatValue() == 0 ? Float.valueOf(0) : value;
+		} else if (value instanceof java.sql.Date) {
+			// compared on the date only
+			return java.sql.Date.valueOf(value.toString());
+		} else if (value instanceof java.sql.Time) {
+			return java.sql.Time.valueOf(value.toString());
+		}
+		return value;
+	}
+
+	private boolean withinDivergence(Object expected, Object actual) {
+		if (expected == null || actual == null) {
+			return expected == actual;
+		}
+		if (expected instanceof BigDecimal && actual instanceof BigDecimal) {
+			BigDecimal expV = (BigDecimal) expected;
+			return expV.add(this.allowedDivergence).compareTo((BigDecimal) actual) >= 0
+					&& expV.subtract(this.allowedDivergence).compareTo((BigDecimal) actual) <= 0;
+		}
+		if ((expected instanceof Double && actual instanceof Double)
+				|| (expected instanceof Float && actual instanceof Float)) {
+			double expV = ((Number) expected).doubleValue();
+			double actV = ((Number) actual).doubleValue();
+			double divergence = this.allowedDivergence.doubleValue();
+			return expV == actV || (expV + divergence >= actV && expV - divergence <= actV);
+		}
+		return expected.equals(actual);
+	}
+
+	/**
+	 * Orders the values of a tolerant column, numbers on their value and nulls first.
+	 */
+	private static int compareTolerant(Object expected, Object actual) {
+		if (expected == null || actual == null) {
+			return expected == null ? (actual == null ? 0 : -1) : 1;
+		}
+		if (expected instanceof BigDecimal && actual instanceof BigDecimal) {
+			return ((BigDecimal) expected).compareTo((BigDecimal) actual);
+		}
+		if (expected instanceof Number && actual instanceof Number) {
+			return Double.compare(((Number) expected).doubleValue(), ((Number) actual).doubleValue());
+		}
+		if (expected instanceof Number || actual instanceof Number) {
+			return expected instanceof Number ? -1 : 1;
+		}
+		return expected.toString().compareTo(actual.toString());
+	}
+
+	/**
+	 * @return the values of the record as they were read, lobs as their content
+	 */
+	private static String values(List<Object> record) throws QueryTestFailedException {
+		List<Object> values = new ArrayList<Object>(record.size());
+		for (Object value : record) {
+			if (value instanceof Clob || value instanceof SQLXML || value instanceof Blob
+					|| value instanceof byte[] || value instanceof Byte[]) {
+				values.add(canonical(value));
+			} else {
+				values.add(value);
+			}
+		}
+		return values.toString();
+	}
+
+	/**
+	 * Positions of the expected rows with the same key, the rows before <code>next</code> are matched.
+	 * With tolerant columns, the positions of the actual rows with the key are kept as well.
+	 */
+	private class Bucket {
+		private int[] rows = new int[1];
+		private int size = 0;
+		private int next = 0;
+		private int[] actualRows;
+		private int actualSize = 0;
+
+		void add(int row) {
+			this.rows = add(this.rows, this.size++, row);
+		}
+
+		void addActual(int row) {
+			this.actualRows = add(this.actualRows == null ? new int[1] : this.actualRows, this.actualSize++, row);
+		}
+
+		private int[] add(int[] positions, int size, int row) {
+			if (size == positions.length) {
+				int[] grown = new int[size * 2];
+				System.arraycopy(positions, 0, grown, 0, size);
+				positions = grown;
+			}
+			positions[size] = row;
+			return positions;
+		}
+
+		/**
+		 * @return the first expected row that is not matched, -1 when none is left
+		 */
+		int take() {
+			return this.next < this.size ? this.rows[this.next++] : -1;
+		}
+
+		/**
+		 * Sorts the expected and actual rows on the tolerant columns, then matches them in one pass:
+		 * rows within the divergence are matched, otherwise the row with the lower value is left
+		 * unmatched.
+		 */
+		void match(List<List<Object>> expectedResults, List<List<Object>> actualResults, boolean[] tolerant,
+				boolean[] matched, boolean[] actualMatched) {
+			if (this.actualSize == 0) {
+				return;
+			}
+			Integer[] expected = sorted(this.rows, this.size, expectedResults, tolerant);
+			Integer[] actual = sorted(this.actualRows, this.actualSize, actualResults, tolerant);
+			int e = 0;
+			int a = 0;
+			while (e < expected.length && a < actual.length) {
+				List<Object> expectedRecord = expectedResults.get(expected[e]);
+				List<Object> actualRecord = actualResults.get(actual[a]);
+				int col = divergentColumn(expectedRecord, actualRecord, tolerant);
+				if (col < 0) {
+					matched[expected[e++]] = true;
+					actualMatched[actual[a++]] = true;
+				} else if (compareTolerant(expectedRecord.get(col), actualRecord.get(col)) <= 0) {
+					e++;
+				} else {
+					a++;
+				}
+			}
+		}
+
+		private Integer[] sorted(int[] positions, int size, final List<List<Object>> records, final boolean[] tolerant) {
+			Integer[] sorted = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				sorted[i] = positions[i];
+			}
+			Arrays.sort(sorted, new Comparator<Integer>() {
+				public int compare(Integer r1, Integer r2) {
+					List<Object> record1 = records.get(r1);
+					List<Object> record2 = records.get(r2);
+					for (int col = 0; col < tolerant.length; col++) {
+						if (tolerant[col]) {
+							int c = compareTolerant(record1.get(col), record2.get(col));
+							if (c != 0) {
+								return c;
+							}
+						}
+					}
+					return r1.compareTo(r2);
+				}
+			});
+			return sorted;
+		}
+
+		/**
+		 * @return the first tolerant column whose values are not within the divergence, -1 when none
+		 */
+		private int divergentColumn(List<Object> expectedRecord, List<Object> actualRecord, boolean[] tolerant) {
+			for (int col = 0; col < tolerant.length; col++) {
+				if (tolerant[col] && !withinDivergence(expectedRecord.get(col), actualRecord.get(col))) {
+					return col;
+				}
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.results.xml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.SQLXML;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.jboss.bqt.client.ClientPlugin;
+import org.jboss.bqt.core.exception.QueryTestFailedException;
+import org.jboss.bqt.core.util.ObjectConverterUtil;
+
+/**
+ * Sorts the rows of a result that may not fit in memory.  Up to <code>maxRows</code> rows are
+ * kept in memory, when there are more the rows are sorted and written to a run file, and the
+ * runs are merged while the sorted rows are read.  Rows that are equal keep the order in which
+ * they were added, as with {@link Collections#sort(List, Comparator)}.
+ * <br>
+ * The rows are added with their lobs as their content and with the values that are not
+ * serializable as their string, so the rows in memory and the rows written are sorted alike.
+ * {@link #close()} deletes the run files.
+ */
+class SortedRows {
+
+	// the stream is reset after this many rows, so it does not keep a reference to every row written
+	private static final int RESET_ROWS = 1000;
+
+	/**
+	 * A row and its position in the order the rows were added.
+	 */
+	static class Row {
+		final int position;
+		final List<Object> values;
+
+		Row(int position, List<Object> values) {
+			this.position = position;
+			this.values = values;
+		}
+	}
+
+	private final Comparator<Row> comparator;
+	private final int maxRows;
+	private final File dir;
+	private final List<File> runFiles = new ArrayList<File>();
+	private final List<Run> runs = new ArrayList<Run>();
+	private List<Row> rows = new ArrayList<Row>();
+	private int size = 0;
+	// the runs by their current row, while the sorted rows are read
+	private PriorityQueue<Run> queue;
+
+	/**
+	 * @param comparator order of the rows
+	 * @param maxRows rows kept in memory, at least 1
+	 * @param dir where the run files are written
+	 */
+	SortedRows(final Comparator<List<Object>> comparator, int maxRows, File dir) {
+		this.comparator = new Comparator<Row>() {
+			public int compare(Row o1, Row o2) {
+				int c = comparator.compare(o1.values, o2.values);
+				if (c == 0) {
+					c = o1.position < o2.position ? -1 : (o1.position == o2.position ? 0 : 1);
+				}
+				return c;
+			}
+		};
+		this.maxRows = Math.max(maxRows, 1);
+		this.dir = dir;
+	}
+
+	void add(List<Object> values) throws QueryTestFailedException {
+		if (this.rows.size() == this.maxRows) {
+			spill();
+		}
+		this.rows.add(new Row(this.size++, serializable(values)));
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * Starts reading the rows in sorted order, no rows can be added afterwards.
+	 * @return the first row, <code>null</code> when there are none
+	 */
+	Row first() throws QueryTestFailedException {
+		Collections.sort(this.rows, this.comparator);
+		if (this.runFiles.isEmpty()) {
+			this.runs.add(new MemoryRun(this.rows));
+		} else {
+			ClientPlugin.LOGGER.debug("Merging " + (this.runFiles.size() + 1) + " runs of " + this.size + " rows"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			for (File runFile : this.runFiles) {
+				this.runs.add(new FileRun(runFile));
+			}
+			this.runs.add(new MemoryRun(this.rows));
+		}
+		this.rows = null;
+		this.queue = new PriorityQueue<Run>(this.runs.size(), new Comparator<Run>() {
+			public int compare(Run o1, Run o2) {
+				return comparator.compare(o1.head, o2.head);
+			}
+		});
+		for (Run run : this.runs) {
+			if (run.advance()) {
+				this.queue.add(run);
+			}
+		}
+		return next();
+	}
+
+	/**
+	 * @return the next row in sorted order, <code>null</code> when all were read
+	 */
+	Row next() throws QueryTestFailedException {
+		Run run = this.queue.poll();
+		if (run == null) {
+			return null;
+		}
+		Row row = run.head;
+		if (run.advance()) {
+			this.queue.add(run);
+		}
+		return row;
+	}
+
+	/**
+	 * Closes and deletes the run files.
+	 */
+	void close() {
+		for (Run run : this.runs) {
+			run.close();
+		}
+		for (File runFile : this.runFiles) {
+			if (!runFile.delete()) {
+				runFile.deleteOnExit();
+			}
+		}
+		this.runFiles.clear();
+	}
+
+	private void spill() throws QueryTestFailedException {
+		Collections.sort(this.rows, this.comparator);
+		ObjectOutputStream out = null;
+		try {
+			this.dir.mkdirs();
+			File runFile = File.createTempFile("bqt-sort-", ".run", this.dir); //$NON-NLS-1$ //$NON-NLS-2$
+			this.runFiles.add(runFile);
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 64 * 1024));
+			int written = 0;
+			for (Row row : this.rows) {
+				out.writeInt(row.position);
+				out.writeObject(row.values);
+				if (++written % RESET_ROWS == 0) {
+					out.reset();
+				}
+			}
+		} catch (IOException e) {
+			throw new QueryTestFailedException(e, "Unable to write the sorted rows to " + this.dir + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		ClientPlugin.LOGGER.debug("Wrote run " + this.runFiles.size() + " of " + this.rows.size() + " sorted rows"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		this.rows = new ArrayList<Row>(this.maxRows);
+	}
+
+	/**
+	 * @return the values with the lobs as their content and the values that are not serializable
+	 * as their string
+	 */
+	private static ArrayList<Object> serializable(List<Object> values) throws QueryTestFailedException {
+		ArrayList<Object> result = new ArrayList<Object>(values.size());
+		for (Object value : values) {
+			try {
+				if (value instanceof Clob) {
+					value = ObjectConverterUtil.convertToString(((Clob) value).getAsciiStream());
+				} else if (value instanceof SQLXML) {
+					value = ObjectConverterUtil.convertToString(((SQLXML) value).getBinaryStream());
+				} else if (value instanceof Blob) {
+					value = ObjectConverterUtil.convertToByteArray(((Blob) value).getBinaryStream());
+				} else if (value != null && !(value instanceof Serializable)) {
+					value = value.toString();
+				}
+			} catch (Throwable e) {
+				throw new QueryTestFailedException(e);
+			}
+			result.add(value);
+		}
+		return result;
+	}
+
+	/**
+	 * Sorted rows, <code>head</code> is the current one.
+	 */
+	private abstract static class Run {
+		Row head;
+
+		/**
+		 * @return <code>false</code> when there are no more rows
+		 */
+		abstract boolean advance() throws QueryTestFailedException;
+
+		void close() {
+		}
+	}
+
+	private static class MemoryRun extends Run {
+		private final List<Row> rows;
+		private int next = 0;
+
+		MemoryRun(List<Row> rows) {
+			this.rows = rows;
+		}
+
+		boolean advance() {
+			if (this.next == this.rows.size()) {
+				this.head = null;
+				return false;
+			}
+			// the run is only read once
+			this.head = this.rows.set(this.next++, null);
+			return true;
+		}
+	}
+
+	private static class FileRun extends Run {
+		private final File file;
+		private ObjectInputStream in;
+
+		FileRun(File file) {
+			this.file = file;
+		}
+
+		@SuppressWarnings("unchecked")
+		boolean advance() throws QueryTestFailedException {
+			try {
+				if (this.in == null) {
+					this.in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(this.file), 64 * 1024));
+				}
+				int position;
+				try {
+					position = this.in.readInt();
+				} catch (EOFException e) {
+					this.head = null;
+					close();
+					return false;
+				}
+				this.head = new Row(position, (List<Object>) this.in.readObject());
+				return true;
+			} catch (IOException e) {
+				throw new QueryTestFailedException(e, "Unable to read the sorted rows from " + this.file + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+			} catch (ClassNotFoundException e) {
+				throw new QueryTestFailedException(e, "Unable to read the sorted rows from " + this.file + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+
+		void close() {
+			if (this.in != null) {
+				try {
+					this.in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+				this.in = null;
+			}
+		}
+	}
+}
@@ -22,6 +22,7 @@
 
 package org.jboss.bqt.client.results.xml;
 
+import java.io.File;
 import java.math.BigDecimal;
 import java.sql.Blob;
 import java.sql.Clob;
@@ -29,10 +30,12 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLXML;
+import java.sql.Statement;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.regex.Pattern;
@@ -45,6 +48,7 @@ import org.jboss.bqt.client.QueryTest;
 import org.jboss.bqt.client.TestProperties;
 import org.jboss.bqt.client.api.ExpectedResults;
 import org.jboss.bqt.client.results.ExpectedResultsHolder;
+import org.jboss.bqt.client.results.ResultsDigest;
 import org.jboss.bqt.client.util.ListNestedSortComparator;
 import org.jboss.bqt.client.xml.TagNames;
 import org.jboss.bqt.core.exception.FrameworkRuntimeException;
@@ -52,7 +56,7 @@ import org.jboss.bqt.core.exception.MultiTestFailedException;
 import org.jboss.bqt.core.exception.QueryTestFailedException;
 import org.jboss.bqt.core.util.ExceptionUtil;
 import org.jboss.bqt.core.util.ObjectConverterUtil;
-import org.jboss.bqt.framework.ConfigPropertyLoader;
+import org.jboss.bqt.core.util.PropertiesUtils;
 import org.jboss.bqt.framework.TestCase;
 import org.jboss.bqt.framework.TestResult;
 import org.teiid.core.util.Base64;
@@ -60,10 +64,15 @@ import org.teiid.core.util.Base64;
 public class XMLCompareResults {
 	private static String newline = System.getProperty("line.separator"); //$NON-NLS-1$
 	
-	private static double exceed_percent = -0.99999;
-	private static long exec_minumin_time = -1;
-	private static BigDecimal allowedDivergence = null;
-	private static boolean allowedDivergenceIsZero = false;
+	private double exceed_percent = -0.99999;
+	private long exec_minumin_time = -1;
+	private final BigDecimal allowedDivergence;
+	private final boolean allowedDivergenceIsZero;
+	
+	private final boolean hashUnordered;
+	private final int errorWindow;
+	private final int sortRows;
+	private final File sortDir;
 
 	private XMLCompareResults(Properties props) {
 		
@@ -82,7 +91,13 @@ public class XMLCompareResults {
 		}		
 		// if exceed percent was set and exec time was not, set exec time to minimum of 1 mil
 		if (exceed_percent > 0 && exec_minumin_time < 0) exec_minumin_time = 1;
-	
+		
+		allowedDivergence = getAllowedDivergence(props);
+		allowedDivergenceIsZero = allowedDivergence.compareTo(BigDecimal.ZERO) == 0;
+		hashUnordered = "hash".equalsIgnoreCase(props.getProperty(TestProperties.UNORDERED_COMPARE, "sort").trim()); //$NON-NLS-1$ //$NON-NLS-2$
+		errorWindow = PropertiesUtils.getIntProperty(props, TestProperties.COMPARE_ERROR_WINDOW, 100);
+		sortRows = PropertiesUtils.getIntProperty(props, TestProperties.COMPARE_SORT_ROWS, 1000000);
+		sortDir = new File(props.getProperty(TestProperties.PROP_OUTPUT_DIR, System.getProperty("java.io.tmpdir")), "sort"); //$NON-NLS-1$ //$NON-NLS-2$
 	}
 
 	
@@ -166,7 +181,21 @@ public class XMLCompareResults {
 //			 ClientPlugin.LOGGER.info("*** 2 Actual Results (ResultSet): " +
 //			 actualResults);
 			
+			if (expectedResults.getDigest() != null) {
+				// the rows are hashed as they are read
+				compareDigest(testcase, resultSet, actualResults, expectedResults, eMsg, isOrdered);
+				break;
+			}
+
+			if (resultSet != null && !expResults.isExceptionExpected() && expectedResults.getRows().size() > 0
+					&& (isOrdered || (!hashUnordered && sortRows > 0))) {
+				// the rows are compared as they are read, or sorted within the memory budget
+				compareRows(testcase, resultSet, actualResults, expectedResults, eMsg, isOrdered);
+				break;
+			}
+
 			convertResults(resultSet, testcase.getTestResult().getUpdateCount(), actualResults);
+			keepForwardOnlyResults(testcase, resultSet, actualResults);
 
 			if (expResults.isExceptionExpected()) {
 				throw new QueryTestFailedException(eMsg + expectedResults.getExceptionClassName()
@@ -174,12 +203,13 @@ public class XMLCompareResults {
 			}
 
 			if (expectedResults.getRows().size() > 0) {
-				compareResults(testcase, actualResults, expectedResults, eMsg, isOrdered);
+				compareResults(testcase, actualResults, expectedResults, eMsg, isOrdered, !isOrdered && hashUnordered);
 			} else if (actualResults.getRows().size() > 0) {
 				throw new QueryTestFailedException(
 						eMsg + "Expected results indicated no results, but actual shows " + actualResults.getRows().size() + " rows."); //$NON-NLS-1$	      		    		      		    
-			} else if (expectedResults.getUpdCount() > -1){
-			    // update count
+			} else if (expectedResults.getUpdCount() > -1
+					&& actualResults.getUpdCount() != Statement.SUCCESS_NO_INFO){
+			    // update count, unless a batch did not return it
 			    if(expectedResults.getUpdCount() != actualResults.getUpdCount()){
 			        throw new QueryTestFailedException("Expected update count: " + expectedResults.getUpdCount() + ", actual update count: "
 			                + actualResults.getUpdCount() + ".");
@@ -197,6 +227,31 @@ public class XMLCompareResults {
 		}
 	}
 
+	/**
+	 * A forward only result set cannot be rewound to write the error file,
+	 * so the rows, which the compare leaves in the order they were returned, are kept on the testcase.
+	 * @param testcase
+	 * @param resultSet
+	 * @param actualResults
+	 * @throws QueryTestFailedException
+	 */
+	private static void keepForwardOnlyResults(final TestCase testcase, final ResultSet resultSet,
+			final ExpectedResultsHolder actualResults) throws QueryTestFailedException {
+		try {
+			if (resultSet == null || resultSet.getType() != ResultSet.TYPE_FORWARD_ONLY) {
+				return;
+			}
+		} catch (SQLException qre) {
+			throw new QueryTestFailedException(qre,
+					"Can't get results type: " + qre.getMessage()); //$NON-NLS-1$
+		}
+		ExpectedResultsHolder copy = new ExpectedResultsHolder(TagNames.Elements.QUERY_RESULTS, (QueryTest) testcase.getActualTest());
+		copy.setRows(actualResults.getRows());
+		copy.setIdentifiers(actualResults.getIdentifiers());
+		copy.setTypes(actualResults.getTypes());
+		testcase.setActualResults(copy);
+	}
+
 	/**
 	 * The use of REMOVE_PREFIX is a hack to strip down the message so that it matches
 	 * what is currently in use.
@@ -217,61 +272,41 @@ public class XMLCompareResults {
 
 
 	/**
-	 * Helper to convert results into records and record first batch response
-	 * time.
+	 * Helper to convert results into records.  The time to the first row is
+	 * recorded by the result set, see {@link TestResult.PHASE#FIRST_ROW}.
 	 * 
 	 * @param results
 	 * @param batchSize
 	 * @param resultsHolder
 	 *            Modified - results added by this method.
-	 * @return List of sorted results.
 	 * @throws QueryTestFailedException
 	 *             replaced SQLException.
 	 */
-	private static final long convertResults(final ResultSet results,
+	private static final void convertResults(final ResultSet results,
 			final long batchSize, ExpectedResultsHolder resultsHolder)
 			throws QueryTestFailedException {
 
-		long firstBatchResponseTime = 0;
 		final List<List<Object>> records = new ArrayList<List<Object>>();
 		final List<String> columnTypeNames = new ArrayList<String>();
 		final List<String> columnTypes = new ArrayList<String>();
 
-		final ResultSetMetaData rsMetadata;
 		final int colCount;
 
 		if(results == null){
 		    resultsHolder.setUpdCount((int)batchSize);
 		} else {
-			// Get column info
-			try {
-				rsMetadata = results.getMetaData();
-				colCount = rsMetadata.getColumnCount();
-				// Read types of all columns
-				for (int col = 1; col <= colCount; col++) {
-					columnTypeNames.add(rsMetadata.getColumnName(col));
-					columnTypes.add(rsMetadata.getColumnTypeName(col));
-				}
-			} catch (SQLException qre) {
-				throw new QueryTestFailedException(qre,
-						"Can't get results metadata: " + qre.getMessage()); //$NON-NLS-1$
-			}
+			colCount = readColumns(results, columnTypeNames, columnTypes);
 	
 			// Get rows
 			try {
 				// Read all the rows
-				for (int row = 0; results.next(); row++) {
+				while (results.next()) {
 					final List<Object> currentRecord = new ArrayList<Object>(colCount);
 					// Read values for this row
 					for (int col = 1; col <= colCount; col++) {
 						currentRecord.add(results.getObject(col));
 					}
 					records.add(currentRecord);
-					// If this row is the (fetch size - 1)th row, record first batch
-					// response time
-					if (row == batchSize) {
-						firstBatchResponseTime = System.currentTimeMillis();
-					}
 				}
 			} catch (SQLException qre) {
 				throw new QueryTestFailedException(qre,
@@ -282,9 +317,297 @@ public class XMLCompareResults {
 			resultsHolder.setIdentifiers(columnTypeNames);
 			resultsHolder.setTypes(columnTypes);
 		}
-		return firstBatchResponseTime;
 	}
 	
+	/**
+	 * Reads the names and the types of the columns.
+	 * @return the number of columns
+	 */
+	private static int readColumns(final ResultSet results, final List<String> columnTypeNames,
+			final List<String> columnTypes) throws QueryTestFailedException {
+		try {
+			ResultSetMetaData rsMetadata = results.getMetaData();
+			int colCount = rsMetadata.getColumnCount();
+			// Read types of all columns
+			for (int col = 1; col <= colCount; col++) {
+				columnTypeNames.add(rsMetadata.getColumnName(col));
+				columnTypes.add(rsMetadata.getColumnTypeName(col));
+			}
+			return colCount;
+		} catch (SQLException qre) {
+			throw new QueryTestFailedException(qre,
+					"Can't get results metadata: " + qre.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	/**
+	 * Compares ordered results row by row while they are read, so the actual rows are not kept.
+	 * The actual rows of results that are not ordered are sorted on their first three columns by
+	 * {@link SortedRows}, which keeps at most {@link TestProperties#COMPARE_SORT_ROWS} of them in
+	 * memory, and are compared with the expected rows in the same order.
+	 * <br>
+	 * For a forward only result set, which cannot be read again for the error file, at most
+	 * {@link TestProperties#COMPARE_ERROR_WINDOW} rows before and after the first mismatch, or the
+	 * first rows when the results are sorted, are kept on the testcase instead of all the rows.
+	 * @param testCase
+	 * @param resultSet
+	 * @param actualResults receives the columns of the results
+	 * @param expectedResults
+	 * @param eMsg
+	 * @param isOrdered
+	 * @throws QueryTestFailedException
+	 */
+	private void compareRows(final TestCase testCase, final ResultSet resultSet,
+			final ExpectedResultsHolder actualResults, final ExpectedResultsHolder expectedResults,
+			final String eMsg, final boolean isOrdered) throws QueryTestFailedException {
+		final List<String> columnTypeNames = new ArrayList<String>();
+		final List<String> columnTypes = new ArrayList<String>();
+		final int colCount = readColumns(resultSet, columnTypeNames, columnTypes);
+		actualResults.setIdentifiers(columnTypeNames);
+		actualResults.setTypes(columnTypes);
+
+		RowWindow window = null;
+		try {
+			if (resultSet.getType() == ResultSet.TYPE_FORWARD_ONLY) {
+				window = new RowWindow(errorWindow);
+			}
+		} catch (SQLException qre) {
+			throw new QueryTestFailedException(qre,
+					"Can't get results type: " + qre.getMessage()); //$NON-NLS-1$
+		}
+
+		QueryTestFailedException columnsMismatch = null;
+		try {
+			compareIdentifiers(columnTypeNames, expectedResults.getIdentifiers(),
+					columnTypes, expectedResults.getTypes());
+		} catch (QueryTestFailedException e) {
+			if (window == null) {
+				throw e;
+			}
+			// the first rows are still kept for the error file
+			columnsMismatch = e;
+		}
+		final SortedRows actualSorted = isOrdered ? null : new SortedRows(sortComparator(colCount, true), sortRows, sortDir);
+		try {
+			compareRows(testCase, resultSet, actualResults, expectedResults, eMsg, colCount,
+					columnTypeNames, columnTypes, window, columnsMismatch, actualSorted);
+		} finally {
+			if (actualSorted != null) {
+				actualSorted.close();
+			}
+		}
+	}
+
+	private void compareRows(final TestCase testCase, final ResultSet resultSet,
+			final ExpectedResultsHolder actualResults, final ExpectedResultsHolder expectedResults,
+			final String eMsg, final int colCount, final List<String> columnTypeNames, final List<String> columnTypes,
+			final RowWindow window, final QueryTestFailedException columnsMismatch,
+			final SortedRows actualSorted) throws QueryTestFailedException {
+		final List<List<Object>> expectedRows = expectedResults.getRows();
+		final int expectedRowCount = expectedRows.size();
+		MultiTestFailedException multiException = new MultiTestFailedException();
+		int row = 0;
+		try {
+			while (resultSet.next()) {
+				final List<Object> actualRecord = new ArrayList<Object>(colCount);
+				for (int col = 1; col <= colCount; col++) {
+					actualRecord.add(resultSet.getObject(col));
+				}
+				boolean mismatch = columnsMismatch != null;
+				if (actualSorted != null) {
+					if (!mismatch) {
+						actualSorted.add(actualRecord);
+					}
+					// the first rows are kept
+					mismatch = row == 0;
+				} else if (row < expectedRowCount && !mismatch) {
+					// the rows over the expected ones are only counted
+					final List<Object> expectedRecord = expectedRows.get(row);
+					for (int col = 0; col < colCount; col++) {
+						try {
+							compareResultColumn(actualRecord.get(col), expectedRecord.get(col), row, col,
+									row, row, eMsg, allowedDivergence, allowedDivergenceIsZero);
+						} catch (QueryTestFailedException e) {
+							multiException.addFailure(e);
+							mismatch = true;
+						}
+					}
+				}
+				if (window != null) {
+					window.add(actualRecord, mismatch || row == expectedRowCount);
+				}
+				row++;
+			}
+		} catch (SQLException qre) {
+			throw new QueryTestFailedException(qre,
+					"Can't get results: " + qre.getMessage()); //$NON-NLS-1$
+		} finally {
+			if (window != null) {
+				ExpectedResultsHolder kept = new ExpectedResultsHolder(TagNames.Elements.QUERY_RESULTS, (QueryTest) testCase.getActualTest());
+				kept.setRows(window.getRows());
+				kept.setIdentifiers(columnTypeNames);
+				kept.setTypes(columnTypes);
+				testCase.setActualResults(kept);
+			}
+		}
+
+		if (columnsMismatch != null) {
+			throw columnsMismatch;
+		}
+		// the number of records is checked before the values
+		if (row < expectedRowCount) {
+			throw new QueryTestFailedException(eMsg
+					+ "Expected " + expectedRowCount + //$NON-NLS-1$
+					" records but received only " + row); //$NON-NLS-1$
+		} else if (row > expectedRowCount) {
+			throw new QueryTestFailedException(eMsg
+					+ "Expected " + expectedRowCount + //$NON-NLS-1$
+					" records but received " + row); //$NON-NLS-1$
+		}
+		if (actualSorted != null) {
+			compareSortedRows(actualSorted, expectedRows, colCount, multiException, eMsg);
+		}
+		if (multiException.getTotalFailures() == 1) {
+			throw multiException.getFailures().get(0);
+		} else if (multiException.getTotalFailures() > 1) {
+			throw multiException;
+		}
+
+		compareExecutionTime(testCase, actualResults, expectedResults, eMsg, exceed_percent, exec_minumin_time);
+	}
+
+	/**
+	 * Sorts the expected rows as the actual ones and compares them in sorted order.  The expected
+	 * rows were read into memory from their file, so only their positions are sorted.
+	 */
+	private void compareSortedRows(final SortedRows actualSorted, final List<List<Object>> expectedRows,
+			final int colCount, final MultiTestFailedException multiException, final String eMsg)
+			throws QueryTestFailedException {
+		final int[] expectedOrder = sortRecords(expectedRows, true);
+		SortedRows.Row actualRow = actualSorted.first();
+		for (int row = 0; actualRow != null && row < expectedOrder.length; row++) {
+			final List<Object> expectedRecord = expectedRows.get(expectedOrder[row]);
+			for (int col = 0; col < colCount; col++) {
+				try {
+					compareResultColumn(actualRow.values.get(col), expectedRecord.get(col), row, col,
+							actualRow.position, expectedOrder[row], eMsg, allowedDivergence, allowedDivergenceIsZero);
+				} catch (QueryTestFailedException e) {
+					multiException.addFailure(e);
+				}
+			}
+			actualRow = actualSorted.next();
+		}
+	}
+
+	/**
+	 * Compares the digest of the rows, built while they are read, with the expected one.
+	 * The order of the rows is only checked when the query is ordered.
+	 * <br>
+	 * The results are too large to be written to the error file, so the first
+	 * {@link TestProperties#COMPARE_ERROR_WINDOW} rows are kept on the testcase instead,
+	 * whatever the type of the result set.
+	 * @param testCase
+	 * @param resultSet
+	 * @param actualResults receives the columns of the results
+	 * @param expectedResults with the digest of the expected rows
+	 * @param eMsg
+	 * @param isOrdered
+	 * @throws QueryTestFailedException
+	 */
+	private void compareDigest(final TestCase testCase, final ResultSet resultSet,
+			final ExpectedResultsHolder actualResults, final ExpectedResultsHolder expectedResults,
+			final String eMsg, final boolean isOrdered) throws QueryTestFailedException {
+		if (resultSet == null) {
+			throw new QueryTestFailedException(eMsg
+					+ "Expected results with " + expectedResults.getDigest().getRowCount() //$NON-NLS-1$
+					+ " records, but the query returned no results"); //$NON-NLS-1$
+		}
+		final List<String> columnTypeNames = new ArrayList<String>();
+		final List<String> columnTypes = new ArrayList<String>();
+		final int colCount = readColumns(resultSet, columnTypeNames, columnTypes);
+		actualResults.setIdentifiers(columnTypeNames);
+		actualResults.setTypes(columnTypes);
+
+		final List<List<Object>> keptRows = new ArrayList<List<Object>>();
+		ExpectedResultsHolder kept = new ExpectedResultsHolder(TagNames.Elements.QUERY_RESULTS, (QueryTest) testCase.getActualTest());
+		kept.setRows(keptRows);
+		kept.setIdentifiers(columnTypeNames);
+		kept.setTypes(columnTypes);
+		testCase.setActualResults(kept);
+
+		QueryTestFailedException columnsMismatch = null;
+		try {
+			compareIdentifiers(columnTypeNames, expectedResults.getIdentifiers(),
+					columnTypes, expectedResults.getTypes());
+		} catch (QueryTestFailedException e) {
+			// the first rows are still kept for the error file
+			columnsMismatch = e;
+		}
+
+		final ResultsDigest expected = expectedResults.getDigest();
+		final ResultsDigest actual = new ResultsDigest(colCount);
+		try {
+			while ((columnsMismatch == null || keptRows.size() < errorWindow) && resultSet.next()) {
+				final List<Object> actualRecord = new ArrayList<Object>(colCount);
+				for (int col = 1; col <= colCount; col++) {
+					actualRecord.add(resultSet.getObject(col));
+				}
+				if (keptRows.size() < errorWindow) {
+					keptRows.add(actualRecord);
+				}
+				if (columnsMismatch == null) {
+					actual.addRow(actualRecord);
+				}
+			}
+		} catch (SQLException qre) {
+			throw new QueryTestFailedException(qre,
+					"Can't get results: " + qre.getMessage()); //$NON-NLS-1$
+		}
+		if (columnsMismatch != null) {
+			throw columnsMismatch;
+		}
+
+		if (actual.getRowCount() < expected.getRowCount()) {
+			throw new QueryTestFailedException(eMsg
+					+ "Expected " + expected.getRowCount() + //$NON-NLS-1$
+					" records but received only " + actual.getRowCount()); //$NON-NLS-1$
+		} else if (actual.getRowCount() > expected.getRowCount()) {
+			throw new QueryTestFailedException(eMsg
+					+ "Expected " + expected.getRowCount() + //$NON-NLS-1$
+					" records but received " + actual.getRowCount()); //$NON-NLS-1$
+		}
+		if (expected.getColumnCount() != colCount) {
+			throw new QueryTestFailedException(eMsg
+					+ "The digest of the expected results has " + expected.getColumnCount() //$NON-NLS-1$
+					+ " columns, but the results have " + colCount); //$NON-NLS-1$
+		}
+
+		MultiTestFailedException multiException = new MultiTestFailedException();
+		for (int col = 0; col < colCount; col++) {
+			if (actual.getColumnHash(col) != expected.getColumnHash(col)) {
+				multiException.addFailure(new QueryTestFailedException(eMsg
+						+ "Digest mismatch at column " + (col + 1) + " (" + columnTypeNames.get(col) //$NON-NLS-1$ //$NON-NLS-2$
+						+ "): the values differ from the expected results")); //$NON-NLS-1$
+			}
+		}
+		if (multiException.getTotalFailures() == 0) {
+			if (actual.getUnorderedHash() != expected.getUnorderedHash()) {
+				// each column has the expected values, but they are not in the expected rows
+				throw new QueryTestFailedException(eMsg
+						+ "Digest mismatch: the rows differ from the expected results"); //$NON-NLS-1$
+			} else if (isOrdered && actual.getOrderedHash() != expected.getOrderedHash()) {
+				throw new QueryTestFailedException(eMsg
+						+ "Digest mismatch: the rows are not in the expected order"); //$NON-NLS-1$
+			}
+		} else if (multiException.getTotalFailures() == 1) {
+			throw multiException.getFailures().get(0);
+		} else {
+			throw multiException;
+		}
+
+		compareExecutionTime(testCase, actualResults, expectedResults, eMsg, exceed_percent, exec_minumin_time);
+	}
+
 	/**
 	 * Added primarily for public access to the compare code for testing.
 	 * @param testCase 
@@ -293,11 +616,12 @@ public class XMLCompareResults {
 	 * @param expectedResults
 	 * @param eMsg
 	 * @param isOrdered
+	 * @param hashed the rows are compared as multisets, see {@link HashCompareResults}
 	 * @throws QueryTestFailedException
 	 */
-	private static void compareResults(final TestCase testCase, final ExpectedResultsHolder actualResults,
+	private void compareResults(final TestCase testCase, final ExpectedResultsHolder actualResults,
 			final ExpectedResultsHolder expectedResults, final String eMsg,
-			boolean isOrdered) throws QueryTestFailedException {
+			boolean isOrdered, boolean hashed) throws QueryTestFailedException {
 		// if (actualResults.isException() && expectedResults.isException()) {
 		// // Compare exceptions
 		// compareExceptions(actualResults, expectedResults, eMsg);
@@ -305,36 +629,31 @@ public class XMLCompareResults {
 
 		// if (actualResults.isResult() && expectedResults.isResult()) {
 		// Compare results
-	    final List<List<Object>> originalExpectedRows = cloneList(expectedResults.getRows());
-	    final List<List<Object>> originalActualRows = cloneList(actualResults.getRows());
-		if (isOrdered == false && actualResults.hasRows()
+		int[] actualOrder = null;
+		int[] expectedOrder = null;
+		if (isOrdered == false && hashed == false && actualResults.hasRows()
 				&& expectedResults.hasRows()) {
 			// If the results are not ordered, we can sort both
 			// results and expected results to compare record for record
 			// Otherwise, actual and expected results are already assumed
-			// to be in same order
-
-			// sort the sortedResults in ascending order
-			final List<List<Object>> actualRows = actualResults.getRows();
-			sortRecords(actualRows, true);
-			actualResults.setRows(actualRows);
-
-			// sort the expectedResults with ascending order
-			final List<List<Object>> expectedRows = expectedResults.getRows();
-			sortRecords(expectedRows, true);
-			expectedResults.setRows(expectedRows);
+			// to be in same order.
+			// Only the positions of the rows are sorted, so the rows of the results
+			// are left as they are and the original row of a mismatch is known.
+			actualOrder = sortRecords(actualResults.getRows(), true);
+			expectedOrder = sortRecords(expectedResults.getRows(), true);
 		}
-		try{
-    		compareResultSets(actualResults.getRows(), originalActualRows,
-    		        actualResults.getTypes(), actualResults.getIdentifiers(),
-    		        expectedResults.getRows(), originalExpectedRows,
-    				expectedResults.getTypes(), expectedResults.getIdentifiers(),
-    				eMsg);
-	    } finally {
-            expectedResults.setRows(originalExpectedRows);
-            actualResults.setRows(originalActualRows);
-	    }
+		compareResultSets(actualResults.getRows(), actualOrder,
+				actualResults.getTypes(), actualResults.getIdentifiers(),
+				expectedResults.getRows(), expectedOrder,
+				expectedResults.getTypes(), expectedResults.getIdentifiers(),
+				hashed, eMsg, allowedDivergence, allowedDivergenceIsZero);
 		
+		compareExecutionTime(testCase, actualResults, expectedResults, eMsg, exceed_percent, exec_minumin_time);
+	}
+
+	private static void compareExecutionTime(final TestCase testCase, final ExpectedResultsHolder actualResults,
+			final ExpectedResultsHolder expectedResults, final String eMsg,
+			final double exceed_percent, final long exec_minumin_time) {
 		long a = actualResults.getExecutionTime();
 		long e = expectedResults.getExecutionTime();
 
@@ -358,33 +677,47 @@ public class XMLCompareResults {
 		}
 	}
 
-	private static <T> List<T> cloneList(List<T> list){
-	    if(list == null){
-	        return null;
-	    }
-	    return new ArrayList<T>(list);
-	    
-	}
-	
 	/**
-	 * sort one result that is composed of records of all columns
+	 * sort the positions of one result that is composed of records of all columns,
+	 * the records are not moved
 	 * @param records 
 	 * @param ascending 
+	 * @return the positions of the records in sorted order
 	 */
-	private static void sortRecords(List<List<Object>> records, boolean ascending) {
+	private static int[] sortRecords(final List<List<Object>> records, boolean ascending) {
+		Integer[] positions = new Integer[records.size()];
+		for (int i = 0; i < positions.length; i++) {
+			positions[i] = i;
+		}
 		// if record's size == 0, don't need to sort
 		if (records.size() != 0) {
 			int nFields = records.get(0).size();
-			int[] params = new int[  ( nFields > 3 ? 3 : nFields ) ];
-			for (int k = 0, j = 0; k < params.length; k++, j++) {
-				params[j] = k;
-
-			}
 			if (nFields > 0) {
-				Collections.sort(records, new ListNestedSortComparator(
-					params, ascending));
+				final ListNestedSortComparator comparator = sortComparator(nFields, ascending);
+				Arrays.sort(positions, new Comparator<Integer>() {
+					public int compare(Integer o1, Integer o2) {
+						return comparator.compare(records.get(o1), records.get(o2));
+					}
+				});
 			}
 		}
+		int[] order = new int[positions.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = positions[i];
+		}
+		return order;
+	}
+
+	/**
+	 * @return comparator of records on their first three columns
+	 */
+	private static ListNestedSortComparator sortComparator(int nFields, boolean ascending) {
+		int[] params = new int[  ( nFields > 3 ? 3 : nFields ) ];
+		for (int k = 0, j = 0; k < params.length; k++, j++) {
+			params[j] = k;
+
+		}
+		return new ListNestedSortComparator(params, ascending);
 	}
 
 	private static void compareExceptions(final ExpectedResultsHolder actualResults,
@@ -467,7 +800,8 @@ public class XMLCompareResults {
 	}
 
 	private static void compareResultColumn(Object actualValue, Object expectedValue, int row, int col,
-	        int actualResultRow, int expectedResultRow, final String eMsg) throws QueryTestFailedException {
+	        int actualResultRow, int expectedResultRow, final String eMsg,
+	        final BigDecimal allowedDivergence, final boolean allowedDivergenceIsZero) throws QueryTestFailedException {
 
 	    actualResultRow += 1;
 	    expectedResultRow += 1;
@@ -633,26 +967,38 @@ public class XMLCompareResults {
 	 * element.</br>
 	 * 
 	 * @param actualResults
+	 * @param actualOrder positions of the actual records in compare order, <code>null</code> when in order
 	 * @param actualDatatypes
 	 * @param actualIdentifiers
 	 * @param expectedResults
+	 * @param expectedOrder positions of the expected records in compare order, <code>null</code> when in order
 	 * @param expectedDatatypes
 	 * @param expectedIdentifiers
+	 * @param hashed the rows are compared as multisets, see {@link HashCompareResults}
 	 * @param eMsg
+	 * @param allowedDivergence of the decimal values
+	 * @param allowedDivergenceIsZero
 	 * @throws QueryTestFailedException
 	 *             If comparison fails.
 	 */
 	private static void compareResultSets(
-	        final List<List<Object>> actualResults, final List<List<Object>> originalActualResults, 
+			final List<List<Object>> actualResults, final int[] actualOrder,
 			final List<String> actualDatatypes, final List<String> actualIdentifiers,
-			final List<List<Object>> expectedResults, final List<List<Object>> originalExpectedResults,
+			final List<List<Object>> expectedResults, final int[] expectedOrder,
 			final List<String> expectedDatatypes, final List<String> expectedIdentifiers,
-			final String eMsg)
+			final boolean hashed, final String eMsg,
+			final BigDecimal allowedDivergence, final boolean allowedDivergenceIsZero)
 			throws QueryTestFailedException {
 		// Compare column names and types
 		compareIdentifiers(actualIdentifiers, expectedIdentifiers,
 				actualDatatypes, expectedDatatypes);
 
+		if (hashed) {
+			new HashCompareResults(allowedDivergenceIsZero ? null : allowedDivergence, eMsg)
+					.compare(actualResults, expectedResults);
+			return;
+		}
+
 		// Walk through records and compare actual against expected
 		final int actualRowCount = actualResults.size();
 		final int expectedRowCount = expectedResults.size();
@@ -674,32 +1020,18 @@ public class XMLCompareResults {
 		// DEBUG:
 		// debugOut.println("================== Compariing Rows ===================");
 		
-		if(allowedDivergence == null){ // we do not allow different divergence for different queries
-			String allowedDivergenceStr = ConfigPropertyLoader.getInstance().getProperty(TestProperties.ALLOWED_DIVERGENCE);
-			if(allowedDivergenceStr == null || allowedDivergenceStr.isEmpty()){
-				allowedDivergence = BigDecimal.ZERO;
-				allowedDivergenceIsZero = true;
-			} else {
-				try{
-					allowedDivergence = new BigDecimal(allowedDivergenceStr);
-					allowedDivergenceIsZero = allowedDivergence.compareTo(BigDecimal.ZERO) == 0;
-				} catch (NumberFormatException ex){
-					allowedDivergence = BigDecimal.ZERO;
-					allowedDivergenceIsZero = true;
-				}
-			}
-		}
-		
 		MultiTestFailedException multiException = new MultiTestFailedException();
 		
 		// Loop through rows
 		for (int row = 0; row < actualRowCount; row++) {
 
 			// Get actual record
-			final List<Object> actualRecord = actualResults.get(row);
+			final int actualRow = actualOrder == null ? row : actualOrder[row];
+			final List<Object> actualRecord = actualResults.get(actualRow);
 
 			// Get expected record
-			final List<Object> expectedRecord = expectedResults.get(row);
+			final int expectedRow = expectedOrder == null ? row : expectedOrder[row];
+			final List<Object> expectedRecord = expectedResults.get(expectedRow);
 
 			// DEBUG:
 			// debugOut.println("Row: " + (row + 1));
@@ -716,9 +1048,7 @@ public class XMLCompareResults {
 
 				try {
 					compareResultColumn(actualValue, expectedValue, row, col,
-					        getIndexByRef(originalActualResults, actualRecord),
-					        getIndexByRef(originalExpectedResults, expectedRecord),
-					        eMsg);
+							actualRow, expectedRow, eMsg, allowedDivergence, allowedDivergenceIsZero);
 				} catch (QueryTestFailedException e) {
 					multiException.addFailure(e);
 				}
@@ -733,20 +1063,18 @@ public class XMLCompareResults {
 		}
 	}
 
-	private static <T> int getIndexByRef(List<T> list, T o){
-	    if(list == null){
-	        return -1;
-	    }
-	    int i = 0;
-	    for(T t : list){
-	        if(t == o){
-	            return i;
-	        }
-	        i++;
-	    }
-	    return -1;
+	private static BigDecimal getAllowedDivergence(Properties props) {
+		String allowedDivergenceStr = props.getProperty(TestProperties.ALLOWED_DIVERGENCE);
+		if(allowedDivergenceStr == null || allowedDivergenceStr.trim().isEmpty()){
+			return BigDecimal.ZERO;
+		}
+		try{
+			return new BigDecimal(allowedDivergenceStr.trim());
+		} catch (NumberFormatException ex){
+			return BigDecimal.ZERO;
+		}
 	}
-	
+
 	private static void compareIdentifiers(List<String> actualIdentifiers,
 			List<String> expectedIdentifiers, List<String> actualDataTypes,
 			List<String> expectedDatatypes) throws QueryTestFailedException {
@@ -781,8 +1109,9 @@ public class XMLCompareResults {
 //				actualType = "string";//$NON-NLS-1$
 //			}
 
-			if (actualType.equalsIgnoreCase("blob")) {
-				Class<?> nodeType = TagNames.TYPE_MAP.get(actualType);
+			// expected results can declare a blob as a string, drivers name the type in upper case
+			if (actualType.equalsIgnoreCase("blob") && !expectedType.equalsIgnoreCase(actualType)) {
+				Class<?> nodeType = TagNames.TYPE_MAP.get(actualType.toLowerCase());
 				actualType = nodeType.getSimpleName();
 			}
 			if (!expectedType.equalsIgnoreCase(actualType)) {
@@ -895,4 +1224,37 @@ public class XMLCompareResults {
 //		}
 //		return text;
 //	}
+
+	/**
+	 * The rows of a forward only result set that are kept for the error file: the last rows
+	 * read until the first mismatch, then the rows that follow it.
+	 */
+	private static class RowWindow {
+		private final int size;
+		private final LinkedList<List<Object>> rows = new LinkedList<List<Object>>();
+		private int following = -1;
+
+		RowWindow(int size) {
+			this.size = Math.max(size, 1);
+		}
+
+		void add(List<Object> record, boolean mismatch) {
+			if (this.following < 0) {
+				if (this.rows.size() == this.size) {
+					this.rows.removeFirst();
+				}
+				this.rows.add(record);
+				if (mismatch) {
+					this.following = this.size;
+				}
+			} else if (this.following > 0) {
+				this.rows.add(record);
+				this.following--;
+			}
+		}
+
+		List<List<Object>> getRows() {
+			return new ArrayList<List<Object>>(this.rows);
+		}
+	}
 }
@@ -22,9 +22,7 @@
 
 package org.jboss.bqt.client.results.xml;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.sql.ResultSet;
@@ -33,15 +31,18 @@ import java.util.Properties;
 
 import org.jboss.bqt.client.ClientPlugin;
 import org.jboss.bqt.client.QueryTest;
+import org.jboss.bqt.client.TestProperties;
 import org.jboss.bqt.client.api.ExpectedResults;
 import org.jboss.bqt.client.api.ExpectedResultsWriter;
 import org.jboss.bqt.client.api.QueryScenario;
 import org.jboss.bqt.client.results.ExpectedResultsHolder;
+import org.jboss.bqt.client.util.OutputWriter;
 import org.jboss.bqt.client.xml.TagNames;
 import org.jboss.bqt.client.xml.XMLQueryVisitationStrategy;
 import org.jboss.bqt.core.exception.FrameworkException;
 import org.jboss.bqt.core.util.ExceptionUtil;
 import org.jboss.bqt.core.util.FileUtils;
+import org.jboss.bqt.core.util.PropertiesUtils;
 import org.jboss.bqt.core.xml.JdomHelper;
 import org.jboss.bqt.framework.AbstractQuery;
 import org.jboss.bqt.framework.TestCase;
@@ -94,20 +95,12 @@ public class XMLExpectedResultsWriter extends ExpectedResultsWriter{
 		
 		ExpectedResultsHolder rh = null;		
 
-		OutputStream outputStream;
-		try {
-			FileOutputStream fos = new FileOutputStream(resultsFile);
-			outputStream = new BufferedOutputStream(fos);
-		} catch (IOException e) {
-			throw new FrameworkException(
-					"Failed to open new results file: " + resultsFile.getPath() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
-		}
-
+		final Element rootElement;
 		try {
 			XMLQueryVisitationStrategy jstrat = new XMLQueryVisitationStrategy();
 
 			// Create root JDOM element
-			Element rootElement = new Element(TagNames.Elements.ROOT_ELEMENT);
+			rootElement = new Element(TagNames.Elements.ROOT_ELEMENT);
 
 			// Create Query element
 			Element queryElement = new Element(TagNames.Elements.QUERY);
@@ -121,8 +114,9 @@ public class XMLExpectedResultsWriter extends ExpectedResultsWriter{
 			if (result != null) {
 				
 				rh = new ExpectedResultsHolder(TagNames.Elements.QUERY, (QueryTest) testcase.getActualTest() );
-				// produce a JDOM element from the results object
-				Element resultsElement = jstrat.produceResults(result);
+				// produce a JDOM element from the results object, or from their digest
+				Element resultsElement = isDigest((QueryTest) testcase.getActualTest())
+						? jstrat.produceDigest(result) : jstrat.produceResults(result);
 				// set the resultsIDAttribute on the results element
 				resultsElement.setAttribute(resultsIDAttribute);
 				
@@ -167,34 +161,37 @@ public class XMLExpectedResultsWriter extends ExpectedResultsWriter{
 			
 			rh.setExpectedResultsFile(resultsFile);
 
-			// Output xml
-			XMLOutputter outputter = new XMLOutputter(JdomHelper.getFormat(
-					"  ", true)); //$NON-NLS-1$
-			outputter.output(new Document(rootElement), outputStream);
-
 		} catch (SQLException e) {
 			throw new FrameworkException(
 					"Failed to convert results to JDOM: " + e.getMessage()); //$NON-NLS-1$
 		} catch (JDOMException e) {
 			throw new FrameworkException(
 					"Failed to convert results to JDOM: " + e.getMessage()); //$NON-NLS-1$
-		} catch (IOException e) {
-			throw new FrameworkException(
-					"Failed to output new results to " + resultsFile.getPath() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
 		} catch (Throwable e) {
 			throw new FrameworkException(
 					"Failed to convert results to JDOM: " + ExceptionUtil.getStackTrace(e)); //$NON-NLS-1$
-		} finally {
-			try {
-				outputStream.close();
-			} catch (IOException e) {
-			}
 		}
+
+		// Output xml
+		getQueryScenario().getOutputWriter().write(resultsFile, new OutputWriter.Output() {
+			public void writeTo(OutputStream out) throws IOException {
+				XMLOutputter outputter = new XMLOutputter(JdomHelper.getFormat(
+						"  ", true)); //$NON-NLS-1$
+				outputter.output(new Document(rootElement), out);
+			}
+		});
 		return rh;
 	}
 
 
 
+	private boolean isDigest(QueryTest test) {
+		if (test.getDigest() != null) {
+			return test.getDigest().booleanValue();
+		}
+		return PropertiesUtils.getBooleanProperty(getProperties(), TestProperties.GENERATE_DIGEST, false);
+	}
+
 	private File createNewResultsFile(String querySetID, String genDir, String filename) {
 
 		String targetDirname = genDir + File.separator + querySetID; //$NON-NLS-1$
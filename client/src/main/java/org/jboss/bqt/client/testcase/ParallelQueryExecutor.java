@@ -0,0 +1,200 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.testcase;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.bqt.client.ClientPlugin;
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.core.exception.FrameworkException;
+import org.jboss.bqt.core.exception.FrameworkRuntimeException;
+import org.jboss.bqt.framework.TransactionAPI;
+
+/**
+ * Executes the query tests of one query set on a number of workers, each of them with its own
+ * {@link TransactionAPI}, and therefore its own connection.  In the pool mode each worker is a
+ * thread that takes the next query test from the shared queue.  In the
+ * {@link TestProperties#EXECUTION_MODE_VIRTUAL virtual} mode every query test is a task
+ * of its own, which borrows an idle transaction once the semaphore lets it run.
+ * <br>
+ * Once a query test fails in a way that stops the scenario, the query tests that have
+ * not started are not executed.
+ */
+class ParallelQueryExecutor {
+
+	/**
+	 * Executes one query test of the query set.
+	 */
+	interface Task {
+		/**
+		 * @param index of the query test in the query set
+		 * @param transaction used only by this task until it returns
+		 * @return Exception that should stop the scenario, <code>null</code> to continue
+		 */
+		Exception run(int index, TransactionAPI transaction);
+	}
+
+	private final boolean virtualThreads;
+
+	/**
+	 * @param virtualThreads <code>true</code> for the {@link TestProperties#EXECUTION_MODE_VIRTUAL virtual} mode
+	 */
+	ParallelQueryExecutor(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Executes the tasks of the query tests <code>0..count-1</code>, at most one per transaction
+	 * at the same time, and returns once they are done.
+	 * @param count number of query tests
+	 * @param transactions one per worker
+	 * @param task
+	 * @return Exception that should stop the scenario, <code>null</code> to continue
+	 * @throws RuntimeException thrown by a task, after the other workers are done
+	 */
+	Exception execute(final int count, List<TransactionAPI> transactions, final Task task) {
+		final AtomicReference<Exception> scenarioFailException = new AtomicReference<Exception>();
+		final AtomicReference<RuntimeException> workerException = new AtomicReference<RuntimeException>();
+
+		ExecutorService executor = virtualThreads ? newVirtualThreadExecutor() : Executors.newFixedThreadPool(transactions.size());
+		try {
+			if (virtualThreads) {
+				// one task per query test, the semaphore limits how many hold a transaction
+				final Semaphore permits = new Semaphore(transactions.size(), true);
+				final Queue<TransactionAPI> idleTransactions = new ConcurrentLinkedQueue<TransactionAPI>(transactions);
+				for (int i = 0; i < count; i++) {
+					final int index = i;
+					executor.execute(new Runnable() {
+						public void run() {
+							try {
+								permits.acquire();
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+								return;
+							}
+							TransactionAPI transaction = idleTransactions.poll();
+							try {
+								if (scenarioFailException.get() == null && workerException.get() == null) {
+									Exception failure = task.run(index, transaction);
+									if (failure != null) {
+										scenarioFailException.compareAndSet(null, failure);
+									}
+								}
+							} catch (RuntimeException e) {
+								workerException.compareAndSet(null, e);
+							} finally {
+								idleTransactions.add(transaction);
+								permits.release();
+							}
+						}
+					});
+				}
+			} else {
+				final AtomicInteger nextTest = new AtomicInteger(0);
+				for (final TransactionAPI transaction : transactions) {
+					executor.execute(new Runnable() {
+						public void run() {
+							try {
+								int i;
+								while (scenarioFailException.get() == null && workerException.get() == null
+										&& (i = nextTest.getAndIncrement()) < count) {
+									Exception failure = task.run(i, transaction);
+									if (failure != null) {
+										scenarioFailException.compareAndSet(null, failure);
+									}
+								}
+							} catch (RuntimeException e) {
+								workerException.compareAndSet(null, e);
+							}
+						}
+					});
+				}
+			}
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// wait for the workers to empty the queue
+			}
+		} catch (InterruptedException e) {
+			ClientPlugin.LOGGER.info("Thread has been interrupted.");
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			scenarioFailException.compareAndSet(null, new FrameworkRuntimeException(FrameworkException.ErrorCodes.BQT_INTERRUPTED, "BQT thread has been interrupted."));
+		}
+
+		if (workerException.get() != null) {
+			throw workerException.get();
+		}
+		return scenarioFailException.get();
+	}
+
+	/**
+	 * @return <code>true</code> when this JVM has virtual threads, JDK 21 and newer
+	 */
+	static boolean isVirtualThreadsSupported() {
+		return VirtualThreads.EXECUTOR_FACTORY != null;
+	}
+
+	/**
+	 * Creates an executor that starts a new virtual thread for each task.  Virtual threads
+	 * are only available on JDK 21 and newer, so the executor is looked up reflectively
+	 * and older runtimes get a platform thread for each task instead.
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		if (isVirtualThreadsSupported()) {
+			try {
+				return (ExecutorService) VirtualThreads.EXECUTOR_FACTORY.invoke(null);
+			} catch (Exception e) {
+				throw new FrameworkRuntimeException(e, "Unable to create virtual thread executor.");
+			}
+		}
+		return Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Looks up <code>Executors.newVirtualThreadPerTaskExecutor()</code> the first time
+	 * the virtual execution mode is used, <code>null</code> before JDK 21.
+	 */
+	private static class VirtualThreads {
+		static final Method EXECUTOR_FACTORY = find();
+
+		private static Method find() {
+			try {
+				return Executors.class.getMethod("newVirtualThreadPerTaskExecutor"); //$NON-NLS-1$
+			} catch (NoSuchMethodException e) {
+				ClientPlugin.LOGGER.warn("Virtual threads are not supported by this JVM ["
+						+ System.getProperty("java.version") + "], platform threads will be used in the " //$NON-NLS-1$
+						+ TestProperties.EXECUTION_MODE_VIRTUAL + " execution mode.");
+				return null;
+			}
+		}
+	}
+}
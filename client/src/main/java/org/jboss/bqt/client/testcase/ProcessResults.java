@@ -22,10 +22,16 @@
 
 package org.jboss.bqt.client.testcase;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.jboss.bqt.client.ClientPlugin;
 import org.jboss.bqt.client.QuerySQL;
@@ -33,16 +39,21 @@ import org.jboss.bqt.client.QueryTest;
 import org.jboss.bqt.client.TestProperties;
 import org.jboss.bqt.client.TestResultsSummary;
 import org.jboss.bqt.client.api.QueryScenario;
+import org.jboss.bqt.client.jmx.RunMonitor;
+import org.jboss.bqt.client.resultmode.Benchmark;
 import org.jboss.bqt.core.exception.FrameworkException;
 import org.jboss.bqt.core.exception.FrameworkRuntimeException;
 import org.jboss.bqt.core.exception.QueryTestFailedException;
+import org.jboss.bqt.core.util.PropertiesUtils;
 import org.jboss.bqt.framework.AbstractQuery;
+import org.jboss.bqt.framework.ActualTest;
 import org.jboss.bqt.framework.ConfigPropertyLoader;
 import org.jboss.bqt.framework.FrameworkPlugin;
 import org.jboss.bqt.framework.TestCase;
 import org.jboss.bqt.framework.TestCaseLifeCycle;
 import org.jboss.bqt.framework.TestResult;
 import org.jboss.bqt.framework.TransactionAPI;
+import org.jboss.bqt.framework.TransactionFactory;
 import org.jboss.bqt.framework.connection.ConnectionStrategyFactory;
 import org.jboss.bqt.framework.util.AssertResults;
 
@@ -59,6 +70,33 @@ public class ProcessResults implements TestCaseLifeCycle {
 	private TransactionAPI trans;
 	
 	private AbstractQuery abQuery;
+	
+	private int executionThreads = 1;
+	
+	private boolean virtualThreads = false;
+	
+	private int numberOfClients = 1;
+	
+	private int batchSize = 1;
+	
+	/** the driver did not report the update counts of a batch, see {@link Statement#SUCCESS_NO_INFO} */
+	private volatile boolean batchCountsUnknown = false;
+	
+	private int warmupTimes = 0;
+	
+	private int pipelineDepth = 0;
+	
+	private long queryTimeout = -1;
+	
+	private long querySetTimeout = -1;
+	
+	/** time at which the query set being executed times out, -1 for no limit */
+	private volatile long querySetDeadline = -1;
+	
+	private QueryWatchdog watchdog = new QueryWatchdog();
+	
+	/** transactions of the simulated clients 2..n, created by the first query set they run */
+	private List<TransactionAPI> loadClientTransactions = new ArrayList<TransactionAPI>();
 
 	public ProcessResults(QueryScenario scenario) {
 		super();
@@ -110,12 +148,70 @@ public class ProcessResults implements TestCaseLifeCycle {
 			numOfQueries += scenario.getQueries(qsid).size();
 		}
 		//------- end scenario limit -------
+		
+		//------- execution threads -------
+		executionThreads = PropertiesUtils.getIntProperty(ConfigPropertyLoader.getInstance().getProperties(),
+				TestProperties.EXECUTION_THREADS, 1);
+		String executionMode = ConfigPropertyLoader.getInstance().getProperty(TestProperties.EXECUTION_MODE);
+		virtualThreads = TestProperties.EXECUTION_MODE_VIRTUAL.equalsIgnoreCase(executionMode);
+		if (executionMode != null && !virtualThreads
+				&& !TestProperties.EXECUTION_MODE_POOL.equalsIgnoreCase(executionMode)) {
+			ClientPlugin.LOGGER.warn("Unknown execution mode [scenario: " + scenario.getQueryScenarioIdentifier()
+					+ ", mode: " + executionMode + "], " + TestProperties.EXECUTION_MODE_POOL + " will be used.");
+		}
+		if (executionThreads > 1) {
+			ClientPlugin.LOGGER.info("Executing queries using " + executionThreads 
+					+ (virtualThreads ? " concurrent virtual threads" : " threads") + " [scenario: "
+					+ scenario.getQueryScenarioIdentifier() + "]");
+		}
+		//------- end execution threads -------
+		
+		//------- clients -------
+		numberOfClients = PropertiesUtils.getIntProperty(ConfigPropertyLoader.getInstance().getProperties(),
+				TestProperties.CLIENTS, 1);
+		if (numberOfClients > 1) {
+			ClientPlugin.LOGGER.info("Simulating " + numberOfClients + " clients [scenario: "
+					+ scenario.getQueryScenarioIdentifier() + "]");
+		}
+		//------- end clients -------
+		batchSize = PropertiesUtils.getIntProperty(ConfigPropertyLoader.getInstance().getProperties(),
+				TestProperties.BATCH_SIZE, 1);
+		warmupTimes = PropertiesUtils.getIntProperty(ConfigPropertyLoader.getInstance().getProperties(),
+				TestProperties.QUERY_WARMUP, 0);
+		//------- pipeline -------
+		pipelineDepth = PropertiesUtils.getIntProperty(ConfigPropertyLoader.getInstance().getProperties(),
+				TestProperties.PIPELINE_DEPTH, 0);
+		if (pipelineDepth > 0 && PropertiesUtils.getBooleanProperty(ConfigPropertyLoader.getInstance().getProperties(),
+				TestProperties.QUERY_PLAN, false)) {
+			// the query plan is read from the statement, which is reused by the next query
+			ClientPlugin.LOGGER.warn("Results are processed before the next query is executed, query plans are enabled [scenario: "
+					+ scenario.getQueryScenarioIdentifier() + "]");
+			pipelineDepth = 0;
+		}
+		//------- end pipeline -------
+		//------- timeouts -------
+		queryTimeout = PropertiesUtils.getLongProperty(ConfigPropertyLoader.getInstance().getProperties(),
+				TestProperties.QUERY_TIMEOUT, -1);
+		querySetTimeout = PropertiesUtils.getLongProperty(ConfigPropertyLoader.getInstance().getProperties(),
+				TestProperties.QUERY_SET_TIMEOUT, -1);
+		//------- end timeouts -------
 		Iterator<String> qsetIt = scenario.getQuerySetIDs().iterator();
 		
 		TestResultsSummary summary = this.scenario.getTestResultsSummary();
 
 		FrameworkRuntimeException fre = null;
 		
+		ResultsPipeline pipeline = null;
+		if (pipelineDepth > 0) {
+			ClientPlugin.LOGGER.info("Processing results while the next queries execute, up to " + pipelineDepth
+					+ " results are waiting [scenario: " + scenario.getQueryScenarioIdentifier() + "]");
+			pipeline = new ResultsPipeline(pipelineDepth, summary, new ResultsPipeline.Stage() {
+				public void process(TestCase testcase, TransactionAPI results) {
+					after(testcase, results);
+				}
+			});
+		}
+		
 		try {
 
 			long expectedEndTime = timeForOneQuery < 0 ? -1l : (((long)timeForOneQuery) * numOfQueries + System.currentTimeMillis());
@@ -127,68 +223,72 @@ public class ProcessResults implements TestCaseLifeCycle {
 				querySetID = qsetIt.next();
 
 				ClientPlugin.LOGGER.info("Start TestResult:  QuerySetID [" + querySetID + "]");
+				RunMonitor.getInstance().querySetStarted(scenario.getQueryScenarioIdentifier(), querySetID);
 
 				final List<QueryTest> queryTests = scenario.getQueries(querySetID);
 
-				// the iterator to process the query tests
-				Iterator<QueryTest> queryTestIt = queryTests.iterator();
-
 				long beginTS = System.currentTimeMillis();
+				querySetDeadline = querySetTimeout > 0 ? beginTS + querySetTimeout : -1;
 
-				while (nextLoop && queryTestIt.hasNext()) {
-				    if(Thread.currentThread().isInterrupted()){
-			            ClientPlugin.LOGGER.info("Thread has been interrupted.");
-			            nextLoop = false;
-			            scenarioFailException = new FrameworkRuntimeException(FrameworkException.ErrorCodes.BQT_INTERRUPTED, "BQT thread has been interrupted.");
-			            continue;
-			        }
-					QueryTest q = queryTestIt.next();
-					
-					TestResult testResult = new TestResult(q.getQuerySetID(), q.getQueryID());
-					
-					TestCase testcase = new TestCase(q);
-					testcase.setTestResult(testResult);
-					
-					ClientPlugin.LOGGER.debug("Test: QuerySetID [" + testResult.getQuerySetID() + " - " + testResult.getQueryID() + "]");
+				ExecutorService loadClients = startLoadClients(querySetID, queryTests, expectedEndTime, summary);
 
-					testResult.setResultMode(this.scenario.getResultsMode());
-					testResult.setStatus(TestResult.RESULT_STATE.TEST_PRERUN);
-					try {
-						abQuery.before(testcase);
+				if (scenario.isBenchmark()) {
+					Exception failure = runBenchmark(querySetID, queryTests, trans, expectedEndTime, summary);
+					if (failure != null) {
+						nextLoop = false;
+						scenarioFailException = failure;
+					}
+				} else if (executionThreads > 1 && queryTests.size() > 1 && isReadOnly(querySetID, queryTests)) {
+					Exception failure = runQueryTestsInParallel(queryTests, expectedEndTime, summary);
+					if (failure != null) {
+						nextLoop = false;
+						scenarioFailException = failure;
+					}
+				} else {
+					int next = 0;
 
-						if(expectedEndTime >=0 
-								&& expectedEndTime < System.currentTimeMillis()){
-							nextLoop = false;
-							throw new FrameworkRuntimeException(FrameworkException.ErrorCodes.SCENARIO_ABORTED,
-									"Scenario aborted - maximum time exceeded.");
-						}
-						
-						executeTest(testcase);
-					} catch (QueryTestFailedException qtfe) {
-						// dont set on testResult, handled in transactionAPI
-						
-					} catch (Exception rme) {
-						if (ClientPlugin.LOGGER.isDebugEnabled()) {
-							rme.printStackTrace();
-						}
-						abQuery.setApplicationException(rme);
-						
-						if(rme instanceof FrameworkRuntimeException){
-							String code = ((FrameworkRuntimeException) rme).getCode();
-							if(FrameworkException.ErrorCodes.SERVER_CONNECTION_EXCEPTION.equals(code)
-									|| FrameworkException.ErrorCodes.DB_CONNECTION_EXCEPTION.equals(code)
-									|| FrameworkException.ErrorCodes.SCENARIO_ABORTED.equals(code)){
-								nextLoop = false;
-								scenarioFailException = rme;
+					while (nextLoop && next < queryTests.size()) {
+					    if(Thread.currentThread().isInterrupted()){
+				            ClientPlugin.LOGGER.info("Thread has been interrupted.");
+				            nextLoop = false;
+				            scenarioFailException = new FrameworkRuntimeException(FrameworkException.ErrorCodes.BQT_INTERRUPTED, "BQT thread has been interrupted.");
+				            continue;
+				        }
+						int batched = countBatchableTests(queryTests, next);
+						Exception failure;
+						if (batched > 1) {
+							if (pipeline != null) {
+								// the batch adds its tests to the summary, after the waiting ones
+								pipeline.drain();
 							}
+							failure = runBatchedQueryTests(queryTests.subList(next, next + batched), trans, expectedEndTime, summary);
+							next += batched;
+						} else if (pipeline != null) {
+							TestCase testcase = createTestCase(queryTests.get(next++));
+
+							failure = runPipelinedQueryTest(testcase, trans, expectedEndTime, pipeline);
+						} else {
+							TestCase testcase = createTestCase(queryTests.get(next++));
+
+							failure = runQueryTest(testcase, trans, expectedEndTime);
+
+							summary.addTest(testcase.getTestResult().getQuerySetID(), testcase.getTestResult());
+						}
+
+						if (failure != null) {
+							nextLoop = false;
+							scenarioFailException = failure;
 						}
-					} finally {
-						abQuery.after();
 					}
-						
-					after(testcase);
-					
-					trans.cleanup();
+					if (pipeline != null) {
+						pipeline.drain();
+					}
+				}
+
+				Exception loadFailure = awaitLoadClients(loadClients);
+				if (loadFailure != null && scenarioFailException == null) {
+					nextLoop = false;
+					scenarioFailException = loadFailure;
 				}
 
 				long endTS = System.currentTimeMillis();
@@ -196,7 +296,7 @@ public class ProcessResults implements TestCaseLifeCycle {
 				ClientPlugin.LOGGER.info("End TestResult: QuerySetID [" + querySetID + "]");
 
 				try {
-					summary.printResults(querySetID, beginTS, endTS);
+					summary.printResults(querySetID, beginTS, endTS, loadClients == null ? 1 : numberOfClients);
 				} catch (Exception e) {
 					fre = new FrameworkRuntimeException(e);
 					throw fre;
@@ -205,7 +305,18 @@ public class ProcessResults implements TestCaseLifeCycle {
 			}
 
 		} finally {
+			if (pipeline != null) {
+				pipeline.shutdown();
+			}
+			watchdog.shutdown();
+			for (TransactionAPI transaction : loadClientTransactions) {
+				transaction.cleanup();
+				((AbstractQuery) transaction).getConnectionStrategy().shutdown();
+			}
+			loadClientTransactions.clear();
 			try {
+				// the error and expected results files are written before the totals report the scenario
+				scenario.closeOutputWriter();
 				summary.printTotals(numOfQueries);
 				if(scenarioFailException != null){
 					summary.printServerConnectionException(scenarioFailException);
@@ -236,6 +347,10 @@ public class ProcessResults implements TestCaseLifeCycle {
 
 
 	public void executeTest(TestCase testcase) throws Exception {
+		executeTest(testcase, abQuery);
+	}
+
+	private void executeTest(TestCase testcase, AbstractQuery abQuery) throws Exception {
 		
 		QueryTest test = (QueryTest) testcase.getActualTest();
 		TestResult testResult = testcase.getTestResult();
@@ -249,7 +364,7 @@ public class ProcessResults implements TestCaseLifeCycle {
 		
 		// multiple queries cannot be processed as a single result
 		// therefore, only the NONE result mode is valid
-		if (l > 1) {
+		if (l > 1 && !scenario.isBenchmark()) {
 			resultModeNone = true;
 			testResult.setResultMode(TestProperties.RESULT_MODES.NONE);
 			if (!scenario.isNone()) {
@@ -260,11 +375,19 @@ public class ProcessResults implements TestCaseLifeCycle {
 
 		for (int i = 0; i < l; i++) {
 			QuerySQL qsql = queries[i];
+
+			int batched = countBatchableQueries(queries, i);
+			if (batched > 1) {
+				executeBatch(testResult, abQuery, queries, i, batched);
+				i += batched - 1;
+				continue;
+			}
+
 			testResult.setQuery(qsql.getSql());
 			
 			// if runtimes or rowcounts are greater than 1, then no expected results will
 			// be processed, therefore, resultmode is set to NONE for this query
-			if ( !resultModeNone && (qsql.getRunTimes() > 1 || qsql.getRowCnt() > 0)) {
+			if ( !resultModeNone && !scenario.isBenchmark() && (qsql.getRunTimes() > 1 || qsql.getRowCnt() > 0)) {
 				resultModeNone = true;
 				testResult.setResultMode(TestProperties.RESULT_MODES.NONE);
 				ClientPlugin.LOGGER.info("Overriding ResultMode to NONE due to runtimes or rowcount for QueryID [" + testResult.getQueryID() + "]");
@@ -275,9 +398,14 @@ public class ProcessResults implements TestCaseLifeCycle {
 					qsql.getRunTimes() + " rowcount: "  + qsql.getRowCnt() + " updatecnt: " + 
 					qsql.getUpdateCnt());
 			ClientPlugin.LOGGER.info("Query [" + testResult.getQueryID() + "]: " + testResult.getQuery());
-			for (int r = 0; r < qsql.getRunTimes(); r++) {
+			int warmup = qsql.getWarmupTimes() >= 0 ? qsql.getWarmupTimes()
+					: (qsql.getRunTimes() > 1 ? warmupTimes : 0);
+			for (int r = -warmup; r < qsql.getRunTimes(); r++) {
 
 				abQuery.execute(testResult.getQuery(), qsql.getParms(), qsql.getPayLoad());
+				if (r >= 0) {
+					testResult.getLatencies().record(abQuery.getExecutionNanos());
+				}
 				// check for NONE first, because it can be changed based on conditions
 				// NOTE: isSQL() isn't processed in this class and therefore isn't looked for
 				if (resultModeNone) {
@@ -301,9 +429,253 @@ public class ProcessResults implements TestCaseLifeCycle {
 		}		
 	}
 	
-	private void after(TestCase testcase) {
+	/**
+	 * @return number of consecutive statements, starting at <code>start</code>, that are executed
+	 * as one batch
+	 */
+	private int countBatchableQueries(QuerySQL[] queries, int start) {
+		int n = 0;
+		while (n < batchSize && start + n < queries.length && queries[start + n].isBatchable()
+				&& !(batchCountsUnknown && queries[start + n].getUpdateCnt() >= 0)) {
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * @return number of consecutive tests of a single statement, starting at <code>start</code>, 
+	 * that are executed as one batch
+	 */
+	private int countBatchableTests(List<QueryTest> queryTests, int start) {
+		if (querySetDeadline >= 0 && querySetDeadline <= System.currentTimeMillis()) {
+			// each of the remaining tests is reported as timed out
+			return 1;
+		}
+		int n = 0;
+		while (n < batchSize && start + n < queryTests.size()) {
+			QuerySQL[] queries = queryTests.get(start + n).getQueries();
+			if (queries.length != 1 || !queries[0].isBatchable()) {
+				break;
+			}
+			if (batchCountsUnknown && (!scenario.isNone() || queries[0].getUpdateCnt() >= 0)) {
+				// the update count of the test is needed, which the batch does not report
+				break;
+			}
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Executes the statements of a test as one batch and checks the update count
+	 * of each statement.  Only used when the result mode is NONE, because the test has
+	 * multiple statements.
+	 */
+	private void executeBatch(TestResult testResult, AbstractQuery abQuery, QuerySQL[] queries,
+			int start, int batched) throws QueryTestFailedException {
+		String[] sql = new String[batched];
+		for (int j = 0; j < batched; j++) {
+			sql[j] = queries[start + j].getSql();
+		}
+		ClientPlugin.LOGGER.info("Query [" + testResult.getQueryID() + "]: batch of " + batched + " statements");
+
+		testResult.setQuery(sql[batched - 1]);
+		int[] counts = getBatchCounts(abQuery.executeBatch(sql), batched);
+
+		testResult.setRowCount(0);
+		for (int j = 0; j < batched; j++) {
+			testResult.setUpdateCount(counts[j]);
+			if (counts[j] == Statement.SUCCESS_NO_INFO) {
+				setBatchCountsUnknown();
+			} else if (queries[start + j].getUpdateCnt() >= 0) {
+				testResult.setQuery(sql[j]);
+				AssertResults.assertUpdateCount(testResult, queries[start + j].getUpdateCnt());
+			}
+		}
+		testResult.setQuery(sql[batched - 1]);
+	}
+
+	/**
+	 * Executes the statements of consecutive tests as one batch, each test is then processed
+	 * as if its statement had been executed on its own, with an equal share of the batch
+	 * execution time.  The tests of the statements that failed, or were not executed because
+	 * the batch stopped, are run on their own, which reports the failure the same way as 
+	 * without batching (a failed statement has not changed anything).  When the batch does not
+	 * finish within the timeouts of its tests, it is cancelled and all its tests are reported
+	 * as timed out.  When the driver does not return the update count of a statement, it is
+	 * not checked, and the tests that need their update count are no longer batched.
+	 *
+	 * @param queryTests tests of one batchable statement each
+	 * @param transaction
+	 * @param expectedEndTime time at which the scenario is aborted, -1 for no limit
+	 * @param summary
+	 * @return Exception that should stop the scenario, <code>null</code> to continue
+	 */
+	private Exception runBatchedQueryTests(List<QueryTest> queryTests, TransactionAPI transaction,
+			long expectedEndTime, TestResultsSummary summary) {
+		AbstractQuery abQuery = (AbstractQuery) transaction;
+		int batched = queryTests.size();
+		String[] sql = new String[batched];
+		for (int j = 0; j < batched; j++) {
+			sql[j] = queryTests.get(j).getQueries()[0].getSql();
+		}
+
+		TestCase first = createTestCase(queryTests.get(0));
+		int[] counts = null;
+		boolean timedOut = false;
+		long beginTS = System.currentTimeMillis();
+		try {
+			abQuery.before(first);
+			if(expectedEndTime < 0
+					|| expectedEndTime >= System.currentTimeMillis()){
+				ClientPlugin.LOGGER.info("QuerySetID [" + first.getTestResult().getQuerySetID() + "]: batch of " + batched + " statements");
+				QueryWatchdog.Watch watch = watch(first, transaction, getBatchTimeout(queryTests));
+				try {
+					beginTS = System.currentTimeMillis();
+					counts = abQuery.executeBatch(sql);
+				} finally {
+					stopWatch(first, watch);
+					timedOut = first.getTestResult().getStatus() == TestResult.RESULT_STATE.TEST_TIMEOUT;
+				}
+			}
+		} catch (QueryTestFailedException qtfe) {
+			counts = getBatchCounts(qtfe, batched);
+		} catch (RuntimeException e) {
+			// not able to execute, i.e. no connection, the first test is run on its own to report it
+		}
+		if (timedOut) {
+			// the tests would time out again when run on their own
+			abQuery.after();
+			transaction.cleanup();
+			for (int j = 0; j < batched; j++) {
+				TestCase testcase = j == 0 ? first : createTestCase(queryTests.get(j));
+				testcase.getTestResult().setQuery(sql[j]);
+				testcase.getTestResult().setStatus(TestResult.RESULT_STATE.TEST_TIMEOUT);
+				testcase.getTestResult().setFailureMessage("Batch of " + batched + " statements did not finish within "
+						+ getBatchTimeout(queryTests) + " ms and was cancelled");
+				summary.addTest(testcase.getTestResult().getQuerySetID(), testcase.getTestResult());
+			}
+			return null;
+		}
+		counts = getBatchCounts(counts, batched);
+		long endTS = System.currentTimeMillis();
+		long share = (endTS - beginTS) / batched;
+
+		for (int j = 0; j < batched; j++) {
+			TestCase testcase = j == 0 ? first : createTestCase(queryTests.get(j));
+			Exception failure;
+			if (counts[j] != Statement.EXECUTE_FAILED) {
+				failure = finishBatchedQueryTest(testcase, transaction, j == 0, counts[j],
+						beginTS + j * share, j == batched - 1 ? endTS : beginTS + (j + 1) * share);
+			} else {
+				if (j == 0) {
+					abQuery.after();
+					transaction.cleanup();
+					testcase = createTestCase(queryTests.get(0));
+				}
+				failure = runQueryTest(testcase, transaction, expectedEndTime);
+			}
+			summary.addTest(testcase.getTestResult().getQuerySetID(), testcase.getTestResult());
+			if (failure != null) {
+				return failure;
+			}
+		}
+		return null;
+	}
+
+	private Exception finishBatchedQueryTest(TestCase testcase, TransactionAPI transaction, boolean first,
+			int count, long beginTS, long endTS) {
+		AbstractQuery abQuery = (AbstractQuery) transaction;
+		TestResult testResult = testcase.getTestResult();
+		QuerySQL qsql = ((QueryTest) testcase.getActualTest()).getQueries()[0];
+		Exception scenarioFailException = null;
+		try {
+			if (!first) {
+				abQuery.before(testcase);
+			} else {
+				// the failure of the batch belongs to the test of the failed statement
+				abQuery.clearExceptions();
+			}
+			testResult.setQuery(qsql.getSql());
+			testResult.setBeginTS(beginTS);
+			testResult.setEndTS(endTS);
+			testResult.setRowCount(0);
+			testResult.setUpdateCount(count);
+			if (count == Statement.SUCCESS_NO_INFO) {
+				// the statement was executed, it cannot be run again to get its count
+				setBatchCountsUnknown();
+			} else if (scenario.isNone() && qsql.getUpdateCnt() >= 0) {
+				AssertResults.assertUpdateCount(testResult, qsql.getUpdateCnt());
+			}
+		} catch (QueryTestFailedException qtfe) {
+			// dont set on testResult, handled in transactionAPI
+
+		} catch (Exception rme) {
+			abQuery.setApplicationException(rme);
+			if(rme instanceof FrameworkRuntimeException){
+				String code = ((FrameworkRuntimeException) rme).getCode();
+				if(FrameworkException.ErrorCodes.SERVER_CONNECTION_EXCEPTION.equals(code)
+						|| FrameworkException.ErrorCodes.DB_CONNECTION_EXCEPTION.equals(code)){
+					scenarioFailException = rme;
+				}
+			}
+		} finally {
+			abQuery.after();
+		}
+
+		after(testcase, transaction);
+
+		transaction.cleanup();
+
+		return scenarioFailException;
+	}
+
+	/**
+	 * Maps the update counts returned for a batch to its statements.
+	 * @param counts update counts returned by the batch, <code>null</code> when it did not return
+	 * @param batched number of statements of the batch
+	 * @return update count of each statement, {@link Statement#EXECUTE_FAILED} for the statements
+	 * that failed or were not executed because the batch stopped, and {@link Statement#SUCCESS_NO_INFO}
+	 * for those executed without an update count
+	 */
+	static int[] getBatchCounts(int[] counts, int batched) {
+		int[] mapped = new int[batched];
+		for (int j = 0; j < batched; j++) {
+			mapped[j] = counts != null && j < counts.length ? counts[j] : Statement.EXECUTE_FAILED;
+		}
+		return mapped;
+	}
+
+	/**
+	 * Maps the update counts of a batch that failed to its statements, the counts
+	 * of the statements executed before the failure are those of the {@link BatchUpdateException}.
+	 * @see #getBatchCounts(int[], int)
+	 */
+	static int[] getBatchCounts(QueryTestFailedException failure, int batched) {
+		int[] counts = null;
+		if (failure.getCause() instanceof BatchUpdateException) {
+			counts = ((BatchUpdateException) failure.getCause()).getUpdateCounts();
+		}
+		return getBatchCounts(counts, batched);
+	}
+
+	/**
+	 * The statements whose update count is checked, or written to the expected results,
+	 * are executed on their own from now on.
+	 */
+	private void setBatchCountsUnknown() {
+		if (!batchCountsUnknown) {
+			batchCountsUnknown = true;
+			ClientPlugin.LOGGER.warn("The driver does not return the update counts of a batch [scenario: "
+					+ scenario.getQueryScenarioIdentifier() + "], the statements whose update count is needed are executed on their own.");
+		}
+	}
+
+	private void after(TestCase testcase, TransactionAPI trans) {
 		
 		FrameworkRuntimeException lastT = null;
+		// a timed out query is handled as a failed one, then reported as timed out
+		boolean timedOut = testcase.getTestResult().getStatus() == TestResult.RESULT_STATE.TEST_TIMEOUT;
 		try {
 			
 			if (testcase.getTestResult().isFailure()) {
@@ -317,13 +689,13 @@ public class ProcessResults implements TestCaseLifeCycle {
 			if (testcase.getTestResult().getResultMode().equalsIgnoreCase(TestProperties.RESULT_MODES.NONE) && 
 					! this.scenario.isNone()) {
 				if (testcase.getTestResult().getStatus() == TestResult.RESULT_STATE.TEST_EXCEPTION) {
+						long begin = testcase.getTestResult().beginPhase();
 						this.scenario.getErrorWriter().generateErrorFile(testcase, null, (TransactionAPI) null, null);
+						testcase.getTestResult().endPhase(TestResult.PHASE.OUTPUT, begin);
 				}
 			} else {
 				this.scenario.handleTestResult(testcase, trans);
 			}
-						
-			this.scenario.getTestResultsSummary().addTest(testcase.getTestResult().getQuerySetID(), testcase.getTestResult());
 
 		} catch (FrameworkRuntimeException t) {
 			lastT = t;
@@ -331,6 +703,9 @@ public class ProcessResults implements TestCaseLifeCycle {
 			t.printStackTrace();
 			lastT = new FrameworkRuntimeException(t.getMessage());
 		} finally {
+			if (timedOut) {
+				testcase.getTestResult().setStatus(TestResult.RESULT_STATE.TEST_TIMEOUT);
+			}
 		
 		// call at the end to close resultset and statements
 			if (lastT != null) throw lastT;
@@ -338,6 +713,425 @@ public class ProcessResults implements TestCaseLifeCycle {
 
 	}
 	
+	private TestCase createTestCase(QueryTest q) {
+		TestResult testResult = new TestResult(q.getQuerySetID(), q.getQueryID());
+
+		TestCase testcase = new TestCase(q);
+		testcase.setTestResult(testResult);
+
+		ClientPlugin.LOGGER.debug("Test: QuerySetID [" + testResult.getQuerySetID() + " - " + testResult.getQueryID() + "]");
+
+		testResult.setResultMode(this.scenario.getResultsMode());
+		testResult.setStatus(TestResult.RESULT_STATE.TEST_PRERUN);
+		return testcase;
+	}
+
+	/**
+	 * Executes the query set with the benchmark result mode: the warm-up iterations, then the
+	 * measured iterations.  The tests of the last iteration are added to the summary, and
+	 * the benchmark report of the query set is written at the end.
+	 *
+	 * @param querySetID
+	 * @param queryTests
+	 * @param transaction
+	 * @param expectedEndTime time at which the scenario is aborted, -1 for no limit
+	 * @param summary
+	 * @return Exception that should stop the scenario, <code>null</code> to continue
+	 */
+	private Exception runBenchmark(String querySetID, List<QueryTest> queryTests, TransactionAPI transaction,
+			long expectedEndTime, TestResultsSummary summary) {
+		Benchmark benchmark = (Benchmark) scenario;
+		int warmup = benchmark.getWarmupIterations();
+		int iterations = benchmark.getIterations();
+		ClientPlugin.LOGGER.info("Benchmark QuerySetID [" + querySetID + "]: " + warmup + " warm-up and "
+				+ iterations + " measured iterations");
+		Exception failure = null;
+		for (int i = -warmup; failure == null && i < iterations; i++) {
+			benchmark.setMeasuring(i >= 0);
+			for (int next = 0; failure == null && next < queryTests.size(); next++) {
+				if (Thread.currentThread().isInterrupted()) {
+					ClientPlugin.LOGGER.info("Thread has been interrupted.");
+					failure = new FrameworkRuntimeException(FrameworkException.ErrorCodes.BQT_INTERRUPTED, "BQT thread has been interrupted.");
+					continue;
+				}
+				TestCase testcase = createTestCase(queryTests.get(next));
+
+				failure = runQueryTest(testcase, transaction, expectedEndTime);
+
+				if (i == iterations - 1 || failure != null) {
+					summary.addTest(querySetID, testcase.getTestResult());
+				}
+			}
+		}
+		benchmark.setMeasuring(false);
+		try {
+			benchmark.writeReport(querySetID);
+		} catch (FrameworkException e) {
+			ClientPlugin.LOGGER.error("Unable to write the benchmark report of QuerySetID [" + querySetID + "]: " + e.getMessage());
+		}
+		return failure;
+	}
+
+	/**
+	 * Executes one query test using the given transaction and processes its results.
+	 * Adding the test result to the summary is left to the caller.
+	 *
+	 * @param testcase
+	 * @param transaction
+	 * @param expectedEndTime time at which the scenario is aborted, -1 for no limit
+	 * @return Exception that should stop the scenario, <code>null</code> to continue
+	 */
+	private Exception runQueryTest(TestCase testcase, TransactionAPI transaction, long expectedEndTime) {
+		if (isQuerySetTimedOut(testcase)) {
+			return null;
+		}
+		// the results are read while they are compared, which is watched as well
+		QueryWatchdog.Watch watch = watch(testcase, transaction);
+		Exception scenarioFailException;
+		try {
+			scenarioFailException = executeQueryTest(testcase, transaction, expectedEndTime);
+
+			after(testcase, transaction);
+		} finally {
+			stopWatch(testcase, watch);
+		}
+
+		transaction.cleanup();
+
+		return scenarioFailException;
+	}
+
+	/**
+	 * Executes one query test using the given transaction, reads its results into memory
+	 * and releases the transaction for the next query test.  The results are compared and 
+	 * written by the pipeline, which also adds the test result to the summary.
+	 *
+	 * @param testcase
+	 * @param transaction
+	 * @param expectedEndTime time at which the scenario is aborted, -1 for no limit
+	 * @param pipeline
+	 * @return Exception that should stop the scenario, <code>null</code> to continue
+	 */
+	private Exception runPipelinedQueryTest(TestCase testcase, TransactionAPI transaction, long expectedEndTime,
+			ResultsPipeline pipeline) {
+		AbstractQuery abQuery = (AbstractQuery) transaction;
+		if (isQuerySetTimedOut(testcase)) {
+			pipeline.process(testcase, null, false);
+			return null;
+		}
+		QueryWatchdog.Watch watch = watch(testcase, transaction);
+		Exception scenarioFailException;
+
+		TransactionAPI results = null;
+		try {
+			scenarioFailException = executeQueryTest(testcase, transaction, expectedEndTime);
+
+			// results of the NONE result mode are not read
+			if (!testcase.getTestResult().getResultMode().equalsIgnoreCase(TestProperties.RESULT_MODES.NONE)) {
+				results = abQuery.detachResults();
+				// picks up a failure reading the rows
+				abQuery.after();
+			}
+		} finally {
+			stopWatch(testcase, watch);
+			transaction.cleanup();
+		}
+
+		pipeline.process(testcase, results, true);
+
+		return scenarioFailException;
+	}
+
+	/**
+	 * Starts the watch of the deadline of the query test, which is the timeout of the test,
+	 * or of the scenario, but not later than the deadline of the query set.
+	 */
+	private QueryWatchdog.Watch watch(TestCase testcase, TransactionAPI transaction) {
+		return watch(testcase, transaction, getTimeout(testcase.getActualTest()));
+	}
+
+	/**
+	 * Starts the watch of a deadline of <code>timeout</code> milliseconds, not later than the
+	 * deadline of the query set.
+	 */
+	private QueryWatchdog.Watch watch(TestCase testcase, TransactionAPI transaction, long timeout) {
+		// a paused run waits before the query starts, the run monitor shows the running queries
+		RunMonitor.getInstance().awaitResume(scenario.getQueryScenarioIdentifier());
+		RunMonitor.getInstance().queryStarted(scenario.getQueryScenarioIdentifier(),
+				testcase.getTestResult().getQueryID(), (AbstractQuery) transaction);
+		long deadline = querySetDeadline;
+		if (deadline > 0) {
+			long remaining = Math.max(deadline - System.currentTimeMillis(), 1);
+			timeout = timeout > 0 ? Math.min(timeout, remaining) : remaining;
+		}
+		return watchdog.watch((AbstractQuery) transaction, testcase.getTestResult().getQueryID(), timeout);
+	}
+
+	/**
+	 * @return timeout of the test, or of the scenario, not greater than 0 for none
+	 */
+	private long getTimeout(ActualTest test) {
+		long timeout = test.getTimeout();
+		return timeout > 0 ? timeout : queryTimeout;
+	}
+
+	/**
+	 * @return sum of the timeouts of the tests executed as one batch, 0 when one of them has none
+	 */
+	private long getBatchTimeout(List<QueryTest> queryTests) {
+		long timeout = 0;
+		for (QueryTest test : queryTests) {
+			long t = getTimeout(test);
+			if (t <= 0) {
+				return 0;
+			}
+			timeout += t;
+		}
+		return timeout;
+	}
+
+	private void stopWatch(TestCase testcase, QueryWatchdog.Watch watch) {
+		RunMonitor.getInstance().queryFinished();
+		if (watch.stop()) {
+			testcase.getTestResult().setStatus(TestResult.RESULT_STATE.TEST_TIMEOUT);
+			testcase.getTestResult().setFailureMessage("Query did not finish within " + watch.getTimeout()
+					+ " ms and was cancelled");
+		}
+	}
+
+	/**
+	 * When the deadline of the query set has passed, the query test is reported
+	 * as timed out without executing it.
+	 * @return <code>true</code> when the query test is not executed
+	 */
+	private boolean isQuerySetTimedOut(TestCase testcase) {
+		long deadline = querySetDeadline;
+		if (deadline < 0 || deadline > System.currentTimeMillis()) {
+			return false;
+		}
+		testcase.getTestResult().setStatus(TestResult.RESULT_STATE.TEST_TIMEOUT);
+		testcase.getTestResult().setFailureMessage("Query set did not finish within " + querySetTimeout
+				+ " ms, the query was not executed");
+		return true;
+	}
+
+	/**
+	 * Executes one query test using the given transaction, the results are left
+	 * in the transaction.
+	 *
+	 * @return Exception that should stop the scenario, <code>null</code> to continue
+	 */
+	private Exception executeQueryTest(TestCase testcase, TransactionAPI transaction, long expectedEndTime) {
+		AbstractQuery abQuery = (AbstractQuery) transaction;
+		Exception scenarioFailException = null;
+		try {
+			abQuery.before(testcase);
+
+			if(expectedEndTime >=0
+					&& expectedEndTime < System.currentTimeMillis()){
+				throw new FrameworkRuntimeException(FrameworkException.ErrorCodes.SCENARIO_ABORTED,
+						"Scenario aborted - maximum time exceeded.");
+			}
+			if (RunMonitor.getInstance().isAborted(scenario.getQueryScenarioIdentifier())) {
+				throw new FrameworkRuntimeException(FrameworkException.ErrorCodes.SCENARIO_ABORTED,
+						"Scenario aborted from the run monitor.");
+			}
+
+			executeTest(testcase, abQuery);
+		} catch (QueryTestFailedException qtfe) {
+			// dont set on testResult, handled in transactionAPI
+
+		} catch (Exception rme) {
+			if (ClientPlugin.LOGGER.isDebugEnabled()) {
+				rme.printStackTrace();
+			}
+			abQuery.setApplicationException(rme);
+
+			if(rme instanceof FrameworkRuntimeException){
+				String code = ((FrameworkRuntimeException) rme).getCode();
+				if(FrameworkException.ErrorCodes.SERVER_CONNECTION_EXCEPTION.equals(code)
+						|| FrameworkException.ErrorCodes.DB_CONNECTION_EXCEPTION.equals(code)
+						|| FrameworkException.ErrorCodes.SCENARIO_ABORTED.equals(code)){
+					scenarioFailException = rme;
+				}
+			}
+		} finally {
+			abQuery.after();
+		}
+
+		return scenarioFailException;
+	}
+
+	/**
+	 * Executes the query tests of one query set on {@link TestProperties#EXECUTION_THREADS} workers,
+	 * see {@link ParallelQueryExecutor}.  The results are added to the summary in query set order,
+	 * so the summary reads the same as a serial run.
+	 *
+	 * @param queryTests
+	 * @param expectedEndTime time at which the scenario is aborted, -1 for no limit
+	 * @param summary
+	 * @return Exception that should stop the scenario, <code>null</code> to continue
+	 */
+	private Exception runQueryTestsInParallel(final List<QueryTest> queryTests, final long expectedEndTime,
+			TestResultsSummary summary) {
+
+		final int numOfThreads = Math.min(executionThreads, queryTests.size());
+		final TestCase[] testcases = new TestCase[queryTests.size()];
+
+		// the first worker reuses the transaction this test case was setup with
+		List<TransactionAPI> transactions = new ArrayList<TransactionAPI>(numOfThreads);
+		transactions.add(this.trans);
+		for (int i = 1; i < numOfThreads; i++) {
+			transactions.add(TransactionFactory.create(ConfigPropertyLoader.getInstance().getProperties()));
+		}
+
+		Exception scenarioFailException;
+		try {
+			scenarioFailException = new ParallelQueryExecutor(virtualThreads).execute(testcases.length, transactions,
+					new ParallelQueryExecutor.Task() {
+						public Exception run(int index, TransactionAPI transaction) {
+							TestCase testcase = createTestCase(queryTests.get(index));
+
+							Exception failure = runQueryTest(testcase, transaction, expectedEndTime);
+							testcases[index] = testcase;
+							return failure;
+						}
+					});
+		} finally {
+			for (int i = 1; i < transactions.size(); i++) {
+				transactions.get(i).cleanup();
+				((AbstractQuery) transactions.get(i)).getConnectionStrategy().shutdown();
+			}
+			// tests that were not processed to the end are left out, same as the serial run
+			for (TestCase testcase : testcases) {
+				if (testcase != null) {
+					summary.addTest(testcase.getTestResult().getQuerySetID(), testcase.getTestResult());
+				}
+			}
+		}
+		return scenarioFailException;
+	}
+
+	/**
+	 * Starts the simulated clients 2..n, each of them replays the query set on its
+	 * own connection while the first client runs it as usual.  Query sets that change
+	 * data are run by the first client only.
+	 *
+	 * @param querySetID
+	 * @param queryTests
+	 * @param expectedEndTime time at which the scenario is aborted, -1 for no limit
+	 * @param summary
+	 * @return executor running the clients, <code>null</code> when no client was started
+	 */
+	private ExecutorService startLoadClients(final String querySetID, final List<QueryTest> queryTests,
+			final long expectedEndTime, final TestResultsSummary summary) {
+		if (numberOfClients < 2 || queryTests.isEmpty()) {
+			return null;
+		}
+		if (!isReadOnly(querySetID, queryTests)) {
+			ClientPlugin.LOGGER.info("Query set changes data, it is run by one client only [query set: "
+					+ querySetID + "]");
+			return null;
+		}
+		while (loadClientTransactions.size() < numberOfClients - 1) {
+			loadClientTransactions.add(TransactionFactory.create(ConfigPropertyLoader.getInstance().getProperties()));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberOfClients - 1);
+		for (int i = 0; i < loadClientTransactions.size(); i++) {
+			final int clientID = i + 2;
+			final TransactionAPI transaction = loadClientTransactions.get(i);
+			executor.execute(new Runnable() {
+				public void run() {
+					runLoadClient(clientID, querySetID, queryTests, transaction, expectedEndTime, summary);
+				}
+			});
+		}
+		executor.shutdown();
+		return executor;
+	}
+
+	/**
+	 * Executes the query tests of a query set in order as one simulated client.  The rows
+	 * are read, but not compared, and the results are only used for the throughput
+	 * and latency of the client.
+	 */
+	private void runLoadClient(int clientID, String querySetID, List<QueryTest> queryTests,
+			TransactionAPI transaction, long expectedEndTime, TestResultsSummary summary) {
+		AbstractQuery abQuery = (AbstractQuery) transaction;
+		for (QueryTest q : queryTests) {
+			if (Thread.currentThread().isInterrupted()
+					|| (expectedEndTime >= 0 && expectedEndTime < System.currentTimeMillis())) {
+				return;
+			}
+			TestCase testcase = createTestCase(q);
+			TestResult testResult = testcase.getTestResult();
+			testResult.setClientID(clientID);
+			testResult.setResultMode(TestProperties.RESULT_MODES.NONE);
+			try {
+				abQuery.before(testcase);
+				for (QuerySQL qsql : q.getQueries()) {
+					for (int r = 0; r < qsql.getRunTimes(); r++) {
+						if (abQuery.execute(qsql.getSql(), qsql.getParms(), qsql.getPayLoad())) {
+							abQuery.walkResults();
+						}
+					}
+				}
+			} catch (Exception e) {
+				abQuery.setApplicationException(e);
+			} finally {
+				abQuery.after();
+			}
+			if (testResult.getStatus() != TestResult.RESULT_STATE.TEST_EXCEPTION) {
+				testResult.setStatus(TestResult.RESULT_STATE.TEST_SUCCESS);
+			}
+			transaction.cleanup();
+
+			summary.addLoadTest(querySetID, testResult);
+		}
+	}
+
+	/**
+	 * Waits until the simulated clients finished the query set.
+	 *
+	 * @param executor clients started by {@link #startLoadClients}, can be <code>null</code>
+	 * @return Exception that should stop the scenario, <code>null</code> to continue
+	 */
+	private Exception awaitLoadClients(ExecutorService executor) {
+		if (executor == null) {
+			return null;
+		}
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// wait for the clients to replay the query set
+			}
+			return null;
+		} catch (InterruptedException e) {
+			ClientPlugin.LOGGER.info("Thread has been interrupted.");
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			return new FrameworkRuntimeException(FrameworkException.ErrorCodes.BQT_INTERRUPTED, "BQT thread has been interrupted.");
+		}
+	}
+
+	/**
+	 * Queries of a query set can only be executed in parallel when none of them
+	 * changes data, otherwise the results would depend on the execution order.
+	 */
+	private boolean isReadOnly(String querySetID, List<QueryTest> queryTests) {
+		for (QueryTest q : queryTests) {
+			for (QuerySQL qsql : q.getQueries()) {
+				String sql = qsql.getSql().trim().toLowerCase();
+				if (!sql.startsWith("select") && !sql.startsWith("with")) { //$NON-NLS-1$ //$NON-NLS-2$
+					ClientPlugin.LOGGER.info("QuerySetID [" + querySetID + "] is executed serially, QueryID ["
+							+ q.getQueryID() + "] is not a select");
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	private Exception pingDS(String scenario){
 		String pingQuery = ConfigPropertyLoader.getInstance().getProperty(TestProperties.PING_QUERY);
 		if(pingQuery == null || pingQuery.isEmpty()){
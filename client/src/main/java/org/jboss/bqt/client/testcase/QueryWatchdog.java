@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.testcase;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.bqt.client.ClientPlugin;
+import org.jboss.bqt.framework.AbstractQuery;
+
+/**
+ * Cancels the statement of a query that is still running when its deadline passes.
+ * The scheduler thread is started the first time a query is watched.
+ */
+class QueryWatchdog {
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Starts watching the query executed by <code>query</code>.
+	 * @param query
+	 * @param queryID identifies the query in the log
+	 * @param timeout milliseconds, the query is not watched when not greater than 0
+	 * @return Watch, which has to be stopped when the query is done
+	 */
+	Watch watch(AbstractQuery query, String queryID, long timeout) {
+		Watch watch = new Watch(query, queryID, timeout);
+		if (timeout > 0) {
+			watch.future = getScheduler().schedule(watch, timeout, TimeUnit.MILLISECONDS);
+		}
+		return watch;
+	}
+
+	synchronized void shutdown() {
+		if (this.scheduler != null) {
+			this.scheduler.shutdownNow();
+			this.scheduler = null;
+		}
+	}
+
+	private synchronized ScheduledExecutorService getScheduler() {
+		if (this.scheduler == null) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "bqt-query-watchdog"); //$NON-NLS-1$
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return this.scheduler;
+	}
+
+	/**
+	 * The deadline of one query.
+	 */
+	static class Watch implements Runnable {
+		private final AbstractQuery query;
+		private final String queryID;
+		private final long timeout;
+		private ScheduledFuture<?> future;
+		private boolean stopped = false;
+		private boolean timedOut = false;
+
+		Watch(AbstractQuery query, String queryID, long timeout) {
+			this.query = query;
+			this.queryID = queryID;
+			this.timeout = timeout;
+		}
+
+		public synchronized void run() {
+			if (this.stopped) {
+				return;
+			}
+			this.timedOut = true;
+			ClientPlugin.LOGGER.warn("Query [" + this.queryID + "] did not finish within " + this.timeout + " ms, cancelling it");
+			try {
+				this.query.cancelQuery();
+			} catch (Exception e) {
+				// the statement is not running anymore, or the driver cannot cancel it
+				ClientPlugin.LOGGER.debug("Unable to cancel query [" + this.queryID + "]: " + e.getMessage());
+			}
+		}
+
+		/**
+		 * Stops watching the query, a cancel that is in progress is waited for.
+		 * @return <code>true</code> when the deadline had passed
+		 */
+		synchronized boolean stop() {
+			this.stopped = true;
+			if (this.future != null) {
+				this.future.cancel(false);
+			}
+			return this.timedOut;
+		}
+
+		long getTimeout() {
+			return this.timeout;
+		}
+	}
+}
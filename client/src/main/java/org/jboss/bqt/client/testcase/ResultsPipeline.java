@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.testcase;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jboss.bqt.client.TestResultsSummary;
+import org.jboss.bqt.framework.TestCase;
+import org.jboss.bqt.framework.TransactionAPI;
+
+/**
+ * Compares and writes the results of the query tests on a thread of its own, in the
+ * order they were executed, while the connection executes the next query tests.
+ * At most <code>depth</code> results wait to be processed, {@link #process} blocks until
+ * one of them is processed, so the rows read into memory cannot pile up.
+ */
+class ResultsPipeline {
+
+	/**
+	 * Compares and writes the results of one executed query test.
+	 */
+	interface Stage {
+		/**
+		 * @param testcase
+		 * @param results detached results, <code>null</code> when not read
+		 */
+		void process(TestCase testcase, TransactionAPI results);
+	}
+
+	private final int depth;
+	private final Semaphore waiting;
+	private final TestResultsSummary summary;
+	private final Stage stage;
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+	private final AtomicReference<RuntimeException> stageException = new AtomicReference<RuntimeException>();
+
+	ResultsPipeline(int depth, TestResultsSummary summary, Stage stage) {
+		this.depth = depth;
+		this.waiting = new Semaphore(depth);
+		this.summary = summary;
+		this.stage = stage;
+	}
+
+	/**
+	 * Hands the executed test over to be processed, waits while <code>depth</code>
+	 * results are waiting.
+	 * @param testcase
+	 * @param results detached results, <code>null</code> when not read
+	 * @param executed <code>false</code> when the test was not executed and is only added to the summary
+	 */
+	void process(final TestCase testcase, final TransactionAPI results, final boolean executed) {
+		try {
+			checkStage();
+			waiting.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			release(results);
+			return;
+		} catch (RuntimeException e) {
+			release(results);
+			throw e;
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					if (stageException.get() == null) {
+						if (executed) {
+							stage.process(testcase, results);
+						}
+						summary.addTest(testcase.getTestResult().getQuerySetID(), testcase.getTestResult());
+					}
+				} catch (RuntimeException e) {
+					stageException.compareAndSet(null, e);
+				} finally {
+					release(results);
+					waiting.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits until the waiting results are processed.
+	 */
+	void drain() {
+		try {
+			waiting.acquire(depth);
+			waiting.release(depth);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		checkStage();
+	}
+
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Rethrows the failure of processing results, same as when the results are
+	 * processed before the next query is executed.
+	 */
+	private void checkStage() {
+		if (stageException.get() != null) {
+			throw stageException.get();
+		}
+	}
+
+	private void release(TransactionAPI results) {
+		if (results != null) {
+			results.cleanup();
+		}
+	}
+}
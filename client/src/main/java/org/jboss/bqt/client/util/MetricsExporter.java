@@ -0,0 +1,383 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.bqt.client.ClientPlugin;
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.core.exception.FrameworkException;
+import org.jboss.bqt.core.exception.FrameworkRuntimeException;
+import org.jboss.bqt.core.util.PropertiesUtils;
+import org.jboss.bqt.framework.TestResult;
+
+/**
+ * Writes the metrics of the test run to {@link TestProperties#METRICS_DIR} every
+ * {@link TestProperties#METRICS_INTERVAL} seconds and at the end of the run:
+ * <li><code>bqt.prom</code> - the current values, in the Prometheus text format,
+ * replaced at once so a textfile collector never reads half of it</li>
+ * <li><code>bqt-metrics.jsonl</code> - the values, one JSON object per line, appended
+ * each time they are written</li>
+ * <br>
+ * The metrics are fed by the completed tests, see {@link #testCompleted(String, TestResult)},
+ * and by the output writers.  Nothing is recorded when the directory is not set.
+ */
+public class MetricsExporter {
+
+	static final String PROMETHEUS_FILE = "bqt.prom"; //$NON-NLS-1$
+	static final String JSON_LINES_FILE = "bqt-metrics.jsonl"; //$NON-NLS-1$
+
+	// upper bounds of the histogram buckets, in seconds
+	static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30, 60, 300};
+
+	private static final MetricsExporter INSTANCE = new MetricsExporter();
+
+	// name and labels -> series, sorted so the series of a metric are together
+	private final Map<String, Series> series = new TreeMap<String, Series>();
+	private File dir;
+	private ScheduledExecutorService scheduler;
+
+	MetricsExporter() {
+	}
+
+	public static MetricsExporter getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Starts writing the metrics, when {@link TestProperties#METRICS_DIR} is set.
+	 * @param props
+	 */
+	public synchronized void start(Properties props) {
+		String dirName = props.getProperty(TestProperties.METRICS_DIR);
+		this.series.clear();
+		if (dirName == null || dirName.trim().length() == 0) {
+			this.dir = null;
+			return;
+		}
+		this.dir = new File(dirName.trim());
+		this.dir.mkdirs();
+		new File(this.dir, JSON_LINES_FILE).delete();
+		long interval = PropertiesUtils.getLongProperty(props, TestProperties.METRICS_INTERVAL, 15);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "bqt-metrics"); //$NON-NLS-1$
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				write();
+			}
+		}, interval, Math.max(interval, 1), TimeUnit.SECONDS);
+		ClientPlugin.LOGGER.info("Writing metrics to " + this.dir.getAbsolutePath() + " every " + interval + " seconds");
+	}
+
+	/**
+	 * Writes the metrics a last time and stops writing them.
+	 */
+	public void stop() {
+		ScheduledExecutorService s;
+		synchronized (this) {
+			s = this.scheduler;
+			this.scheduler = null;
+		}
+		if (s != null) {
+			s.shutdownNow();
+			write();
+		}
+		synchronized (this) {
+			this.dir = null;
+		}
+	}
+
+	/**
+	 * Records a completed test.
+	 * @param scenario
+	 * @param result
+	 */
+	public synchronized void testCompleted(String scenario, TestResult result) {
+		if (this.dir == null) {
+			return;
+		}
+		String[] labels = {"scenario", scenario, "query_set", result.getQuerySetID()}; //$NON-NLS-1$ //$NON-NLS-2$
+		counter("bqt_queries_total", "Completed queries.", //$NON-NLS-1$ //$NON-NLS-2$
+				with(labels, "status", result.getResultStatusString())).value++; //$NON-NLS-1$
+		if (result.isFailure()) {
+			counter("bqt_query_failures_total", "Failed queries, by error code.", //$NON-NLS-1$ //$NON-NLS-2$
+					with(labels, "code", getErrorCode(result))).value++; //$NON-NLS-1$
+		}
+		Series reconnects = counter("bqt_reconnects_total", "Queries that opened a new connection.", labels); //$NON-NLS-1$ //$NON-NLS-2$
+		if (result.isReconnected()) {
+			reconnects.value++;
+		}
+		counter("bqt_rows_fetched_total", "Rows read from the results.", labels).value += result.getFetchedRows(); //$NON-NLS-1$ //$NON-NLS-2$
+		if (result.getPhaseNanos(TestResult.PHASE.EXECUTE) >= 0) {
+			histogram("bqt_query_duration_seconds", "Duration of the statement execute.", labels) //$NON-NLS-1$ //$NON-NLS-2$
+					.observe(result.getPhaseNanos(TestResult.PHASE.EXECUTE) / 1e9);
+		}
+		if (result.getPhaseNanos(TestResult.PHASE.COMPARE) >= 0) {
+			histogram("bqt_compare_duration_seconds", "Duration of the compare of the results.", labels) //$NON-NLS-1$ //$NON-NLS-2$
+					.observe(result.getPhaseNanos(TestResult.PHASE.COMPARE) / 1e9);
+		}
+	}
+
+	/**
+	 * Records the time an output file took to be written.
+	 * @param scenario
+	 * @param millis
+	 */
+	public synchronized void outputWritten(String scenario, long millis) {
+		if (this.dir == null) {
+			return;
+		}
+		histogram("bqt_output_write_seconds", "Time until an output file was written.", //$NON-NLS-1$ //$NON-NLS-2$
+				new String[] {"scenario", scenario}).observe(millis / 1e3); //$NON-NLS-1$
+	}
+
+	/**
+	 * Writes the current values.
+	 */
+	void write() {
+		File d;
+		String prometheus;
+		String jsonLines;
+		synchronized (this) {
+			d = this.dir;
+			if (d == null) {
+				return;
+			}
+			prometheus = toPrometheus();
+			jsonLines = toJsonLines(System.currentTimeMillis());
+		}
+		try {
+			File tmp = new File(d, PROMETHEUS_FILE + ".tmp"); //$NON-NLS-1$
+			writeFile(tmp, prometheus, false);
+			File prom = new File(d, PROMETHEUS_FILE);
+			if (!tmp.renameTo(prom)) {
+				prom.delete();
+				tmp.renameTo(prom);
+			}
+			writeFile(new File(d, JSON_LINES_FILE), jsonLines, true);
+		} catch (IOException e) {
+			ClientPlugin.LOGGER.warn("Unable to write the metrics to " + d + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the current values, in the Prometheus text format
+	 */
+	synchronized String toPrometheus() {
+		StringBuilder sb = new StringBuilder();
+		String last = null;
+		for (Series s : this.series.values()) {
+			if (!s.name.equals(last)) {
+				sb.append("# HELP ").append(s.name).append(' ').append(s.help).append('\n'); //$NON-NLS-1$
+				sb.append("# TYPE ").append(s.name).append(' ').append(s.buckets == null ? "counter" : "histogram").append('\n'); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				last = s.name;
+			}
+			s.appendPrometheus(sb);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param timestamp of the values
+	 * @return the current values, one JSON object per line
+	 */
+	synchronized String toJsonLines(long timestamp) {
+		StringBuilder sb = new StringBuilder();
+		for (Series s : this.series.values()) {
+			sb.append(s.toJson(timestamp)).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static void writeFile(File f, String content, boolean append) throws IOException {
+		PrintWriter w = new PrintWriter(new OutputStreamWriter(new FileOutputStream(f, append), Charset.forName("UTF-8"))); //$NON-NLS-1$
+		try {
+			w.print(content);
+		} finally {
+			w.close();
+		}
+	}
+
+	private static String getErrorCode(TestResult result) {
+		if (result.getStatus() == TestResult.RESULT_STATE.TEST_TIMEOUT) {
+			return "timeout"; //$NON-NLS-1$
+		}
+		for (Throwable t = result.getException(); t != null; t = t.getCause()) {
+			String code = null;
+			if (t instanceof FrameworkException) {
+				code = ((FrameworkException) t).getCode();
+			} else if (t instanceof FrameworkRuntimeException) {
+				code = ((FrameworkRuntimeException) t).getCode();
+			}
+			if (code != null) {
+				return code;
+			}
+			if (t.getCause() == t) {
+				break;
+			}
+		}
+		return "none"; //$NON-NLS-1$
+	}
+
+	private static String[] with(String[] labels, String name, String value) {
+		String[] all = new String[labels.length + 2];
+		System.arraycopy(labels, 0, all, 0, labels.length);
+		all[labels.length] = name;
+		all[labels.length + 1] = value;
+		return all;
+	}
+
+	private Series counter(String name, String help, String[] labels) {
+		return getSeries(name, help, labels, false);
+	}
+
+	private Series histogram(String name, String help, String[] labels) {
+		return getSeries(name, help, labels, true);
+	}
+
+	private Series getSeries(String name, String help, String[] labels, boolean histogram) {
+		StringBuilder key = new StringBuilder(name);
+		for (String l : labels) {
+			key.append('\u0000').append(l);
+		}
+		Series s = this.series.get(key.toString());
+		if (s == null) {
+			s = new Series(name, help, labels, histogram);
+			this.series.put(key.toString(), s);
+		}
+		return s;
+	}
+
+	/**
+	 * One counter or histogram, with its labels.
+	 */
+	private static class Series {
+		private final String name;
+		private final String help;
+		// name, value, name, value...
+		private final String[] labels;
+		private final long[] buckets;
+		private double value = 0;
+		private long count = 0;
+
+		Series(String name, String help, String[] labels, boolean histogram) {
+			this.name = name;
+			this.help = help;
+			this.labels = labels;
+			this.buckets = histogram ? new long[BUCKETS.length] : null;
+		}
+
+		void observe(double seconds) {
+			for (int i = 0; i < BUCKETS.length; i++) {
+				if (seconds <= BUCKETS[i]) {
+					buckets[i]++;
+				}
+			}
+			count++;
+			value += seconds;
+		}
+
+		void appendPrometheus(StringBuilder sb) {
+			if (buckets == null) {
+				sb.append(name).append(labels(null)).append(' ').append(number(value)).append('\n');
+				return;
+			}
+			for (int i = 0; i < BUCKETS.length; i++) {
+				sb.append(name).append("_bucket").append(labels(number(BUCKETS[i]))).append(' ').append(buckets[i]).append('\n'); //$NON-NLS-1$
+			}
+			sb.append(name).append("_bucket").append(labels("+Inf")).append(' ').append(count).append('\n'); //$NON-NLS-1$ //$NON-NLS-2$
+			sb.append(name).append("_sum").append(labels(null)).append(' ').append(number(value)).append('\n'); //$NON-NLS-1$
+			sb.append(name).append("_count").append(labels(null)).append(' ').append(count).append('\n'); //$NON-NLS-1$
+		}
+
+		private String labels(String le) {
+			StringBuilder sb = new StringBuilder("{"); //$NON-NLS-1$
+			for (int i = 0; i < labels.length; i += 2) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"'); //$NON-NLS-1$
+			}
+			if (le != null) {
+				sb.append(",le=\"").append(le).append('"'); //$NON-NLS-1$
+			}
+			return sb.append('}').toString();
+		}
+
+		String toJson(long timestamp) {
+			StringBuilder sb = new StringBuilder("{\"timestamp\":").append(timestamp); //$NON-NLS-1$
+			sb.append(",\"metric\":\"").append(name).append("\",\"labels\":{"); //$NON-NLS-1$ //$NON-NLS-2$
+			for (int i = 0; i < labels.length; i += 2) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append('"').append(labels[i]).append("\":\"").append(escape(labels[i + 1])).append('"'); //$NON-NLS-1$
+			}
+			sb.append('}');
+			if (buckets == null) {
+				sb.append(",\"value\":").append(number(value)); //$NON-NLS-1$
+			} else {
+				sb.append(",\"count\":").append(count).append(",\"sum\":").append(number(value)).append(",\"buckets\":{"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				for (int i = 0; i < BUCKETS.length; i++) {
+					sb.append(i > 0 ? "," : "").append('"').append(number(BUCKETS[i])).append("\":").append(buckets[i]); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				}
+				sb.append('}');
+			}
+			return sb.append('}').toString();
+		}
+
+		private static String number(double d) {
+			if (d == Math.rint(d) && Math.abs(d) < 1e15) {
+				return String.valueOf((long) d);
+			}
+			return new BigDecimal(d).setScale(6, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+		}
+
+		// the escapes of Prometheus label values are also valid in JSON strings
+		private static String escape(String value) {
+			if (value == null) {
+				return ""; //$NON-NLS-1$
+			}
+			return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+		}
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.bqt.client.ClientPlugin;
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.core.exception.FrameworkException;
+import org.jboss.bqt.core.util.PropertiesUtils;
+
+/**
+ * Writes the error and expected results files of a scenario.  With
+ * {@link TestProperties#OUTPUT_WRITER_THREADS} greater than 0 the outputs are serialized
+ * and written by background threads, so the query thread only builds them.  At most
+ * {@link TestProperties#OUTPUT_WRITER_QUEUE} outputs wait to be written, when the queue
+ * is full the query thread writes the output itself.
+ * <br>
+ * {@link #close()} waits until all the outputs are written and logs the queue depth
+ * and the write latency.  The latency of each output is also recorded by the
+ * {@link MetricsExporter}.
+ */
+public class OutputWriter {
+
+	/**
+	 * The content of one file.
+	 */
+	public interface Output {
+		void writeTo(OutputStream out) throws Exception;
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final String scenarioID;
+
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicInteger maxQueued = new AtomicInteger();
+	private final AtomicInteger failures = new AtomicInteger();
+	private final AtomicLong written = new AtomicLong();
+	// from the time the output was handed over until it was written
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+
+	public OutputWriter(String scenarioID, Properties props) {
+		this.scenarioID = scenarioID;
+		int threads = PropertiesUtils.getIntProperty(props, TestProperties.OUTPUT_WRITER_THREADS, 0);
+		int queueSize = PropertiesUtils.getIntProperty(props, TestProperties.OUTPUT_WRITER_QUEUE, 100);
+		if (threads > 0) {
+			this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(Math.max(queueSize, 1)), new ThreadPoolExecutor.CallerRunsPolicy());
+		} else {
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * Writes the output to the file, in the background when asynchronous.
+	 * @param file
+	 * @param output
+	 * @throws FrameworkException when the output is written synchronously and failed
+	 */
+	public void write(final File file, final Output output) throws FrameworkException {
+		if (this.executor == null) {
+			long begin = System.currentTimeMillis();
+			writeFile(file, output);
+			MetricsExporter.getInstance().outputWritten(this.scenarioID, System.currentTimeMillis() - begin);
+			return;
+		}
+		final long handedOver = System.currentTimeMillis();
+		int depth = this.queued.incrementAndGet();
+		int max;
+		while ((max = this.maxQueued.get()) < depth && !this.maxQueued.compareAndSet(max, depth)) {
+			// another output was queued at the same time
+		}
+		this.executor.execute(new Runnable() {
+			public void run() {
+				queued.decrementAndGet();
+				try {
+					writeFile(file, output);
+				} catch (FrameworkException e) {
+					failures.incrementAndGet();
+					ClientPlugin.LOGGER.error(e.getMessage());
+				}
+				record(System.currentTimeMillis() - handedOver);
+			}
+		});
+	}
+
+	/**
+	 * Waits until all the outputs are written, and logs the statistics.
+	 */
+	public void close() {
+		if (this.executor == null) {
+			return;
+		}
+		this.executor.shutdown();
+		try {
+			while (!this.executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				// wait for the outputs to be written
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			ClientPlugin.LOGGER.warn("Interrupted while waiting for " + this.executor.getQueue().size() + " outputs to be written");
+		}
+		long count = this.written.get();
+		ClientPlugin.LOGGER.info("Output files written: " + count
+				+ ", failed: " + this.failures.get()
+				+ ", max queue depth: " + this.maxQueued.get()
+				+ ", avg write latency (ms): " + (count == 0 ? 0 : this.totalLatency.get() / count)
+				+ ", max write latency (ms): " + this.maxLatency.get());
+	}
+
+	private void record(long latency) {
+		MetricsExporter.getInstance().outputWritten(this.scenarioID, latency);
+		this.written.incrementAndGet();
+		this.totalLatency.addAndGet(latency);
+		long max;
+		while ((max = this.maxLatency.get()) < latency && !this.maxLatency.compareAndSet(max, latency)) {
+			// another output was written at the same time
+		}
+	}
+
+	private static void writeFile(File file, Output output) throws FrameworkException {
+		OutputStream outputStream;
+		try {
+			outputStream = new BufferedOutputStream(new FileOutputStream(file));
+		} catch (IOException e) {
+			throw new FrameworkException(
+					"Failed to open file: " + file.getPath() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		try {
+			output.writeTo(outputStream);
+		} catch (Exception e) {
+			throw new FrameworkException(
+					"Failed to output to " + file.getPath() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			try {
+				outputStream.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+}
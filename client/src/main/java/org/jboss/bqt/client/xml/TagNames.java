@@ -120,6 +120,9 @@ public final class TagNames {
 		public static final String SQL = "sql"; //$NON-NLS-1$
 		public static final String PARM = "parm"; //$NON-NLS-1$
 		public static final String PAYLOAD = "payload"; //$NON-NLS-1$
+		// digest of the rows, written instead of the table rows
+		public static final String DIGEST = "digest"; //$NON-NLS-1$
+		public static final String COLUMN_HASH = "columnHash"; //$NON-NLS-1$
 
 		/**
 		 * Message describing the comparison failure - the difference between expected and actual results.
@@ -133,6 +136,8 @@ public final class TagNames {
 	public static final class Attributes {
 		public static final String TYPE = "type"; //$NON-NLS-1$
 		public static final String EXECUTE_NUM_TIMES = "numtimes"; //$NON-NLS-1$
+		// executions before the numtimes executions, not included in the latencies
+		public static final String WARMUP_NUM_TIMES = "warmup"; //$NON-NLS-1$
 		public static final String TABLE_ROW_COUNT = "rowCount"; //$NON-NLS-1$
 		public static final String TABLE_COLUMN_COUNT = "columnCount"; //$NON-NLS-1$
 		public static final String NAME = "name"; //$NON-NLS-1$
@@ -141,6 +146,20 @@ public final class TagNames {
 		public static final String STAR = "star"; //$NON-NLS-1$
 		public static final String UPDATE_CNT = "updatecnt"; //$NON-NLS-1$
 		public static final String EXECUTION_TIME = "exectime"; //$NON-NLS-1$
+		
+		// statement settings, on the root of a query file or on a query
+		public static final String FETCH_SIZE = "fetchSize"; //$NON-NLS-1$
+		public static final String MAX_ROWS = "maxRows"; //$NON-NLS-1$
+		public static final String QUERY_TIMEOUT = "queryTimeout"; //$NON-NLS-1$
+		public static final String FETCH_DIRECTION = "fetchDirection"; //$NON-NLS-1$
+		public static final String ADAPTIVE_FETCH_SIZE = "adaptiveFetchSize"; //$NON-NLS-1$
+		public static final String EXECUTION_PROPERTIES = "executionProperties"; //$NON-NLS-1$
+		// milliseconds a query may run before it is cancelled
+		public static final String TIMEOUT = "timeout"; //$NON-NLS-1$
+		// true to generate the digest of the rows instead of the rows, on the root of a query file or on a query
+		public static final String DIGEST = "digest"; //$NON-NLS-1$
+		public static final String ORDERED_HASH = "orderedHash"; //$NON-NLS-1$
+		public static final String UNORDERED_HASH = "unorderedHash"; //$NON-NLS-1$
 
 		public static final String UNPRINTABALE = "unprintable";
 		public static final String HEXVALUE = "hexValue";
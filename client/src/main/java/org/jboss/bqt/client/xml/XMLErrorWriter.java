@@ -21,10 +21,8 @@
  */
 package org.jboss.bqt.client.xml;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -38,7 +36,9 @@ import org.jboss.bqt.client.TestProperties;
 import org.jboss.bqt.client.api.ErrorWriter;
 import org.jboss.bqt.client.api.ExpectedResults;
 import org.jboss.bqt.client.api.QueryScenario;
+import org.jboss.bqt.client.results.ExpectedResultsHolder;
 import org.jboss.bqt.client.util.BQTUtil;
+import org.jboss.bqt.client.util.OutputWriter;
 import org.jboss.bqt.core.exception.FrameworkException;
 import org.jboss.bqt.core.exception.FrameworkRuntimeException;
 import org.jboss.bqt.core.exception.QueryTestFailedException;
@@ -105,7 +105,7 @@ public class XMLErrorWriter extends ErrorWriter {
 			ClientPlugin.LOGGER.warn("**** Generate Error File: " + errorFile.getAbsolutePath());
 
 			generateErrorResults(testResult,
-					 (String) null, errorFile, (ResultSet) null, (File) null, failures);
+					 (String) null, errorFile, (ResultSet) null, (ExpectedResultsHolder) null, (File) null, failures);
 		
 		return errorFileName;
 	}
@@ -130,14 +130,23 @@ public class XMLErrorWriter extends ErrorWriter {
 			//           CombinedTestClient.log("\t" + this.clientID + ": Writing error file with actual results: " + errorFileName); //$NON-NLS-1$ //$NON-NLS-2$
 			File errorFile = new File(getErrorDirectory(), errorFileName);
 
-			// rewind resultset
+			// rewind resultset, a forward only one was already read by the comparison,
+			// and the rows of results compared with a digest are too many to be written
+			ExpectedResultsHolder actualResults = null;
+			boolean digest = expectedResults instanceof ExpectedResultsHolder
+					&& ((ExpectedResultsHolder) expectedResults).getDigest() != null;
 			if (resultSet != null) {
-				resultSet.beforeFirst();
+				if (resultSet.getType() != ResultSet.TYPE_FORWARD_ONLY && !digest) {
+					resultSet.beforeFirst();
+				} else {
+					actualResults = (ExpectedResultsHolder) testCase.getActualResults();
+					resultSet = null;
+				}
 			}
 			ClientPlugin.LOGGER.warn("**** E 2 Generate Error File");
 		
 			generateErrorResults(testResult, testResult.getQuery(), errorFile,
-					resultSet, expectedResults.getExpectedResultsFile() , failures);
+					resultSet, actualResults, expectedResults.getExpectedResultsFile() , failures);
 
 		} catch (SQLException sqle) {
 			throw new QueryTestFailedException(sqle);
@@ -157,28 +166,21 @@ public class XMLErrorWriter extends ErrorWriter {
 		 * @param sql
 		 * @param resultsFile
 		 * @param actualResult
+		 * @param actualRows rows already read from a forward only <code>actualResult</code>
 		 * @param expectedResultFile
 		 * @param ex
 		 * @throws FrameworkException
 		 */
 		private void generateErrorResults(TestResult testResult,
 				String sql, File resultsFile, ResultSet actualResult,
-				File expectedResultFile, List<Throwable> failures)
+				ExpectedResultsHolder actualRows, File expectedResultFile, List<Throwable> failures)
 				throws FrameworkException {
-			OutputStream outputStream;
-			try {
-				FileOutputStream fos = new FileOutputStream(resultsFile);
-				outputStream = new BufferedOutputStream(fos);
-			} catch (IOException e) {
-				throw new FrameworkRuntimeException(
-						"Failed to open error results file: " + resultsFile.getPath() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
-			}
-
+			final Element rootElement;
 			try {
 				XMLQueryVisitationStrategy jstrat = new XMLQueryVisitationStrategy();
 
 				// Create root JDOM element
-				Element rootElement = new Element(TagNames.Elements.ROOT_ELEMENT);
+				rootElement = new Element(TagNames.Elements.ROOT_ELEMENT);
 
 				// create a JDOM element for the results
 				Element resultElement = new Element(TagNames.Elements.QUERY_RESULTS);
@@ -239,6 +241,15 @@ public class XMLErrorWriter extends ErrorWriter {
 					// add the results elements to the root element
 					resultElement.addContent(actualResultsElement);
 
+				} else if (actualRows != null && actualRows.getRows() != null) {
+					// rows of a forward only ResultSet, kept by the comparison
+					Element actualResultsElement = new Element(
+							TagNames.Elements.ACTUAL_QUERY_RESULTS);
+					actualResultsElement = jstrat.produceMsg(actualRows.getIdentifiers(), actualRows.getTypes(),
+							actualRows.getRows(), actualResultsElement);
+
+					resultElement.addContent(actualResultsElement);
+
 				} else if (testResult.getUpdateCount() > -1){
 				    Element updateElement = new Element(TagNames.Elements.UPDATE);
 				    updateElement.setAttribute(TagNames.Attributes.UPDATE_CNT, Long.toString(testResult.getUpdateCount()));
@@ -278,14 +289,11 @@ public class XMLErrorWriter extends ErrorWriter {
 				rootElement.addContent(resultElement);
 				ClientPlugin.LOGGER.warn("**** E 6 Generate Error File");
 
-				// Output xml
-				XMLOutputter outputter = new XMLOutputter(JdomHelper.getFormat(
-						"  ", true)); //$NON-NLS-1$
-				outputter.output(new Document(rootElement), outputStream);
 			} catch (JDOMParseException jde) {
 				ClientPlugin.LOGGER.warn("**** JDOMERROR Generate Error File");
 
 				jde.printStackTrace();
+				return;
 
 			} catch (SQLException e) {
 				throw new FrameworkException(
@@ -293,18 +301,19 @@ public class XMLErrorWriter extends ErrorWriter {
 			} catch (JDOMException e) {
 				throw new FrameworkException(
 						"Failed to convert error results to JDOM: " + e.getMessage()); //$NON-NLS-1$
-			} catch (IOException e) {
-				throw new FrameworkException(
-						"Failed to output error results to " + resultsFile.getPath() + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
 			} catch (Throwable e) {
 				throw new FrameworkException(
 						"Failed to convert error results to JDOM: " + ExceptionUtil.getStackTrace(e)); //$NON-NLS-1$
-			} finally {
-				try {
-					outputStream.close();
-				} catch (IOException e) {
-				}
 			}
+
+			// Output xml
+			getQueryScenario().getOutputWriter().write(resultsFile, new OutputWriter.Output() {
+				public void writeTo(OutputStream out) throws IOException {
+					XMLOutputter outputter = new XMLOutputter(JdomHelper.getFormat(
+							"  ", true)); //$NON-NLS-1$
+					outputter.output(new Document(rootElement), out);
+				}
+			});
 		}
 
 	/**
@@ -50,12 +50,14 @@ import org.jboss.bqt.client.ClientPlugin;
 import org.jboss.bqt.client.QuerySQL;
 import org.jboss.bqt.client.QueryTest;
 import org.jboss.bqt.client.results.ExpectedResultsHolder;
+import org.jboss.bqt.client.results.ResultsDigest;
 import org.jboss.bqt.client.xml.QueryResults.ColumnInfo;
 import org.jboss.bqt.core.exception.TransactionRuntimeException;
 import org.jboss.bqt.core.util.ExceptionUtil;
 import org.jboss.bqt.core.util.ObjectConverterUtil;
 import org.jboss.bqt.core.util.StringHelper;
 import org.jboss.bqt.core.xml.SAXBuilderHelper;
+import org.jboss.bqt.framework.StatementTuning;
 import org.jboss.bqt.jdbc.sql.lang.ElementSymbol;
 import org.jboss.bqt.jdbc.sql.lang.Select;
 import org.jboss.bqt.jdbc.sql.lang.SelectSymbol;
@@ -103,11 +105,17 @@ public class XMLQueryVisitationStrategy {
     	List<QueryTest> queries = new LinkedList<QueryTest>();
         SAXBuilder builder = SAXBuilderHelper.createSAXBuilder(false);
         Document queryDocument = builder.build(queryFile);
+        StatementTuning querySetTuning = createStatementTuning(queryDocument.getRootElement(), null);
+        long querySetTimeout = getTimeout(queryDocument.getRootElement(), -1);
+        Boolean querySetDigest = getDigest(queryDocument.getRootElement(), null);
         List<Element> queryElements = queryDocument.getRootElement().getChildren(TagNames.Elements.QUERY);
         Iterator<Element> iter = queryElements.iterator();
         while ( iter.hasNext() ) {
             Element queryElement = iter.next();
             String queryName = queryElement.getAttributeValue(TagNames.Attributes.NAME);
+            StatementTuning tuning = createStatementTuning(queryElement, querySetTuning);
+            long timeout = getTimeout(queryElement, querySetTimeout);
+            Boolean digest = getDigest(queryElement, querySetDigest);
             Element exceptionElement = queryElement.getChild(TagNames.Elements.EXCEPTION);
             if ( exceptionElement == null ) {
 	        	String uniqueID = querySetID + "_" + queryName;
@@ -119,6 +127,9 @@ public class XMLQueryVisitationStrategy {
 	        	    QuerySQL sql = createQuerySQL(queryElement);
 	         	    
 	        	    QueryTest q = new QueryTest(queryScenarioID, querySetID, queryName, new QuerySQL[] {sql});
+	        	    q.setStatementTuning(tuning);
+	        	    q.setTimeout(timeout);
+	        	    q.setDigest(digest);
 	        	    queries.add(q);
 	        	} else {
 	        		ClientPlugin.LOGGER.debug("=======  Creating QueryTest has multiple sql statements " + queryName);
@@ -133,6 +144,9 @@ public class XMLQueryVisitationStrategy {
 	        			c++;	
 	        		}
 	        		QueryTest q = new QueryTest(queryScenarioID, querySetID, uniqueID, querysql);
+	        		q.setStatementTuning(tuning);
+	        		q.setTimeout(timeout);
+	        		q.setDigest(digest);
 	        		queries.add(q);
 	 	    
 	        	}
@@ -145,6 +159,8 @@ public class XMLQueryVisitationStrategy {
                 QuerySQL sql = new QuerySQL(exceptionType, null);
                 
                 QueryTest q = new QueryTest(queryScenarioID, uniqueID, querySetID, new QuerySQL[] {sql});
+                q.setStatementTuning(tuning);
+                q.setTimeout(timeout);
                 queries.add(q);
 
             }
@@ -152,6 +168,81 @@ public class XMLQueryVisitationStrategy {
         return queries;
     }
     
+    /**
+     * Reads the statement settings from the attributes of the element, the settings
+     * that are not set are taken from the parent settings.
+     * @param element query file root or query element
+     * @param parent settings of the query set, may be <code>null</code>
+     * @return StatementTuning, <code>null</code> when neither the element nor the parent have settings
+     */
+    private StatementTuning createStatementTuning(Element element, StatementTuning parent) {
+        StatementTuning tuning = new StatementTuning();
+        boolean found = false;
+
+        String value = element.getAttributeValue(TagNames.Attributes.FETCH_SIZE);
+        if (value != null && value.trim().length() > 0) {
+            tuning.setFetchSize(Integer.parseInt(value.trim()));
+            found = true;
+        }
+        value = element.getAttributeValue(TagNames.Attributes.MAX_ROWS);
+        if (value != null && value.trim().length() > 0) {
+            tuning.setMaxRows(Integer.parseInt(value.trim()));
+            found = true;
+        }
+        value = element.getAttributeValue(TagNames.Attributes.QUERY_TIMEOUT);
+        if (value != null && value.trim().length() > 0) {
+            tuning.setQueryTimeout(Integer.parseInt(value.trim()));
+            found = true;
+        }
+        value = element.getAttributeValue(TagNames.Attributes.FETCH_DIRECTION);
+        if (value != null && value.trim().length() > 0) {
+            tuning.setFetchDirection(value);
+            found = true;
+        }
+        value = element.getAttributeValue(TagNames.Attributes.ADAPTIVE_FETCH_SIZE);
+        if (value != null && value.trim().length() > 0) {
+            tuning.setAdaptiveFetchSize(Boolean.valueOf(value.trim()).booleanValue());
+            found = true;
+        }
+        // name=value pairs, separated by ';'
+        value = element.getAttributeValue(TagNames.Attributes.EXECUTION_PROPERTIES);
+        if (value != null && value.trim().length() > 0) {
+            for (String prop : value.split(";")) { //$NON-NLS-1$
+                int idx = prop.indexOf('=');
+                if (idx > 0) {
+                    tuning.getExecutionProperties().setProperty(prop.substring(0, idx).trim(), prop.substring(idx + 1).trim());
+                }
+            }
+            found = true;
+        }
+
+        if (parent == null) {
+            return (found ? tuning : null);
+        }
+        return (found ? parent.merge(tuning) : parent);
+    }
+
+    /**
+     * @param element query file root or query element
+     * @param parent timeout of the query set
+     * @return milliseconds the query may run, <code>parent</code> when not set
+     */
+    private long getTimeout(Element element, long parent) {
+        String value = element.getAttributeValue(TagNames.Attributes.TIMEOUT);
+        if (value != null && value.trim().length() > 0) {
+            return Long.parseLong(value.trim());
+        }
+        return parent;
+    }
+
+    private Boolean getDigest(Element element, Boolean parent) {
+        String value = element.getAttributeValue(TagNames.Attributes.DIGEST);
+        if (value != null && value.trim().length() > 0) {
+            return Boolean.valueOf(value.trim());
+        }
+        return parent;
+    }
+
     private QuerySQL createQuerySQL(Element queryElement) {
  	    String query = queryElement.getTextTrim();
  	    	    
@@ -180,6 +271,13 @@ public class XMLQueryVisitationStrategy {
  	    	if (cnt > 0)
  	    		sql.setRunTimes(cnt);
  	    } 	    
+
+ 	    String warmup = queryElement.getAttributeValue(TagNames.Attributes.WARMUP_NUM_TIMES);
+ 	    if (warmup != null && warmup.trim().length() > 0) {
+ 	    	int cnt = Integer.parseInt(warmup);
+ 	    	if (cnt >= 0)
+ 	    		sql.setWarmupTimes(cnt);
+ 	    }
 	    
 	    return sql;	
     }
@@ -309,6 +407,10 @@ public class XMLQueryVisitationStrategy {
                 if ( queryResults.getRecordCount() > 0 ) {
                     expectedResults.setRows(queryResults.getRecords());
                 }
+                final Element digestElement = resultElement.getChild(TagNames.Elements.DIGEST);
+                if ( digestElement != null ) {
+                    expectedResults.setDigest(consumeDigest(digestElement));
+                }
             } else if(queryResults.getUpdateCount() > -1){
                 expectedResults = new ExpectedResultsHolder(TagNames.Elements.UPDATE, test);
                 expectedResults.setUpdCount(queryResults.getUpdateCount());
@@ -672,6 +774,58 @@ public class XMLQueryVisitationStrategy {
     }
 
 
+    /**
+     * Produce a JDOM Element for rows that were already read from a JDBC ResultSet object.
+     * <br>
+     * @param identifiers the column names.
+     * @param types the column type names.
+     * @param rows the rows of values, in the order they were read.
+     * @param resultsElement 
+     * @return the JDOM element of the results that were converted to XML.
+     * @exception JDOMException if there is an error producing XML.
+     * @throws SQLException 
+     */
+    public Element produceMsg(List<String> identifiers, List<String> types, List<List<Object>> rows,
+            Element resultsElement) throws JDOMException, SQLException {
+
+        // -----------------------------------
+        // Add the Select (header) element ...
+        // -----------------------------------
+        Element selectElement = new Element(TagNames.Elements.SELECT);
+        for ( int i = 0; i < identifiers.size(); i++ ) {
+            Element dataElement = new Element(TagNames.Elements.DATA_ELEMENT);
+            dataElement.setAttribute(new Attribute(TagNames.Attributes.TYPE, types.get(i)));
+            dataElement.setText(identifiers.get(i));
+            selectElement.addContent(dataElement);
+        }
+        resultsElement.addContent(selectElement);
+
+        // -------------------------
+        // Add the Table element ...
+        // -------------------------
+        Element tableElement = new Element(TagNames.Elements.TABLE);
+        resultsElement.addContent(tableElement);
+        for ( List<Object> row : rows ) {
+            Element rowElement = new Element(TagNames.Elements.TABLE_ROW);
+            for ( Object cellValue : row ) {
+                Element cellElement = new Element(TagNames.Elements.TABLE_CELL);
+                if ( cellValue != null ) {
+                    cellElement = produceMsg(cellValue, cellElement);
+                } else {
+                    cellElement = cellElement.addContent(TagNames.Elements.NULL);
+                }
+                rowElement.addContent(cellElement);
+            }
+            tableElement.addContent(rowElement);
+        }
+        tableElement.setAttribute(new Attribute(TagNames.Attributes.TABLE_ROW_COUNT,
+                                                Integer.toString(rows.size())));
+        tableElement.setAttribute(new Attribute(TagNames.Attributes.TABLE_COLUMN_COUNT,
+                                                Integer.toString(identifiers.size())));
+
+        return resultsElement;
+    }
+
     /**
      * Produce a JDOM Element for the instance of any Object.
      * <br>
@@ -1165,6 +1319,68 @@ public class XMLQueryVisitationStrategy {
         return produceResults(object, START_ROW, Integer.MAX_VALUE);
     }
 
+    /**
+     * Produce a JDOM Element with the columns and the {@link ResultsDigest digest} of the rows
+     * of the results, instead of the rows.  The rows are read from the current row.
+     * <br>
+     * @param object for which the JDOM Element is to be produced.
+     * @return the JDOM element of the results object
+     * @exception JDOMException if there is an error producing XML.
+     * @exception SQLException if there is an error walking through the ResultSet object.
+     */
+    public Element produceDigest(ResultSet object) throws JDOMException, SQLException {
+        Element resultsElement = new Element(TagNames.Elements.QUERY_RESULTS);
+
+        ResultSetMetaData rmdata = object.getMetaData();
+        int colCount = rmdata.getColumnCount();
+        List<SelectSymbol> identList = new ArrayList<SelectSymbol>(colCount);
+        for ( int i = 1; i <= colCount; i++ ) {
+            identList.add(new ElementSymbol(rmdata.getColumnName(i)));
+        }
+        resultsElement = produceMsg(new Select(identList), rmdata, resultsElement);
+
+        ResultsDigest digest = new ResultsDigest(colCount);
+        while ( object.next() ) {
+            digest.addRow(object);
+        }
+
+        // the table has no rows
+        Element tableElement = new Element(TagNames.Elements.TABLE);
+        tableElement.setAttribute(TagNames.Attributes.TABLE_ROW_COUNT, Long.toString(digest.getRowCount()));
+        tableElement.setAttribute(TagNames.Attributes.TABLE_COLUMN_COUNT, Integer.toString(colCount));
+        resultsElement.addContent(tableElement);
+
+        Element digestElement = new Element(TagNames.Elements.DIGEST);
+        digestElement.setAttribute(TagNames.Attributes.TABLE_ROW_COUNT, Long.toString(digest.getRowCount()));
+        digestElement.setAttribute(TagNames.Attributes.ORDERED_HASH, Long.toHexString(digest.getOrderedHash()));
+        digestElement.setAttribute(TagNames.Attributes.UNORDERED_HASH, Long.toHexString(digest.getUnorderedHash()));
+        for ( int i = 0; i < colCount; i++ ) {
+            Element columnElement = new Element(TagNames.Elements.COLUMN_HASH);
+            columnElement.setAttribute(TagNames.Attributes.NAME, rmdata.getColumnName(i + 1));
+            columnElement.setText(Long.toHexString(digest.getColumnHash(i)));
+            digestElement.addContent(columnElement);
+        }
+        resultsElement.addContent(digestElement);
+        return resultsElement;
+    }
+
+    private ResultsDigest consumeDigest(Element digestElement) throws JDOMException {
+        try {
+            List<Element> columnElements = digestElement.getChildren(TagNames.Elements.COLUMN_HASH);
+            long[] columnHashes = new long[columnElements.size()];
+            for ( int i = 0; i < columnHashes.length; i++ ) {
+                columnHashes[i] = Long.parseUnsignedLong(columnElements.get(i).getTextTrim(), 16);
+            }
+            return new ResultsDigest(
+                    Long.parseLong(digestElement.getAttributeValue(TagNames.Attributes.TABLE_ROW_COUNT)),
+                    Long.parseUnsignedLong(digestElement.getAttributeValue(TagNames.Attributes.ORDERED_HASH), 16),
+                    Long.parseUnsignedLong(digestElement.getAttributeValue(TagNames.Attributes.UNORDERED_HASH), 16),
+                    columnHashes);
+        } catch ( NumberFormatException e ) {
+            throw new JDOMException("Invalid digest of the expected results: " + e.getMessage(), e); //$NON-NLS-1$
+        }
+    }
+
     /**
      * Produce a JDOM Element for an instance of Results object.
      * <br>
@@ -1192,6 +1408,11 @@ public class XMLQueryVisitationStrategy {
                     "The starting row cannot be less than the ending row."); //$NON-NLS-1$
         }
 
+        if ( object.getType() == ResultSet.TYPE_FORWARD_ONLY ) {
+            // cannot be positioned, read from the current row
+            return produceMsg(object, endRow - beginRow + 1);
+        }
+
         int currentRow = object.getRow() + 1;
 
         if ( beginRow > currentRow ) {
@@ -1207,19 +1428,19 @@ public class XMLQueryVisitationStrategy {
             }
         }
 
-        return produceMsg(object, endRow);
+        return produceMsg(object, endRow - beginRow + 1);
     }
 
     /**
      * Produce a JDOM Element for an instance of a JDBC ResultSet object.
      * <br>
      * @param object for which the JDOM Element is to be produced.
-     * @param endRow The row until which the results are to be converted to XML.
+     * @param maxRows The number of rows, from the current row, that are to be converted to XML.
      * @return the JDOM element of the results object that was converted to XML.
      * @exception JDOMException if there is an error producing XML.
      * @exception SQLException if there is an error walking through the ResultSet object.
      */
-    private Element produceMsg(ResultSet object, int endRow) throws JDOMException, SQLException {
+    private Element produceMsg(ResultSet object, int maxRows) throws JDOMException, SQLException {
 
         // -----------------------------------
         // Create the QueryResults element ...
@@ -1246,7 +1467,7 @@ public class XMLQueryVisitationStrategy {
             int rowCount = 0;
             int colCount = rmdata.getColumnCount();
 
-            while ( object.next() && (object.getRow() <= endRow) ) {
+            while ( rowCount < maxRows && object.next() ) {
 
                 // -------------------------
                 // Add the ROW element ...
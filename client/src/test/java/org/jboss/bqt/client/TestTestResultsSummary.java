@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.bqt.framework.TestResult;
+import org.junit.Test;
+
+/**
+ * Tests the client throughput printed by {@link TestResultsSummary}
+ */
+public class TestTestResultsSummary {
+
+	// ===================================================================
+	// ACTUAL TESTS
+	// ===================================================================
+
+	@Test
+	public void testPrintClientThroughput() {
+		List<TestResult> results = new ArrayList<TestResult>();
+		results.add(result(1, 1000, 1010, TestResult.RESULT_STATE.TEST_SUCCESS));
+		results.add(result(1, 1010, 1040, TestResult.RESULT_STATE.TEST_SUCCESS));
+		results.add(result(2, 1000, 1020, TestResult.RESULT_STATE.TEST_SUCCESS));
+		results.add(result(2, -1, -1, TestResult.RESULT_STATE.TEST_EXCEPTION));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PrintStream ps = new PrintStream(out);
+		TestResultsSummary.printClientThroughput(ps, 1000, results);
+		ps.close();
+
+		String[] lines = out.toString().trim().split("\\r?\\n");
+		assertEquals("Client Throughput", lines[0]);
+		assertEquals(6, lines.length);
+
+		String[] client1 = lines[3].split("\t");
+		assertEquals("1", client1[0]);
+		assertEquals("2", client1[1]);
+		assertEquals("0", client1[2]);
+		assertEquals("30", client1[5]);
+
+		// the failed query has no execution time and is left out of the latency
+		String[] client2 = lines[4].split("\t");
+		assertEquals("2", client2[0]);
+		assertEquals("2", client2[1]);
+		assertEquals("1", client2[2]);
+		assertEquals("20", client2[5]);
+
+		String[] all = lines[5].split("\t");
+		assertEquals("All", all[0]);
+		assertEquals("4", all[1]);
+		assertEquals("1", all[2]);
+		assertTrue(all[3].startsWith("4"));
+		assertEquals("30", all[5]);
+	}
+
+	private static TestResult result(int clientID, long beginTS, long endTS, int status) {
+		TestResult result = new TestResult("qs", "q" + beginTS);
+		result.setClientID(clientID);
+		result.setBeginTS(beginTS);
+		result.setEndTS(endTS);
+		result.setStatus(status);
+		return result;
+	}
+
+}
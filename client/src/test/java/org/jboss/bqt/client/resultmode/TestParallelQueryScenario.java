@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.resultmode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.bqt.client.TestClient;
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.core.util.FileUtils;
+import org.jboss.bqt.core.util.ObjectConverterUtil;
+import org.jboss.bqt.core.util.UnitTestUtil;
+import org.jboss.bqt.framework.ConfigPropertyLoader;
+import org.jboss.bqt.framework.ConfigPropertyNames;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Compares the query set of <code>parallel_queries</code> with {@link TestProperties#EXECUTION_THREADS}
+ * of 1 and of 4, and in the {@link TestProperties#EXECUTION_MODE pool and virtual} modes, against an
+ * in memory H2 database, and checks that the runs report the same status and message of each query,
+ * and the same summary.
+ */
+@SuppressWarnings("nls")
+public class TestParallelQueryScenario {
+
+	private static final File DIR = new File(UnitTestUtil.getTestOutputPath(), "parallel").getAbsoluteFile();
+	private static final String QUERY_SET = "parallel_queries";
+	private static final String SCENARIO = "parallel_scenario";
+
+	private static final String[] PROPERTIES = { "queryset.dirname", "test.queries.dirname", "expected.results.dirname",
+			"parallel.dir", "project.data.path", "output.dir",
+			"result.mode", ConfigPropertyNames.CONFIG_FILE, TestProperties.EXECUTION_THREADS, TestProperties.EXECUTION_MODE };
+
+	@BeforeClass
+	public static void beforeClass() throws Exception {
+		FileUtils.removeDirectoryAndChildren(DIR);
+		File queries = new File(DIR, "query_sets" + File.separator + QUERY_SET + File.separator + "test_queries");
+		queries.mkdirs();
+		FileUtils.copyDirectoryContentsRecursively(new File(UnitTestUtil.getTestDataPath(), "query_sets" + File.separator
+				+ QUERY_SET + File.separator + "test_queries"), queries);
+
+		// as in parallel_scenario.properties, the other tests set them too
+		System.setProperty("queryset.dirname", QUERY_SET);
+		System.setProperty("test.queries.dirname", "test_queries");
+		System.setProperty("expected.results.dirname", "expected_results");
+
+		// named after parallel_scenario.properties
+		System.clearProperty("scenario.name");
+
+		System.setProperty("parallel.dir", DIR.getPath());
+		System.setProperty("project.data.path", UnitTestUtil.getTestDataPath());
+		System.setProperty(ConfigPropertyNames.CONFIG_FILE, UnitTestUtil.getTestDataPath() + File.separator + "parallel_config.properties");
+
+		run("generate", "generate", 1, TestProperties.EXECUTION_MODE_POOL);
+
+		// so that one compare fails
+		File changed = new File(DIR, "query_sets" + File.separator + QUERY_SET + File.separator + "expected_results"
+				+ File.separator + "parallel" + File.separator + "parallel_ChangedResult.xml");
+		String results = ObjectConverterUtil.convertFileToString(changed);
+		assertTrue(results.contains(">7<"));
+		FileUtils.write(results.replaceFirst(">7<", ">70<").getBytes("UTF-8"), changed);
+	}
+
+	@AfterClass
+	public static void afterClass() {
+		for (String p : PROPERTIES) {
+			System.clearProperty(p);
+		}
+		ConfigPropertyLoader.reset();
+	}
+
+	@Test
+	public void testSameResultsAsSerial() throws Exception {
+		run("compare", "serial", 1, TestProperties.EXECUTION_MODE_POOL);
+		run("compare", "parallel", 4, TestProperties.EXECUTION_MODE_POOL);
+
+		List<String> serial = queryStatuses("serial");
+		assertEquals(8, serial.size());
+		assertTrue(serial.contains("Ordered,pass,"));
+		assertTrue(serial.get(4).startsWith("ChangedResult,fail,"));
+		assertTrue(serial.get(5).startsWith("MissingTable,fail-expected_exception,"));
+		assertEquals(serial, queryStatuses("parallel"));
+
+		List<String> summary = summary("serial");
+		assertTrue(summary.contains("\tparallel\t7\t1\t8"));
+		assertEquals(summary, summary("parallel"));
+	}
+
+	/**
+	 * The virtual mode runs on virtual threads on JDK 21 and newer, on platform threads before.
+	 */
+	@Test
+	public void testVirtualSameResultsAsPool() throws Exception {
+		run("compare", "pool", 4, TestProperties.EXECUTION_MODE_POOL);
+		run("compare", "virtual", 4, TestProperties.EXECUTION_MODE_VIRTUAL);
+
+		List<String> pool = queryStatuses("pool");
+		assertEquals(8, pool.size());
+		assertEquals(pool, queryStatuses("virtual"));
+		assertEquals(summary("pool"), summary("virtual"));
+	}
+
+	private static void run(String resultMode, String output, int threads, String executionMode) {
+		System.setProperty("result.mode", resultMode);
+		System.setProperty("output.dir", new File(DIR, output).getPath());
+		System.setProperty(TestProperties.EXECUTION_THREADS, String.valueOf(threads));
+		System.setProperty(TestProperties.EXECUTION_MODE, executionMode);
+		ConfigPropertyLoader.reset();
+		new TestClient().runTest();
+	}
+
+	/**
+	 * @return the query, status and message of each query, in the order of the query set
+	 */
+	private static List<String> queryStatuses(String output) throws Exception {
+		File results = new File(DIR, output + File.separator + SCENARIO + File.separator + "parallel_COMPARE.txt");
+		List<String> statuses = new ArrayList<String>();
+		boolean queries = false;
+		for (String line : ObjectConverterUtil.convertFileToString(results).split("\r?\n")) {
+			String[] columns = line.split(",", 14);
+			if (queries && columns.length == 14) {
+				statuses.add(columns[0] + "," + columns[1] + "," + columns[13]);
+			} else if (queries && line.length() > 0) {
+				// the message goes on
+				statuses.add(statuses.remove(statuses.size() - 1) + "\n" + line);
+			}
+			queries = queries || line.startsWith("Query,Status,");
+		}
+		return statuses;
+	}
+
+	/**
+	 * @return the lines of the summary, without the times
+	 */
+	private static List<String> summary(String output) throws Exception {
+		File summary = new File(DIR, output + File.separator + "Summary_" + QUERY_SET + "_" + SCENARIO + ".txt");
+		List<String> lines = new ArrayList<String>();
+		for (String line : ObjectConverterUtil.convertFileToString(summary).split("\r?\n")) {
+			String[] columns = line.split("\t");
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < Math.min(columns.length, 5); i++) {
+				sb.append(i == 0 ? "" : "\t").append(i == 1 ? columns[i].trim() : columns[i]);
+			}
+			lines.add(sb.toString());
+		}
+		return lines;
+	}
+}
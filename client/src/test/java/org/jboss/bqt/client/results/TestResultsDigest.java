@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.results;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+
+import org.junit.Test;
+
+public class TestResultsDigest {
+
+	/**
+	 * @return ResultSet positioned on the row, only getObject(int) is supported
+	 */
+	private static ResultSet row(final Object... values) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class[] { ResultSet.class }, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("getObject".equals(method.getName())) { //$NON-NLS-1$
+							return values[((Integer) args[0]).intValue() - 1];
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private static ResultsDigest digest(Object[]... rows) throws Exception {
+		ResultsDigest digest = new ResultsDigest(rows[0].length);
+		for (Object[] row : rows) {
+			digest.addRow(row(row));
+		}
+		return digest;
+	}
+
+	@Test
+	public void testOrderOfRows() throws Exception {
+		ResultsDigest d1 = digest(new Object[] { 1, "a" }, new Object[] { 2, "b" });
+		ResultsDigest d2 = digest(new Object[] { 2, "b" }, new Object[] { 1, "a" });
+		assertEquals(2, d1.getRowCount());
+		assertEquals(d1.getUnorderedHash(), d2.getUnorderedHash());
+		assertEquals(d1.getColumnHash(0), d2.getColumnHash(0));
+		assertEquals(d1.getColumnHash(1), d2.getColumnHash(1));
+		assertFalse(d1.getOrderedHash() == d2.getOrderedHash());
+	}
+
+	@Test
+	public void testValues() throws Exception {
+		ResultsDigest d1 = digest(new Object[] { 1, "a" }, new Object[] { 2, null });
+		ResultsDigest d2 = digest(new Object[] { 1, "a" }, new Object[] { 2, "" });
+		assertEquals(d1.getColumnHash(0), d2.getColumnHash(0));
+		assertFalse(d1.getColumnHash(1) == d2.getColumnHash(1));
+		assertFalse(d1.getUnorderedHash() == d2.getUnorderedHash());
+
+		// the values are swapped between the rows, each column has the same values
+		ResultsDigest d3 = digest(new Object[] { 1, "a" }, new Object[] { 2, "b" });
+		ResultsDigest d4 = digest(new Object[] { 1, "b" }, new Object[] { 2, "a" });
+		assertEquals(d3.getColumnHash(1), d4.getColumnHash(1));
+		assertFalse(d3.getUnorderedHash() == d4.getUnorderedHash());
+	}
+
+	@Test
+	public void testCanonicalValues() throws Exception {
+		assertEquals(ResultsDigest.hash(new BigDecimal("1.0")), ResultsDigest.hash(new BigDecimal("1.00"))); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(ResultsDigest.hash(Double.valueOf(0.0)), ResultsDigest.hash(Double.valueOf(-0.0)));
+		assertEquals(ResultsDigest.hash("ab".getBytes()), ResultsDigest.hash("ab".getBytes())); //$NON-NLS-1$ //$NON-NLS-2$
+		assertTrue(ResultsDigest.hash(null) != ResultsDigest.hash("")); //$NON-NLS-1$
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.results.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.bqt.core.exception.MultiTestFailedException;
+import org.jboss.bqt.core.exception.QueryTestFailedException;
+import org.junit.Test;
+
+public class TestHashCompareResults {
+
+	private static List<List<Object>> rows(Object[]... rows) {
+		List<List<Object>> result = new ArrayList<List<Object>>();
+		for (Object[] row : rows) {
+			result.add(new ArrayList<Object>(Arrays.asList(row)));
+		}
+		return result;
+	}
+
+	@Test
+	public void testRowsInAnyOrder() throws Exception {
+		// the rows only differ after the third column
+		List<List<Object>> expected = rows(
+				new Object[] { 1, "a", "b", "x", new BigDecimal("1.0") },
+				new Object[] { 1, "a", "b", "y", new BigDecimal("2.0") },
+				new Object[] { 1, "a", "b", "y", new BigDecimal("2.0") });
+		List<List<Object>> actual = rows(
+				new Object[] { 1, "a", "b", "y", new BigDecimal("2.00") },
+				new Object[] { 1, "a", "b", "x", new BigDecimal("1") },
+				new Object[] { 1, "a", "b", "y", new BigDecimal("2") });
+		new HashCompareResults(null, "").compare(actual, expected);
+	}
+
+	@Test
+	public void testMissingAndUnexpectedRows() throws Exception {
+		List<List<Object>> expected = rows(
+				new Object[] { 1, "a" },
+				new Object[] { 2, "b" },
+				new Object[] { 2, "b" });
+		List<List<Object>> actual = rows(
+				new Object[] { 2, "b" },
+				new Object[] { 3, "c" },
+				new Object[] { 1, "a" });
+		try {
+			new HashCompareResults(null, "").compare(actual, expected);
+			fail();
+		} catch (MultiTestFailedException e) {
+			assertEquals(2, e.getTotalFailures());
+			assertEquals("Missing row (row in expected result: 3): [2, b]", e.getFailures().get(0).getMessage());
+			assertEquals("Unexpected row (row in actual result: 2): [3, c]", e.getFailures().get(1).getMessage());
+		}
+	}
+
+	@Test
+	public void testRowCountDiffers() throws Exception {
+		List<List<Object>> expected = rows(new Object[] { 1 }, new Object[] { 2 });
+		List<List<Object>> actual = rows(new Object[] { 2 });
+		try {
+			new HashCompareResults(null, "").compare(actual, expected);
+			fail();
+		} catch (MultiTestFailedException e) {
+			assertEquals("Expected 2 records but received 1", e.getFailures().get(0).getMessage());
+			assertEquals("Missing row (row in expected result: 1): [1]", e.getFailures().get(1).getMessage());
+		}
+	}
+
+	@Test
+	public void testAllowedDivergence() throws Exception {
+		List<List<Object>> expected = rows(
+				new Object[] { "a", new BigDecimal("1.00"), Double.valueOf(1.5) },
+				new Object[] { "a", new BigDecimal("2.00"), Double.valueOf(2.5) });
+		List<List<Object>> actual = rows(
+				new Object[] { "a", new BigDecimal("2.01"), Double.valueOf(2.49) },
+				new Object[] { "a", new BigDecimal("0.99"), Double.valueOf(1.5) });
+		new HashCompareResults(new BigDecimal("0.01"), "").compare(actual, expected);
+
+		try {
+			new HashCompareResults(null, "").compare(actual, expected);
+			fail();
+		} catch (QueryTestFailedException e) {
+			// the numbers are not equal
+		}
+
+		actual.get(0).set(1, new BigDecimal("2.02"));
+		try {
+			new HashCompareResults(new BigDecimal("0.01"), "").compare(actual, expected);
+			fail();
+		} catch (MultiTestFailedException e) {
+			assertEquals("Missing row (row in expected result: 2): [a, 2.00, 2.5]", e.getFailures().get(0).getMessage());
+		}
+	}
+
+	@Test
+	public void testNearestValuesWithinDivergence() throws Exception {
+		// 1.1 is within the divergence of both 1.0 and 1.2, the sort compare passes as well
+		List<List<Object>> expected = rows(
+				new Object[] { new BigDecimal("1.0") },
+				new Object[] { new BigDecimal("1.2") });
+		List<List<Object>> actual = rows(
+				new Object[] { new BigDecimal("1.1") },
+				new Object[] { new BigDecimal("1.0") });
+		new HashCompareResults(new BigDecimal("0.1"), "").compare(actual, expected);
+
+		actual.get(0).set(0, new BigDecimal("1.4"));
+		try {
+			new HashCompareResults(new BigDecimal("0.1"), "").compare(actual, expected);
+			fail();
+		} catch (MultiTestFailedException e) {
+			assertEquals("Missing row (row in expected result: 2): [1.2]", e.getFailures().get(0).getMessage());
+			assertEquals("Unexpected row (row in actual result: 1): [1.4]", e.getFailures().get(1).getMessage());
+		}
+	}
+
+	@Test
+	public void testValuesAsRead() throws Exception {
+		List<List<Object>> expected = rows(new Object[] { new BigDecimal("100") });
+		List<List<Object>> actual = rows(new Object[] { new BigDecimal("2.00") });
+		try {
+			new HashCompareResults(null, "").compare(actual, expected);
+			fail();
+		} catch (MultiTestFailedException e) {
+			assertEquals("Missing row (row in expected result: 1): [100]", e.getFailures().get(0).getMessage());
+			assertEquals("Unexpected row (row in actual result: 1): [2.00]", e.getFailures().get(1).getMessage());
+		}
+	}
+}
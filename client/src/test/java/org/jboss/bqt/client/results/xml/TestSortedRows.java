@@ -0,0 +1,137 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.client.results.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Clob;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jboss.bqt.client.util.ListNestedSortComparator;
+import org.junit.Test;
+
+public class TestSortedRows {
+
+	private static File dir() {
+		return new File("target/sorted_rows"); //$NON-NLS-1$
+	}
+
+	/**
+	 * @return Clob that only supports getAsciiStream()
+	 */
+	private static Clob clob(final String value) {
+		return (Clob) Proxy.newProxyInstance(Clob.class.getClassLoader(), new Class[] { Clob.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("getAsciiStream".equals(method.getName())) { //$NON-NLS-1$
+							return new ByteArrayInputStream(value.getBytes());
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private static void assertSorted(int rows, int maxRows) throws Exception {
+		ListNestedSortComparator comparator = new ListNestedSortComparator(new int[] { 0 }, true);
+		Random random = new Random(rows);
+		List<List<Object>> expected = new ArrayList<List<Object>>();
+		SortedRows sorted = new SortedRows(comparator, maxRows, dir());
+		for (int i = 0; i < rows; i++) {
+			// few distinct keys, so the order of equal rows is checked
+			List<Object> row = new ArrayList<Object>(Arrays.<Object> asList(
+					Integer.valueOf(random.nextInt(10)), "row " + i, new BigDecimal(i))); //$NON-NLS-1$
+			expected.add(row);
+			sorted.add(row);
+		}
+		List<List<Object>> positions = new ArrayList<List<Object>>(expected);
+		Collections.sort(expected, comparator);
+		try {
+			assertEquals(rows, sorted.size());
+			SortedRows.Row row = sorted.first();
+			for (List<Object> values : expected) {
+				assertEquals(values, row.values);
+				assertEquals(positions.indexOf(values), row.position);
+				row = sorted.next();
+			}
+			assertNull(row);
+		} finally {
+			sorted.close();
+		}
+	}
+
+	@Test
+	public void testInMemory() throws Exception {
+		assertSorted(500, 1000);
+	}
+
+	@Test
+	public void testRunFiles() throws Exception {
+		assertSorted(2500, 100);
+		String[] left = dir().list();
+		assertTrue(left == null || left.length == 0);
+	}
+
+	@Test
+	public void testClobRunFiles() throws Exception {
+		// the clobs of the rows in memory are sorted as the ones written to the run files
+		ListNestedSortComparator comparator = new ListNestedSortComparator(new int[] { 0 }, true);
+		Random random = new Random(1);
+		List<String> keys = new ArrayList<String>();
+		SortedRows sorted = new SortedRows(comparator, 30, dir());
+		try {
+			for (int i = 0; i < 100; i++) {
+				String key = "key " + random.nextInt(1000); //$NON-NLS-1$
+				keys.add(key);
+				sorted.add(new ArrayList<Object>(Arrays.<Object> asList(clob(key), i)));
+			}
+			Collections.sort(keys);
+			SortedRows.Row row = sorted.first();
+			for (String key : keys) {
+				assertEquals(key, row.values.get(0));
+				row = sorted.next();
+			}
+			assertNull(row);
+		} finally {
+			sorted.close();
+		}
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		SortedRows sorted = new SortedRows(new ListNestedSortComparator(new int[] { 0 }, true), 10, dir());
+		assertNull(sorted.first());
+		sorted.close();
+	}
+}
@@ -0,0 +1,359 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.results.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.jboss.bqt.client.QueryTest;
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.client.results.ExpectedResultsHolder;
+import org.jboss.bqt.client.results.ResultsDigest;
+import org.jboss.bqt.client.xml.TagNames;
+import org.jboss.bqt.client.xml.XMLQueryVisitationStrategy;
+import org.jboss.bqt.core.exception.QueryTestFailedException;
+import org.jboss.bqt.framework.TestCase;
+import org.jboss.bqt.framework.TestResult;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.junit.Test;
+
+/**
+ * Tests the compare of ordered and unordered results and of digests, which compare the rows while they are read.
+ */
+public class TestXMLCompareResults {
+
+	private static final String[] COLUMNS = { "ID", "VAL" }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	private static List<List<Object>> rows(int count) {
+		List<List<Object>> rows = new ArrayList<List<Object>>();
+		for (int i = 1; i <= count; i++) {
+			rows.add(new ArrayList<Object>(Arrays.<Object> asList(i, i * 10)));
+		}
+		return rows;
+	}
+
+	/**
+	 * @return ResultSet of integer columns, only what the compare uses is supported
+	 */
+	private static ResultSet resultSet(final int type, final List<List<Object>> rows) {
+		final ResultSetMetaData metadata = (ResultSetMetaData) Proxy.newProxyInstance(
+				ResultSetMetaData.class.getClassLoader(), new Class[] { ResultSetMetaData.class },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if ("getColumnCount".equals(name)) { //$NON-NLS-1$
+							return COLUMNS.length;
+						} else if ("getColumnName".equals(name)) { //$NON-NLS-1$
+							return COLUMNS[((Integer) args[0]).intValue() - 1];
+						} else if ("getColumnTypeName".equals(name)) { //$NON-NLS-1$
+							return "integer"; //$NON-NLS-1$
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class[] { ResultSet.class }, new InvocationHandler() {
+					private int row = -1;
+
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if ("getType".equals(name)) { //$NON-NLS-1$
+							return type;
+						} else if ("getMetaData".equals(name)) { //$NON-NLS-1$
+							return metadata;
+						} else if ("next".equals(name)) { //$NON-NLS-1$
+							return ++row < rows.size();
+						} else if ("getObject".equals(name)) { //$NON-NLS-1$
+							return rows.get(row).get(((Integer) args[0]).intValue() - 1);
+						}
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+
+	private static TestCase testCase() {
+		QueryTest qt = new QueryTest("scenario", "queryset", "Query1", null); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		TestCase testcase = new TestCase(qt);
+		testcase.setTestResult(new TestResult(qt.getQuerySetID(), qt.getQueryID()));
+		return testcase;
+	}
+
+	private static ExpectedResultsHolder expected(TestCase testcase, List<List<Object>> rows) {
+		ExpectedResultsHolder expected = new ExpectedResultsHolder(TagNames.Elements.QUERY_RESULTS,
+				(QueryTest) testcase.getActualTest());
+		expected.setIdentifiers(Arrays.asList(COLUMNS));
+		expected.setTypes(Arrays.asList("integer", "integer")); //$NON-NLS-1$ //$NON-NLS-2$
+		expected.setRows(rows);
+		return expected;
+	}
+
+	private static XMLCompareResults compare(int errorWindow) {
+		Properties props = new Properties();
+		props.setProperty(TestProperties.COMPARE_ERROR_WINDOW, String.valueOf(errorWindow));
+		return XMLCompareResults.create(props);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<List<Object>> kept(TestCase testcase) {
+		return ((ExpectedResultsHolder) testcase.getActualResults()).getRows();
+	}
+
+	@Test
+	public void testEqualRows() throws Exception {
+		TestCase testcase = testCase();
+		compare(100).compareResults(testcase, expected(testcase, rows(5)),
+				resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, rows(5)), true);
+	}
+
+	@Test
+	public void testValueMismatch() throws Exception {
+		TestCase testcase = testCase();
+		List<List<Object>> actual = rows(3);
+		actual.get(1).set(1, 21);
+		try {
+			compare(100).compareResults(testcase, expected(testcase, rows(3)),
+					resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), true);
+			fail();
+		} catch (QueryTestFailedException e) {
+			assertEquals("CompareResults Error: Value mismatch at row 2 and column 2 " //$NON-NLS-1$
+					+ "(row in actual result: 2, row in expected result: 2): expected = [20], actual = [21]", //$NON-NLS-1$
+					e.getMessage());
+		}
+	}
+
+	@Test
+	public void testTooFewRows() throws Exception {
+		TestCase testcase = testCase();
+		List<List<Object>> actual = rows(2);
+		// the number of rows is reported, not the value
+		actual.get(0).set(1, 11);
+		try {
+			compare(100).compareResults(testcase, expected(testcase, rows(3)),
+					resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), true);
+			fail();
+		} catch (QueryTestFailedException e) {
+			assertEquals("CompareResults Error: Expected 3 records but received only 2", e.getMessage()); //$NON-NLS-1$
+		}
+	}
+
+	@Test
+	public void testTooManyRows() throws Exception {
+		TestCase testcase = testCase();
+		List<List<Object>> actual = rows(4);
+		actual.get(1).set(1, 21);
+		try {
+			compare(1).compareResults(testcase, expected(testcase, rows(3)),
+					resultSet(ResultSet.TYPE_FORWARD_ONLY, actual), true);
+			fail();
+		} catch (QueryTestFailedException e) {
+			assertEquals("CompareResults Error: Expected 3 records but received 4", e.getMessage()); //$NON-NLS-1$
+		}
+		// the window is taken at the first mismatch, not at the first extra row
+		assertEquals(actual.subList(1, 3), kept(testcase));
+	}
+
+	@Test
+	public void testForwardOnlyWindow() throws Exception {
+		TestCase testcase = testCase();
+		List<List<Object>> actual = rows(10);
+		actual.get(5).set(1, 61);
+		actual.get(7).set(1, 81);
+		try {
+			compare(2).compareResults(testcase, expected(testcase, rows(10)),
+					resultSet(ResultSet.TYPE_FORWARD_ONLY, actual), true);
+			fail();
+		} catch (QueryTestFailedException e) {
+			// both mismatches are reported
+		}
+		// the row before the first mismatch, the mismatch and the two rows that follow it
+		assertEquals(actual.subList(4, 8), kept(testcase));
+	}
+
+	/**
+	 * @return the expected results of the rows, parsed from the file of their digest
+	 */
+	private static ExpectedResultsHolder expectedDigest(TestCase testcase, List<List<Object>> rows) throws Exception {
+		Element root = new Element(TagNames.Elements.ROOT_ELEMENT);
+		root.addContent(new Element(TagNames.Elements.QUERY).setText("select id, val from t")); //$NON-NLS-1$
+		root.addContent(new XMLQueryVisitationStrategy().produceDigest(resultSet(ResultSet.TYPE_FORWARD_ONLY, rows)));
+		File file = new File("target/compare_results/digest.xml"); //$NON-NLS-1$
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			new XMLOutputter(Format.getPrettyFormat()).output(new Document(root), out);
+		} finally {
+			out.close();
+		}
+		return new XMLQueryVisitationStrategy().parseXMLResultsFile((QueryTest) testcase.getActualTest(),
+				"queryset", file); //$NON-NLS-1$
+	}
+
+	@Test
+	public void testDigestRoundTrip() throws Exception {
+		TestCase testcase = testCase();
+		ExpectedResultsHolder expected = expectedDigest(testcase, rows(5));
+
+		ResultsDigest digest = new ResultsDigest(COLUMNS.length);
+		for (List<Object> row : rows(5)) {
+			digest.addRow(row);
+		}
+		ResultsDigest parsed = expected.getDigest();
+		assertEquals(digest.getRowCount(), parsed.getRowCount());
+		assertEquals(digest.getOrderedHash(), parsed.getOrderedHash());
+		assertEquals(digest.getUnorderedHash(), parsed.getUnorderedHash());
+		assertEquals(digest.getColumnCount(), parsed.getColumnCount());
+		for (int col = 0; col < COLUMNS.length; col++) {
+			assertEquals(digest.getColumnHash(col), parsed.getColumnHash(col));
+		}
+		assertEquals(Arrays.asList(COLUMNS), expected.getIdentifiers());
+
+		compare(100).compareResults(testcase, expected, resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, rows(5)), true);
+	}
+
+	@Test
+	public void testDigestMismatch() throws Exception {
+		TestCase testcase = testCase();
+		ExpectedResultsHolder expected = expectedDigest(testcase, rows(5));
+		List<List<Object>> actual = rows(5);
+		actual.get(3).set(1, 41);
+		try {
+			compare(2).compareResults(testcase, expected, resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), true);
+			fail();
+		} catch (QueryTestFailedException e) {
+			assertEquals("CompareResults Error: Digest mismatch at column 2 (VAL): the values differ from the expected results", //$NON-NLS-1$
+					e.getMessage());
+		}
+		// the error file gets the first rows, whatever the type of the result set
+		assertEquals(actual.subList(0, 2), kept(testcase));
+
+		// the rows are not in the expected order
+		testcase = testCase();
+		actual = rows(5);
+		Collections.swap(actual, 0, 4);
+		try {
+			compare(2).compareResults(testcase, expected, resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), true);
+			fail();
+		} catch (QueryTestFailedException e) {
+			assertEquals("CompareResults Error: Digest mismatch: the rows are not in the expected order", e.getMessage()); //$NON-NLS-1$
+		}
+		compare(2).compareResults(testCase(), expected, resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), false);
+	}
+
+	@Test
+	public void testForwardOnlyExtraRows() throws Exception {
+		TestCase testcase = testCase();
+		try {
+			compare(2).compareResults(testcase, expected(testcase, rows(3)),
+					resultSet(ResultSet.TYPE_FORWARD_ONLY, rows(6)), true);
+			fail();
+		} catch (QueryTestFailedException e) {
+			assertEquals("CompareResults Error: Expected 3 records but received 6", e.getMessage()); //$NON-NLS-1$
+		}
+		// the last expected row, the first extra row and the two rows that follow it
+		assertEquals(rows(6).subList(2, 6), kept(testcase));
+	}
+
+	/**
+	 * The rows of an unordered compare are compared in sorted order, a mismatch reports the rows
+	 * where the values were in the results, whether the actual rows are sorted while they are read
+	 * or after they are all read.
+	 */
+	@Test
+	public void testUnorderedMismatchPositions() throws Exception {
+		List<List<Object>> expectedRows = new ArrayList<List<Object>>();
+		for (int i : new int[] { 2, 4, 1, 3 }) {
+			expectedRows.add(new ArrayList<Object>(Arrays.<Object> asList(i, i * 10)));
+		}
+		List<List<Object>> actual = new ArrayList<List<Object>>();
+		for (int i : new int[] { 3, 1, 4, 2 }) {
+			actual.add(new ArrayList<Object>(Arrays.<Object> asList(i, i * 10)));
+		}
+		actual.get(2).set(1, 41);
+
+		Properties readAll = new Properties();
+		readAll.setProperty(TestProperties.COMPARE_SORT_ROWS, "0"); //$NON-NLS-1$
+		for (XMLCompareResults compare : new XMLCompareResults[] { compare(100), XMLCompareResults.create(readAll) }) {
+			TestCase testcase = testCase();
+			try {
+				compare.compareResults(testcase, expected(testcase, expectedRows),
+						resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), false);
+				fail();
+			} catch (QueryTestFailedException e) {
+				// the last row once sorted, the third actual row and the second expected row
+				assertEquals("CompareResults Error: Value mismatch at row 4 and column 2 " //$NON-NLS-1$
+						+ "(row in actual result: 3, row in expected result: 2): expected = [40], actual = [41]", //$NON-NLS-1$
+						e.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void testAllowedDivergenceOfEachCompare() throws Exception {
+		List<List<Object>> expectedRows = new ArrayList<List<Object>>();
+		expectedRows.add(new ArrayList<Object>(Arrays.<Object> asList(1, new BigDecimal("1.00")))); //$NON-NLS-1$
+		List<List<Object>> actual = new ArrayList<List<Object>>();
+		actual.add(new ArrayList<Object>(Arrays.<Object> asList(1, new BigDecimal("1.05")))); //$NON-NLS-1$
+
+		Properties props = new Properties();
+		props.setProperty(TestProperties.ALLOWED_DIVERGENCE, "0.1"); //$NON-NLS-1$
+		XMLCompareResults tolerant = XMLCompareResults.create(props);
+		XMLCompareResults exact = compare(100);
+
+		// each compare keeps the divergence of its own properties, whichever was created first
+		TestCase testcase = testCase();
+		tolerant.compareResults(testcase, expected(testcase, expectedRows),
+				resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), true);
+		testcase = testCase();
+		try {
+			exact.compareResults(testcase, expected(testcase, expectedRows),
+					resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), true);
+			fail();
+		} catch (QueryTestFailedException e) {
+			assertEquals("CompareResults Error: Value mismatch at row 1 and column 2 " //$NON-NLS-1$
+					+ "(row in actual result: 1, row in expected result: 1): expected = [1.00], actual = [1.05] " //$NON-NLS-1$
+					+ "{allowed divergence: 0}", e.getMessage()); //$NON-NLS-1$
+		}
+		testcase = testCase();
+		tolerant.compareResults(testcase, expected(testcase, expectedRows),
+				resultSet(ResultSet.TYPE_SCROLL_INSENSITIVE, actual), true);
+	}
+}
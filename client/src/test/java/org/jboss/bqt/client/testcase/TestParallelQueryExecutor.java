@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.testcase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.jboss.bqt.framework.TransactionAPI;
+import org.junit.Test;
+
+/**
+ * Tests the pool and virtual modes of {@link ParallelQueryExecutor}, on the JDK of the build:
+ * virtual threads on JDK 21 and newer, platform threads before.
+ */
+@SuppressWarnings("nls")
+public class TestParallelQueryExecutor {
+
+	private static final int TESTS = 40;
+	private static final int WORKERS = 3;
+
+	@Test
+	public void testVirtualThreadsSupported() {
+		String version = System.getProperty("java.specification.version");
+		boolean jdk21 = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+		assertEquals(jdk21, ParallelQueryExecutor.isVirtualThreadsSupported());
+	}
+
+	@Test
+	public void testPoolMode() throws Exception {
+		Recorder recorder = new Recorder();
+		assertNull(new ParallelQueryExecutor(false).execute(TESTS, transactions(WORKERS), recorder));
+		recorder.assertExecuted(TESTS);
+		assertEquals(Collections.singleton(Boolean.FALSE), recorder.virtual);
+	}
+
+	@Test
+	public void testVirtualMode() throws Exception {
+		Recorder recorder = new Recorder();
+		assertNull(new ParallelQueryExecutor(true).execute(TESTS, transactions(WORKERS), recorder));
+		recorder.assertExecuted(TESTS);
+		// the reflective lookup found virtual threads, or fell back to platform threads
+		assertEquals(Collections.singleton(Boolean.valueOf(ParallelQueryExecutor.isVirtualThreadsSupported())), recorder.virtual);
+	}
+
+	@Test
+	public void testFailureStopsTheQuerySet() {
+		testFailureStopsTheQuerySet(false);
+		testFailureStopsTheQuerySet(true);
+	}
+
+	private void testFailureStopsTheQuerySet(boolean virtualThreads) {
+		final Exception failure = new Exception("stop");
+		final AtomicInteger executed = new AtomicInteger();
+		Exception result = new ParallelQueryExecutor(virtualThreads).execute(TESTS, transactions(1),
+				new ParallelQueryExecutor.Task() {
+					public Exception run(int index, TransactionAPI transaction) {
+						// the first one to run fails, the tasks of the virtual mode may start in any order
+						return executed.incrementAndGet() == 1 ? failure : null;
+					}
+				});
+		assertSame(failure, result);
+		// a single transaction, the failed query test is the only one executed
+		assertEquals(1, executed.get());
+	}
+
+	@Test
+	public void testRuntimeExceptionAfterTheOtherWorkers() {
+		testRuntimeExceptionAfterTheOtherWorkers(false);
+		testRuntimeExceptionAfterTheOtherWorkers(true);
+	}
+
+	private void testRuntimeExceptionAfterTheOtherWorkers(boolean virtualThreads) {
+		final RuntimeException error = new IllegalStateException("error");
+		final AtomicInteger running = new AtomicInteger();
+		try {
+			new ParallelQueryExecutor(virtualThreads).execute(TESTS, transactions(WORKERS), new ParallelQueryExecutor.Task() {
+				public Exception run(int index, TransactionAPI transaction) {
+					running.incrementAndGet();
+					try {
+						if (index == 1) {
+							throw error;
+						}
+						sleep();
+						return null;
+					} finally {
+						running.decrementAndGet();
+					}
+				}
+			});
+			fail("the exception of the task is thrown");
+		} catch (IllegalStateException e) {
+			assertSame(error, e);
+			assertEquals(0, running.get());
+		}
+	}
+
+	private static List<TransactionAPI> transactions(int count) {
+		List<TransactionAPI> transactions = new ArrayList<TransactionAPI>();
+		for (int i = 0; i < count; i++) {
+			transactions.add(mock(TransactionAPI.class));
+		}
+		return transactions;
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep(5);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Records how often each query test is executed, how many at the same time, and on
+	 * which kind of thread, and fails when a transaction is used by two of them at once.
+	 */
+	private static class Recorder implements ParallelQueryExecutor.Task {
+		final AtomicIntegerArray executed = new AtomicIntegerArray(TESTS);
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final Set<TransactionAPI> inUse = Collections.newSetFromMap(new ConcurrentHashMap<TransactionAPI, Boolean>());
+		final Set<Boolean> virtual = Collections.newSetFromMap(new ConcurrentHashMap<Boolean, Boolean>());
+		volatile boolean shared;
+
+		public Exception run(int index, TransactionAPI transaction) {
+			if (!inUse.add(transaction)) {
+				shared = true;
+			}
+			int now = running.incrementAndGet();
+			int max;
+			while ((max = maxRunning.get()) < now && !maxRunning.compareAndSet(max, now)) {
+				// retry
+			}
+			virtual.add(Boolean.valueOf(isVirtual(Thread.currentThread())));
+			sleep();
+			running.decrementAndGet();
+			inUse.remove(transaction);
+			executed.incrementAndGet(index);
+			return null;
+		}
+
+		void assertExecuted(int count) {
+			for (int i = 0; i < count; i++) {
+				assertEquals("executions of query test " + i, 1, executed.get(i));
+			}
+			assertFalse("transaction used by two query tests at once", shared);
+			assertTrue("at most one query test per transaction", maxRunning.get() <= WORKERS);
+			assertTrue("query tests executed in parallel", maxRunning.get() > 1);
+		}
+	}
+
+	private static boolean isVirtual(Thread thread) {
+		try {
+			Method isVirtual = Thread.class.getMethod("isVirtual");
+			return ((Boolean) isVirtual.invoke(thread)).booleanValue();
+		} catch (NoSuchMethodException e) {
+			return false;
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.testcase;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.jboss.bqt.core.exception.QueryTestFailedException;
+import org.junit.Test;
+
+/**
+ * Tests how the update counts of a batch are mapped to its statements.
+ */
+public class TestProcessResults {
+
+	private static final int FAILED = Statement.EXECUTE_FAILED;
+	private static final int NO_INFO = Statement.SUCCESS_NO_INFO;
+
+	@Test
+	public void testBatchCounts() {
+		assertArrayEquals(new int[] { 1, 0, 3 }, ProcessResults.getBatchCounts(new int[] { 1, 0, 3 }, 3));
+		// the count of each statement is unknown, it is kept to skip the check
+		assertArrayEquals(new int[] { NO_INFO, NO_INFO }, ProcessResults.getBatchCounts(new int[] { NO_INFO, NO_INFO }, 2));
+		// the batch did not return
+		assertArrayEquals(new int[] { FAILED, FAILED }, ProcessResults.getBatchCounts((int[]) null, 2));
+	}
+
+	@Test
+	public void testBatchUpdateExceptionCounts() {
+		// the driver stopped at the third statement
+		QueryTestFailedException stopped = new QueryTestFailedException(
+				new BatchUpdateException("failed", new int[] { 1, 1 })); //$NON-NLS-1$
+		assertArrayEquals(new int[] { 1, 1, FAILED, FAILED }, ProcessResults.getBatchCounts(stopped, 4));
+
+		// the driver executed the statements after the failed one
+		QueryTestFailedException continued = new QueryTestFailedException(
+				new BatchUpdateException("failed", new int[] { 1, FAILED, NO_INFO, 1 })); //$NON-NLS-1$
+		assertArrayEquals(new int[] { 1, FAILED, NO_INFO, 1 }, ProcessResults.getBatchCounts(continued, 4));
+
+		// not a failure of a statement, all the statements are run on their own
+		QueryTestFailedException other = new QueryTestFailedException(new SQLException("closed")); //$NON-NLS-1$
+		assertArrayEquals(new int[] { FAILED, FAILED }, ProcessResults.getBatchCounts(other, 2));
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.testcase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.bqt.client.QueryTest;
+import org.jboss.bqt.client.TestResultsSummary;
+import org.jboss.bqt.framework.TestCase;
+import org.jboss.bqt.framework.TestResult;
+import org.jboss.bqt.framework.TransactionAPI;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+/**
+ * Tests {@link ResultsPipeline} with a depth of 1 and a slow stage.
+ */
+@SuppressWarnings("nls")
+public class TestResultsPipeline {
+
+	private TestResultsSummary summary;
+	private ResultsPipeline pipeline;
+
+	@Before
+	public void setUp() {
+		summary = mock(TestResultsSummary.class);
+	}
+
+	@After
+	public void tearDown() {
+		if (pipeline != null) {
+			pipeline.shutdown();
+		}
+	}
+
+	/**
+	 * While the stage processes one result, the next one waits, and the one after it blocks the caller.
+	 */
+	@Test
+	public void testBackPressure() throws Exception {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		pipeline = new ResultsPipeline(1, summary, new ResultsPipeline.Stage() {
+			public void process(TestCase testcase, TransactionAPI results) {
+				started.countDown();
+				await(proceed);
+			}
+		});
+		final TestCase first = testCase(0);
+		final TestCase second = testCase(1);
+		pipeline.process(first, null, true);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		Thread caller = new Thread() {
+			public void run() {
+				pipeline.process(second, null, true);
+			}
+		};
+		caller.start();
+		caller.join(200);
+		assertTrue("process() waits while the stage is busy", caller.isAlive());
+		verify(summary, never()).addTest("qs", first.getTestResult());
+
+		proceed.countDown();
+		caller.join(5000);
+		assertFalse(caller.isAlive());
+		pipeline.drain();
+
+		InOrder order = inOrder(summary);
+		order.verify(summary).addTest("qs", first.getTestResult());
+		order.verify(summary).addTest("qs", second.getTestResult());
+	}
+
+	/**
+	 * The test results are added to the summary in the order they were handed over,
+	 * also those of the tests that were not executed.
+	 */
+	@Test
+	public void testSummaryOrder() {
+		final List<String> processed = Collections.synchronizedList(new ArrayList<String>());
+		pipeline = new ResultsPipeline(1, summary, new ResultsPipeline.Stage() {
+			public void process(TestCase testcase, TransactionAPI results) {
+				sleep(2);
+				processed.add(testcase.getTestResult().getQueryID());
+			}
+		});
+		List<TestCase> testcases = new ArrayList<TestCase>();
+		List<String> executed = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			TestCase testcase = testCase(i);
+			testcases.add(testcase);
+			if (i % 3 != 0) {
+				executed.add(testcase.getTestResult().getQueryID());
+			}
+			TransactionAPI results = mock(TransactionAPI.class);
+			pipeline.process(testcase, results, i % 3 != 0);
+		}
+		pipeline.drain();
+
+		assertEquals(executed, processed);
+		InOrder order = inOrder(summary);
+		for (TestCase testcase : testcases) {
+			order.verify(summary).addTest("qs", testcase.getTestResult());
+		}
+	}
+
+	/**
+	 * An exception of the stage is thrown to the caller by the next call, the results
+	 * that follow it are released but neither processed nor added to the summary.
+	 */
+	@Test
+	public void testStageException() {
+		final RuntimeException error = new IllegalStateException("compare failed");
+		pipeline = new ResultsPipeline(1, summary, new ResultsPipeline.Stage() {
+			public void process(TestCase testcase, TransactionAPI results) {
+				sleep(20);
+				if (testcase.getTestResult().getQueryID().equals("Q1")) {
+					throw error;
+				}
+			}
+		});
+		TestCase[] testcases = { testCase(0), testCase(1), testCase(2) };
+		TransactionAPI[] results = { mock(TransactionAPI.class), mock(TransactionAPI.class), mock(TransactionAPI.class) };
+		pipeline.process(testcases[0], results[0], true);
+		pipeline.process(testcases[1], results[1], true);
+		try {
+			pipeline.drain();
+			fail("the exception of the stage is thrown");
+		} catch (IllegalStateException e) {
+			assertSame(error, e);
+		}
+		try {
+			pipeline.process(testcases[2], results[2], true);
+			fail("the exception of the stage is thrown");
+		} catch (IllegalStateException e) {
+			assertSame(error, e);
+		}
+
+		verify(summary).addTest("qs", testcases[0].getTestResult());
+		verify(summary, never()).addTest("qs", testcases[1].getTestResult());
+		verify(summary, never()).addTest("qs", testcases[2].getTestResult());
+		for (TransactionAPI r : results) {
+			verify(r).cleanup();
+		}
+	}
+
+	private static TestCase testCase(int i) {
+		TestCase testcase = new TestCase(new QueryTest("scenario", "qs", "Q" + i, null));
+		testcase.setTestResult(new TestResult("qs", "Q" + i));
+		return testcase;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
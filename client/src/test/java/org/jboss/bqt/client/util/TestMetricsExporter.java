@@ -0,0 +1,163 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.core.exception.FrameworkRuntimeException;
+import org.jboss.bqt.core.util.FileUtils;
+import org.jboss.bqt.core.util.ObjectConverterUtil;
+import org.jboss.bqt.core.util.UnitTestUtil;
+import org.jboss.bqt.framework.TestResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the text written by {@link MetricsExporter} for a known set of tests.
+ */
+@SuppressWarnings("nls")
+public class TestMetricsExporter {
+
+	// a quote, a backslash and a new line, which are escaped in the labels
+	private static final String SCENARIO = "sc\"1\\x\ny";
+	private static final String ESCAPED = "sc\\\"1\\\\x\\ny";
+
+	private File dir;
+	private MetricsExporter exporter;
+
+	@Before
+	public void setUp() {
+		dir = new File(UnitTestUtil.getTestOutputPath(), "metrics");
+		FileUtils.removeDirectoryAndChildren(dir);
+
+		Properties props = new Properties();
+		props.setProperty(TestProperties.METRICS_DIR, dir.getPath());
+		props.setProperty(TestProperties.METRICS_INTERVAL, "3600");
+		exporter = new MetricsExporter();
+		exporter.start(props);
+
+		TestResult pass = new TestResult("qs", "q1");
+		pass.setStatus(TestResult.RESULT_STATE.TEST_SUCCESS);
+		pass.addPhaseNanos(TestResult.PHASE.EXECUTE, 2000000);
+		exporter.testCompleted(SCENARIO, pass);
+
+		TestResult fail = new TestResult("qs", "q2");
+		fail.setStatus(TestResult.RESULT_STATE.TEST_EXCEPTION);
+		fail.setException(new FrameworkRuntimeException("E42", "failed"));
+		fail.setReconnected(true);
+		exporter.testCompleted(SCENARIO, fail);
+
+		exporter.outputWritten(SCENARIO, 20);
+	}
+
+	@After
+	public void tearDown() {
+		exporter.stop();
+	}
+
+	@Test
+	public void testPrometheus() throws Exception {
+		String s = "scenario=\"" + ESCAPED + "\"";
+		String qs = s + ",query_set=\"qs\"";
+		String expected = "# HELP bqt_output_write_seconds Time until an output file was written.\n"
+				+ "# TYPE bqt_output_write_seconds histogram\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"0.001\"} 0\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"0.005\"} 0\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"0.01\"} 0\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"0.05\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"0.1\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"0.5\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"1\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"5\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"10\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"30\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"60\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"300\"} 1\n"
+				+ "bqt_output_write_seconds_bucket{" + s + ",le=\"+Inf\"} 1\n"
+				+ "bqt_output_write_seconds_sum{" + s + "} 0.02\n"
+				+ "bqt_output_write_seconds_count{" + s + "} 1\n"
+				+ "# HELP bqt_queries_total Completed queries.\n"
+				+ "# TYPE bqt_queries_total counter\n"
+				+ "bqt_queries_total{" + qs + ",status=\"fail\"} 1\n"
+				+ "bqt_queries_total{" + qs + ",status=\"pass\"} 1\n"
+				+ "# HELP bqt_query_duration_seconds Duration of the statement execute.\n"
+				+ "# TYPE bqt_query_duration_seconds histogram\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"0.001\"} 0\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"0.005\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"0.01\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"0.05\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"0.1\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"0.5\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"1\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"5\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"10\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"30\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"60\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"300\"} 1\n"
+				+ "bqt_query_duration_seconds_bucket{" + qs + ",le=\"+Inf\"} 1\n"
+				+ "bqt_query_duration_seconds_sum{" + qs + "} 0.002\n"
+				+ "bqt_query_duration_seconds_count{" + qs + "} 1\n"
+				+ "# HELP bqt_query_failures_total Failed queries, by error code.\n"
+				+ "# TYPE bqt_query_failures_total counter\n"
+				+ "bqt_query_failures_total{" + qs + ",code=\"E42\"} 1\n"
+				+ "# HELP bqt_reconnects_total Queries that opened a new connection.\n"
+				+ "# TYPE bqt_reconnects_total counter\n"
+				+ "bqt_reconnects_total{" + qs + "} 1\n"
+				+ "# HELP bqt_rows_fetched_total Rows read from the results.\n"
+				+ "# TYPE bqt_rows_fetched_total counter\n"
+				+ "bqt_rows_fetched_total{" + qs + "} 0\n";
+		assertEquals(expected, exporter.toPrometheus());
+
+		exporter.write();
+		assertEquals(expected, ObjectConverterUtil.convertFileToString(new File(dir, MetricsExporter.PROMETHEUS_FILE)));
+	}
+
+	@Test
+	public void testJsonLines() throws Exception {
+		String s = "{\"timestamp\":1000,\"metric\":\"";
+		String labels = "\",\"labels\":{\"scenario\":\"" + ESCAPED + "\"";
+		String qs = labels + ",\"query_set\":\"qs\"";
+		String expected = s + "bqt_output_write_seconds" + labels + "},\"count\":1,\"sum\":0.02,\"buckets\":{"
+				+ "\"0.001\":0,\"0.005\":0,\"0.01\":0,\"0.05\":1,\"0.1\":1,\"0.5\":1,\"1\":1,\"5\":1,\"10\":1,\"30\":1,\"60\":1,\"300\":1}}\n"
+				+ s + "bqt_queries_total" + qs + ",\"status\":\"fail\"},\"value\":1}\n"
+				+ s + "bqt_queries_total" + qs + ",\"status\":\"pass\"},\"value\":1}\n"
+				+ s + "bqt_query_duration_seconds" + qs + "},\"count\":1,\"sum\":0.002,\"buckets\":{"
+				+ "\"0.001\":0,\"0.005\":1,\"0.01\":1,\"0.05\":1,\"0.1\":1,\"0.5\":1,\"1\":1,\"5\":1,\"10\":1,\"30\":1,\"60\":1,\"300\":1}}\n"
+				+ s + "bqt_query_failures_total" + qs + ",\"code\":\"E42\"},\"value\":1}\n"
+				+ s + "bqt_reconnects_total" + qs + "},\"value\":1}\n"
+				+ s + "bqt_rows_fetched_total" + qs + "},\"value\":0}\n";
+		assertEquals(expected, exporter.toJsonLines(1000));
+
+		// appended each time the values are written
+		exporter.write();
+		exporter.write();
+		String[] lines = ObjectConverterUtil.convertFileToString(new File(dir, MetricsExporter.JSON_LINES_FILE)).split("\n");
+		assertEquals(14, lines.length);
+	}
+}
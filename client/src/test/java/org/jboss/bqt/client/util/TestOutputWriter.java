@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.client.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.bqt.client.TestProperties;
+import org.jboss.bqt.core.util.FileUtils;
+import org.jboss.bqt.core.util.ObjectConverterUtil;
+import org.jboss.bqt.core.util.UnitTestUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the synchronous and asynchronous writes of {@link OutputWriter}.
+ */
+@SuppressWarnings("nls")
+public class TestOutputWriter {
+
+	private File dir;
+
+	@Before
+	public void setUp() {
+		dir = new File(UnitTestUtil.getTestOutputPath(), "outputwriter");
+		FileUtils.removeDirectoryAndChildren(dir);
+		dir.mkdirs();
+	}
+
+	@Test
+	public void testSynchronous() throws Exception {
+		OutputWriter writer = new OutputWriter("scenario", props(0, 10));
+		Recording output = new Recording("sync", null);
+		writer.write(new File(dir, "sync.txt"), output);
+
+		assertSame(Thread.currentThread(), output.thread);
+		assertEquals("sync", read("sync.txt"));
+		writer.close();
+	}
+
+	@Test
+	public void testAsynchronous() throws Exception {
+		OutputWriter writer = new OutputWriter("scenario", props(1, 10));
+		CountDownLatch proceed = new CountDownLatch(1);
+		Recording output = new Recording("async", proceed);
+		writer.write(new File(dir, "async.txt"), output);
+
+		// returned while the output is being written
+		assertTrue(output.started.await(5, TimeUnit.SECONDS));
+		assertNotSame(Thread.currentThread(), output.thread);
+		assertFalse(output.done);
+
+		proceed.countDown();
+		writer.close();
+		assertEquals("async", read("async.txt"));
+	}
+
+	/**
+	 * One output is written, one waits in the queue of 1, the next one is written by the caller.
+	 */
+	@Test
+	public void testCallerRunsWhenQueueIsFull() throws Exception {
+		OutputWriter writer = new OutputWriter("scenario", props(1, 1));
+		CountDownLatch proceed = new CountDownLatch(1);
+		Recording writing = new Recording("writing", proceed);
+		Recording queued = new Recording("queued", null);
+		Recording full = new Recording("full", null);
+
+		writer.write(new File(dir, "writing.txt"), writing);
+		assertTrue(writing.started.await(5, TimeUnit.SECONDS));
+		writer.write(new File(dir, "queued.txt"), queued);
+		writer.write(new File(dir, "full.txt"), full);
+
+		assertSame(Thread.currentThread(), full.thread);
+		assertEquals("full", read("full.txt"));
+		assertFalse(queued.done);
+
+		proceed.countDown();
+		writer.close();
+		assertNotSame(Thread.currentThread(), queued.thread);
+		assertEquals("writing", read("writing.txt"));
+		assertEquals("queued", read("queued.txt"));
+	}
+
+	@Test
+	public void testCloseWaitsForPendingOutputs() throws Exception {
+		OutputWriter writer = new OutputWriter("scenario", props(2, 10));
+		Recording[] outputs = new Recording[8];
+		for (int i = 0; i < outputs.length; i++) {
+			outputs[i] = new Slow("output" + i);
+			writer.write(new File(dir, "output" + i + ".txt"), outputs[i]);
+		}
+		writer.close();
+
+		for (int i = 0; i < outputs.length; i++) {
+			assertTrue(outputs[i].done);
+			assertEquals("output" + i, read("output" + i + ".txt"));
+		}
+	}
+
+	private static Properties props(int threads, int queue) {
+		Properties props = new Properties();
+		props.setProperty(TestProperties.OUTPUT_WRITER_THREADS, String.valueOf(threads));
+		props.setProperty(TestProperties.OUTPUT_WRITER_QUEUE, String.valueOf(queue));
+		return props;
+	}
+
+	private String read(String name) throws Exception {
+		return ObjectConverterUtil.convertFileToString(new File(dir, name));
+	}
+
+	/**
+	 * Writes its text, after <code>proceed</code> when given, and records the thread that wrote it.
+	 */
+	private static class Recording implements OutputWriter.Output {
+		final String text;
+		final CountDownLatch proceed;
+		final CountDownLatch started = new CountDownLatch(1);
+		volatile Thread thread;
+		volatile boolean done;
+
+		Recording(String text, CountDownLatch proceed) {
+			this.text = text;
+			this.proceed = proceed;
+		}
+
+		public void writeTo(OutputStream out) throws Exception {
+			thread = Thread.currentThread();
+			started.countDown();
+			if (proceed != null) {
+				proceed.await(5, TimeUnit.SECONDS);
+			}
+			out.write(text.getBytes("UTF-8"));
+			done = true;
+		}
+	}
+
+	private static class Slow extends Recording {
+
+		Slow(String text) {
+			super(text, null);
+		}
+
+		public void writeTo(OutputStream out) throws Exception {
+			Thread.sleep(50);
+			super.writeTo(out);
+		}
+	}
+}
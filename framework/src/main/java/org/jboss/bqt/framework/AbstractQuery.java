@@ -37,6 +37,7 @@ import org.jboss.bqt.core.exception.FrameworkRuntimeException;
 import org.jboss.bqt.core.exception.QueryTestFailedException;
 import org.jboss.bqt.core.exception.TransactionRuntimeException;
 import org.jboss.bqt.core.util.ArgCheck;
+import org.jboss.bqt.core.util.PropertiesUtils;
 import org.jboss.bqt.framework.connection.ConnectionStrategy;
 import org.jboss.bqt.framework.connection.ConnectionStrategyFactory;
 import org.jboss.bqt.framework.util.AssertResults;
@@ -59,17 +60,38 @@ public abstract class AbstractQuery implements TransactionAPI {
 	protected ConnectionStrategy connStrategy;
 
 
-	protected Connection internalConnection = null;
+	// read by the thread that cancels the query, see cancelQuery()
+	protected volatile Connection internalConnection = null;
 	protected ResultSet internalResultSet = null;
-	protected Statement internalStatement = null;
+	protected volatile Statement internalStatement = null;
 	private SQLException internalException = null;
 	private Throwable applicationException = null;
 	
+	// set when the connection was discarded, the next test case reconnects
+	private boolean connectionDiscarded = false;
+	
+	private StatementCache statementCache;
+	
+	private boolean forwardOnly;
+	
+	// scenario level statement settings
+	private StatementTuning statementTuning;
+	
+	// statement settings of the current test case
+	private StatementTuning testTuning;
+	
+	private AdaptiveFetchSize adaptiveFetchSize;
+	
+	private int fetchSize = StatementTuning.NOT_SET;
+	
 	
 	private String testClassName = "n/a";
 	
 	private TestCase testCase = null;
 
+	// nanoseconds the statement of the last execute took
+	private long executionNanos = -1;
+
 	public AbstractQuery() {
 		
 		this.testClassName = StringUtils.substringAfterLast(this.getClass().getName(),
@@ -78,6 +100,28 @@ public abstract class AbstractQuery implements TransactionAPI {
 		connStrategy = ConnectionStrategyFactory
 					.createConnectionStrategy();
 
+		statementCache = new StatementCache(PropertiesUtils.getIntProperty(connStrategy.getEnvironment(),
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.STATEMENT_CACHE_SIZE, 20));
+		forwardOnly = PropertiesUtils.getBooleanProperty(connStrategy.getEnvironment(),
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.FORWARD_ONLY, false);
+		statementTuning = StatementTuning.create(connStrategy.getEnvironment());
+		testTuning = statementTuning;
+
+	}
+
+	/**
+	 * Creates a query that holds the results of the test case of <code>query</code>,
+	 * it shares the settings of <code>query</code> but never connects.
+	 * @see #detachResults()
+	 */
+	AbstractQuery(AbstractQuery query) {
+		this.testClassName = query.testClassName;
+		this.connStrategy = query.connStrategy;
+		this.statementCache = new StatementCache(0);
+		this.statementTuning = query.statementTuning;
+		this.testTuning = query.testTuning;
+		this.fetchSize = query.fetchSize;
+		this.testCase = query.testCase;
 	}
 	
 	/*************************  
@@ -94,11 +138,26 @@ public abstract class AbstractQuery implements TransactionAPI {
 		this.applicationException = null;
 		this.internalException = null;
 		
+		this.testTuning = this.statementTuning.merge(testCase.getActualTest().getStatementTuning());
+		this.fetchSize = this.testTuning.getFetchSize();
+		if (this.testTuning.isAdaptiveFetchSize()) {
+			if (this.adaptiveFetchSize == null) {
+				this.adaptiveFetchSize = AdaptiveFetchSize.getInstance(this.connStrategy.getEnvironment());
+			}
+			this.fetchSize = this.adaptiveFetchSize.getFetchSize(getAdaptiveKey(), this.fetchSize);
+		}
+		
+		long begin = System.nanoTime();
 		try {
 			this.setConnection(this.connStrategy.getConnection());
+			testCase.getTestResult().addPhaseNanos(TestResult.PHASE.CONNECT, System.nanoTime() - begin);
 		} catch (FrameworkException e) {
 			throw new FrameworkRuntimeException(e);
 		}
+		if (this.connectionDiscarded) {
+			this.connectionDiscarded = false;
+			testCase.getTestResult().setReconnected(true);
+		}
 
 	}
 	
@@ -119,9 +178,14 @@ public abstract class AbstractQuery implements TransactionAPI {
 	 */
 	public void cleanup()  {
 		closeStatement();
+		if (!this.connStrategy.holdsConnection()) {
+			// the statements belong to the connection that is released
+			this.statementCache.clear();
+		}
 		// don't clear connection, it will be reused,
 		// just clear it out
 		this.internalConnection = null;
+		this.connStrategy.release();
 		this.internalException = null;
 		this.applicationException = null;
 	}
@@ -129,6 +193,10 @@ public abstract class AbstractQuery implements TransactionAPI {
 	public ConnectionStrategy getConnectionStrategy() {
 		return this.connStrategy;
 	}
+
+	public StatementCache getStatementCache() {
+		return this.statementCache;
+	}
 	
 	/* ********** End Of LifeCycle Methods  ************ */
 
@@ -172,6 +240,9 @@ public abstract class AbstractQuery implements TransactionAPI {
 		closeStatement();
 		long endTS = 0;
 		long beginTS = 0;
+		this.executionNanos = -1;
+		TestResult testResult = this.testCase.getTestResult();
+		long beginNanos = System.nanoTime();
 
 		boolean result = false;
 
@@ -181,10 +252,9 @@ public abstract class AbstractQuery implements TransactionAPI {
 			
 			if (params != null && params.length > 0) {
 				if (sql.toLowerCase().startsWith("exec ")) { //$NON-NLS-1$
-					sql = sql.substring(5);
-					this.internalStatement = createPrepareCallStatement(sql);
+					this.internalStatement = prepareStatement(sql.substring(5), true);
 				} else {
-					this.internalStatement = createPrepareStatement(sql);
+					this.internalStatement = prepareStatement(sql, false);
 				}
 				
 				setParameters((PreparedStatement) this.internalStatement,
@@ -193,9 +263,12 @@ public abstract class AbstractQuery implements TransactionAPI {
 				this.setPayload(this.internalStatement, payload);
 				
 				beginTS = System.currentTimeMillis();
+				testResult.addPhaseNanos(TestResult.PHASE.PREPARE, System.nanoTime() - beginNanos);
+				beginNanos = System.nanoTime();
 
 				result = ((PreparedStatement) this.internalStatement).execute();
 								
+				this.executionNanos = System.nanoTime() - beginNanos;
 				endTS = System.currentTimeMillis();
 				
 			} else {
@@ -204,20 +277,30 @@ public abstract class AbstractQuery implements TransactionAPI {
 //				this.setPayload(this.internalStatement, payload);
 
 				beginTS = System.currentTimeMillis();
+				testResult.addPhaseNanos(TestResult.PHASE.PREPARE, System.nanoTime() - beginNanos);
+				beginNanos = System.nanoTime();
 
 				result = this.internalStatement.execute(sql);
 				
+				this.executionNanos = System.nanoTime() - beginNanos;
 				endTS = System.currentTimeMillis();
 								
 			}
 
+			testResult.addPhaseNanos(TestResult.PHASE.EXECUTE, this.executionNanos);
+
 			FrameworkPlugin.LOGGER.debug("Has result set: " + result);
 			if (result) {
 				this.internalResultSet = this.internalStatement.getResultSet();
+				if (this.testTuning.isAdaptiveFetchSize()) {
+					this.internalResultSet = this.adaptiveFetchSize.observe(this.internalResultSet,
+							getAdaptiveKey(), this.fetchSize);
+				}
+				this.internalResultSet = TimedResultSet.wrap(this.internalResultSet, testResult);
 			} else {
 				
-				this.testCase.getTestResult().setRowCount(0);
-				this.testCase.getTestResult().setUpdateCount( this.internalStatement.getUpdateCount() );			
+				testResult.setRowCount(0);
+				testResult.setUpdateCount( this.internalStatement.getUpdateCount() );			
 			}
 
 			
@@ -226,14 +309,79 @@ public abstract class AbstractQuery implements TransactionAPI {
 			beginTS = -1;
 
 			this.internalException = e;
-			this.connStrategy.shutdown();
+			discardOnConnectionException(e);
 			throw new QueryTestFailedException(e);
 		}
-		this.testCase.getTestResult().setBeginTS(beginTS);
-		this.testCase.getTestResult().setEndTS(endTS);
+		testResult.setBeginTS(beginTS);
+		testResult.setEndTS(endTS);
 		return result;
 	}
 	
+	/**
+	 * @return nanoseconds the statement of the last {@link #execute(String, Object[], Serializable)}
+	 * took, -1 when it failed
+	 */
+	public long getExecutionNanos() {
+		return this.executionNanos;
+	}
+
+	/**
+	 * Reads the rows of the current result set into memory and returns a query holding them,
+	 * so the results can be compared and written while this query executes the next test case.
+	 * A failure reading the rows becomes the exception of the test case.
+	 * The detached results are released by calling {@link #cleanup()} on the returned query.
+	 * @return AbstractQuery whose result set does not use the connection
+	 */
+	public AbstractQuery detachResults() {
+		DetachedQuery detached = new DetachedQuery(this);
+		if (this.internalResultSet != null && this.internalException == null) {
+			try {
+				detached.populate(this.internalResultSet);
+			} catch (SQLException e) {
+				this.internalException = e;
+			}
+			closeResultSet();
+		}
+		return detached;
+	}
+
+	/**
+	 * Only a connection exception discards the connection, any other failure
+	 * (i.e., an expected exception) closes the statement and keeps the connection.
+	 */
+	private void discardOnConnectionException(SQLException e) {
+		if (!ConnectionStrategy.isConnectionException(e)) {
+			try {
+				closeStatement();
+				return;
+			} catch (TransactionRuntimeException tre) {
+				// unable to close the statement, discard the connection
+			}
+		}
+		this.statementCache.clear();
+		this.connStrategy.shutdown();
+		this.connectionDiscarded = true;
+	}
+
+	/**
+	 * Returns the cached prepared or callable statement for the SQL, with its parameters
+	 * cleared, or prepares a new one and caches it.
+	 */
+	private Statement prepareStatement(String sql, boolean call) throws SQLException {
+		if (!this.statementCache.isEnabled()) {
+			return call ? createPrepareCallStatement(sql) : createPrepareStatement(sql);
+		}
+		String key = (call ? "call:" : "prepare:") + sql; //$NON-NLS-1$ //$NON-NLS-2$
+		Statement stmt = this.statementCache.get(this.internalConnection, key);
+		if (stmt != null) {
+			((PreparedStatement) stmt).clearParameters();
+			return stmt;
+		}
+		stmt = call ? createPrepareCallStatement(sql) : createPrepareStatement(sql);
+		this.statementCache.put(key, stmt);
+		return stmt;
+	}
+
 	protected Statement createPrepareCallStatement(String sql)
 			throws SQLException {
 		return this.internalConnection.prepareCall("{?=call " + sql + "}"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -251,7 +399,26 @@ public abstract class AbstractQuery implements TransactionAPI {
 //	@Override
 	protected Statement createStatement() throws SQLException {
 		return this.internalConnection.createStatement(
-				ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+				(forwardOnly ? ResultSet.TYPE_FORWARD_ONLY : ResultSet.TYPE_SCROLL_INSENSITIVE),
+				ResultSet.CONCUR_READ_ONLY);
+	}
+
+	/**
+	 * @return <code>true</code> when the results are read in a single forward only pass
+	 */
+	public boolean isForwardOnly() {
+		return this.forwardOnly;
+	}
+
+	/**
+	 * @return the statement settings of the current test case
+	 */
+	public StatementTuning getStatementTuning() {
+		return this.testTuning;
+	}
+
+	private String getAdaptiveKey() {
+		return this.testCase.getTestResult().getQuerySetID() + "." + this.testCase.getTestResult().getQueryID(); //$NON-NLS-1$
 	}
 
 	private void setParameters(PreparedStatement stmt, Object[] params)
@@ -275,6 +442,7 @@ public abstract class AbstractQuery implements TransactionAPI {
 
 	public int[] executeBatch(String[] sql, int timeout) throws QueryTestFailedException {
 		closeStatement();
+		long beginNanos = System.nanoTime();
 
 		try {
 			ArgCheck.isNotNull(this.internalConnection, "Unable to execute batch, connection is null");
@@ -296,10 +464,20 @@ public abstract class AbstractQuery implements TransactionAPI {
 				this.internalStatement.addBatch(sql[i]);
 			}
 
-			return this.internalStatement.executeBatch();
+			long beginTS = System.currentTimeMillis();
+			long prepared = System.nanoTime();
+			int[] counts = this.internalStatement.executeBatch();
+			if (this.testCase != null) {
+				this.testCase.getTestResult().setBeginTS(beginTS);
+				this.testCase.getTestResult().setEndTS(System.currentTimeMillis());
+				this.testCase.getTestResult().addPhaseNanos(TestResult.PHASE.PREPARE, prepared - beginNanos);
+				this.testCase.getTestResult().addPhaseNanos(TestResult.PHASE.EXECUTE, System.nanoTime() - prepared);
+			}
+			return counts;
 
 		} catch (SQLException e) {
 			this.internalException = e;
+			discardOnConnectionException(e);
 //			if (!exceptionExpected()) {
 				throw new QueryTestFailedException(e);
 //			}
@@ -310,6 +488,7 @@ public abstract class AbstractQuery implements TransactionAPI {
 	}
 
 	/**
+	 * Applies the {@link StatementTuning statement settings} of the test case.
 	 * Override when you need to set an execution property on the statement
 	 * before execution.
 	 * 
@@ -326,7 +505,9 @@ public abstract class AbstractQuery implements TransactionAPI {
 	 * @since
 	 */
 
-	protected void assignExecutionProperties(Statement stmt) {
+	protected void assignExecutionProperties(Statement stmt) throws SQLException {
+		// a cached statement can still have the settings of another query
+		this.testTuning.apply(stmt, this.fetchSize, this.statementCache.contains(stmt));
 	}
 
 	public boolean exceptionOccurred() {
@@ -344,6 +525,15 @@ public abstract class AbstractQuery implements TransactionAPI {
 		if (this.applicationException == null) this.applicationException = t;
 	}
 
+	/**
+	 * Clears the exceptions of the current test case, i.e. when the statements of several
+	 * test cases were executed as one batch and the failure belongs to another test case.
+	 */
+	public void clearExceptions() {
+		this.applicationException = null;
+		this.internalException = null;
+	}
+
 	private Throwable getException() {
 		if (this.internalException != null) return this.internalException;
 		
@@ -420,11 +610,18 @@ public abstract class AbstractQuery implements TransactionAPI {
 		}
 	}
 
+	/**
+	 * Cancels the statement being executed.  Called by another thread than the one executing
+	 * the query, which can replace or close the statement at the same time, so it is read once.
+	 * @throws SQLException
+	 */
 	public void cancelQuery() throws SQLException {
-		ArgCheck.isNotNull(this.internalConnection, "Unable to cancel query, result set is null");
-		ArgCheck.isTrue(!this.internalConnection.isClosed());
-		ArgCheck.isNotNull(this.internalStatement, "Unable to close statement, its null");
-		this.internalStatement.cancel();
+		Connection connection = this.internalConnection;
+		Statement statement = this.internalStatement;
+		ArgCheck.isNotNull(connection, "Unable to cancel query, result set is null");
+		ArgCheck.isTrue(!connection.isClosed());
+		ArgCheck.isNotNull(statement, "Unable to close statement, its null");
+		statement.cancel();
 	}
 
 
@@ -441,7 +638,16 @@ public abstract class AbstractQuery implements TransactionAPI {
 	private void closeStatement() {
 		closeResultSet();
 
-		if (this.internalStatement != null) {
+		if (this.statementCache.contains(this.internalStatement)) {
+			// keep cached statements open to reuse them
+			try {
+				this.internalStatement.clearWarnings();
+			} catch (SQLException e) {
+				throw new TransactionRuntimeException(e);
+			} finally {
+				this.internalStatement = null;
+			}
+		} else if (this.internalStatement != null) {
 			try {
 				this.internalStatement.close();
 			} catch (SQLException e) {
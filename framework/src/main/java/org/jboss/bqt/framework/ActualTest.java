@@ -30,6 +30,10 @@ public abstract class ActualTest {
 
 	private boolean rollbackAlways = false;
 	
+	private StatementTuning statementTuning = null;
+	
+	private long timeout = -1;
+	
 	/**
 	 * Indicates what should be done when a failure occurs in
 	 * 
@@ -45,5 +49,29 @@ public abstract class ActualTest {
 		this.rollbackAlways = always;
 	}
 
+	/**
+	 * Returns the statement settings of this test, which override the scenario settings.
+	 * @return StatementTuning, <code>null</code> when the scenario settings are used
+	 */
+	public StatementTuning getStatementTuning() {
+		return statementTuning;
+	}
+
+	public void setStatementTuning(StatementTuning statementTuning) {
+		this.statementTuning = statementTuning;
+	}
+
+	/**
+	 * Returns the time, in milliseconds, this test may run before it is cancelled.
+	 * @return long, -1 when the scenario timeout is used
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
 
 }
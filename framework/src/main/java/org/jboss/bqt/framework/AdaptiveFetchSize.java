@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.framework;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.bqt.core.util.PropertiesUtils;
+
+/**
+ * Learns the fetch size of each query from the previous runs.  While the results are read,
+ * the rows, the width of the rows and the time spent in {@link ResultSet#next()}, which is where
+ * the round trips happen, are observed.  The next run fetches as many rows per round trip as fit
+ * in {@link ConfigPropertyNames.CONNECTION_STRATEGY_PROPS#ADAPTIVE_FETCH_SIZE_BYTES}, but not more rows
+ * than the query returns, and goes back to the best fetch size seen when reading became slower.
+ * <br>
+ * The observations are kept in {@link ConfigPropertyNames.CONNECTION_STRATEGY_PROPS#ADAPTIVE_FETCH_SIZE_FILE},
+ * which is written by {@link #saveAll()} at the end of the test run.
+ */
+public class AdaptiveFetchSize {
+
+	static final int MIN_FETCH_SIZE = 10;
+	static final int MAX_FETCH_SIZE = 100000;
+	// when no values were read, the declared width is used, capped for lobs
+	private static final int MAX_COLUMN_WIDTH = 4096;
+	// a run that is this much slower than the best one goes back to the best fetch size
+	private static final double SLOWER = 1.1;
+
+	private static final Map<String, AdaptiveFetchSize> INSTANCES = new HashMap<String, AdaptiveFetchSize>();
+
+	private final File file;
+	private final int batchBytes;
+	private final Properties observations = new Properties();
+	private boolean changed = false;
+
+	AdaptiveFetchSize(File file, int batchBytes) {
+		this.file = file;
+		this.batchBytes = batchBytes;
+	}
+
+	/**
+	 * Returns the instance for the file in the connection properties, loading the
+	 * observations of the previous runs the first time.
+	 * @param props
+	 * @return AdaptiveFetchSize
+	 */
+	public static AdaptiveFetchSize getInstance(Properties props) {
+		String fileName = props.getProperty(ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.ADAPTIVE_FETCH_SIZE_FILE,
+				"adaptive_fetch_size.properties"); //$NON-NLS-1$
+		int batchBytes = PropertiesUtils.getIntProperty(props,
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.ADAPTIVE_FETCH_SIZE_BYTES, 256 * 1024);
+		File f = new File(fileName).getAbsoluteFile();
+		synchronized (INSTANCES) {
+			AdaptiveFetchSize instance = INSTANCES.get(f.getPath());
+			if (instance == null) {
+				instance = new AdaptiveFetchSize(f, batchBytes);
+				instance.load();
+				INSTANCES.put(f.getPath(), instance);
+			}
+			return instance;
+		}
+	}
+
+	/**
+	 * Writes the observations of all the instances.
+	 */
+	public static void saveAll() {
+		synchronized (INSTANCES) {
+			for (AdaptiveFetchSize instance : INSTANCES.values()) {
+				instance.save();
+			}
+			INSTANCES.clear();
+		}
+	}
+
+	/**
+	 * @param key identifies the query
+	 * @param defaultFetchSize fetch size to use when the query has not been observed
+	 * @return the fetch size to use for the query
+	 */
+	public synchronized int getFetchSize(String key, int defaultFetchSize) {
+		String value = this.observations.getProperty(key);
+		if (value == null) {
+			return defaultFetchSize;
+		}
+		return Integer.parseInt(value.split(",")[0]); //$NON-NLS-1$
+	}
+
+	/**
+	 * Records the observation of reading the results of a query and learns the
+	 * fetch size for the next run.
+	 * @param key identifies the query
+	 * @param fetchSize fetch size that was used, {@link StatementTuning#NOT_SET} for the driver default
+	 * @param rows number of rows that were read
+	 * @param rowWidth average width of a row, in bytes
+	 * @param fetchNanos time spent fetching the rows
+	 */
+	public synchronized void record(String key, int fetchSize, long rows, long rowWidth, long fetchNanos) {
+		if (rows == 0) {
+			return;
+		}
+		long nanosPerRow = fetchNanos / rows;
+		int bestFetchSize = fetchSize;
+		long bestNanosPerRow = nanosPerRow;
+
+		String value = this.observations.getProperty(key);
+		if (value != null) {
+			String[] v = value.split(","); //$NON-NLS-1$
+			if (Long.parseLong(v[2]) < nanosPerRow) {
+				bestFetchSize = Integer.parseInt(v[1]);
+				bestNanosPerRow = Long.parseLong(v[2]);
+			}
+		}
+
+		int next;
+		if (nanosPerRow > bestNanosPerRow * SLOWER) {
+			next = bestFetchSize;
+		} else {
+			next = fetchSizeFor(rows, rowWidth);
+		}
+		this.observations.setProperty(key, next + "," + bestFetchSize + "," + bestNanosPerRow + "," //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				+ rows + "," + rowWidth); //$NON-NLS-1$
+		this.changed = true;
+	}
+
+	/**
+	 * @return the number of rows that fit in the batch size, but not more than the rows
+	 * of the results, plus one so the end of the results is fetched in the same round trip
+	 */
+	int fetchSizeFor(long rows, long rowWidth) {
+		long size = this.batchBytes / Math.max(rowWidth, 1);
+		size = Math.min(size, rows + 1);
+		return (int) Math.max(MIN_FETCH_SIZE, Math.min(MAX_FETCH_SIZE, size));
+	}
+
+	/**
+	 * Returns a result set that observes the reading of the rows, the observation
+	 * is recorded when the result set is closed.
+	 * @param rs
+	 * @param key identifies the query
+	 * @param fetchSize fetch size that was used
+	 * @return ResultSet
+	 */
+	public ResultSet observe(ResultSet rs, String key, int fetchSize) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class[] { ResultSet.class }, new Observer(rs, key, fetchSize));
+	}
+
+	private synchronized void load() {
+		if (!this.file.exists()) {
+			return;
+		}
+		InputStream in = null;
+		try {
+			in = new FileInputStream(this.file);
+			this.observations.load(in);
+		} catch (IOException e) {
+			FrameworkPlugin.LOGGER.warn("Unable to load the adaptive fetch sizes from " + this.file + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	synchronized void save() {
+		if (!this.changed) {
+			return;
+		}
+		OutputStream out = null;
+		try {
+			if (this.file.getParentFile() != null) {
+				this.file.getParentFile().mkdirs();
+			}
+			out = new FileOutputStream(this.file);
+			this.observations.store(out, "nextFetchSize,bestFetchSize,bestNanosPerRow,rows,rowWidth"); //$NON-NLS-1$
+			this.changed = false;
+		} catch (IOException e) {
+			FrameworkPlugin.LOGGER.warn("Unable to save the adaptive fetch sizes to " + this.file + ": " + e.getMessage()); //$NON-NLS-1$ //$NON-NLS-2$
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the rows, the bytes of the values that are read and the time spent in next().
+	 */
+	private class Observer implements InvocationHandler {
+
+		private final ResultSet rs;
+		private final String key;
+		private final int fetchSize;
+		private long rows = 0;
+		private long bytes = 0;
+		private long fetchNanos = 0;
+		private boolean recorded = false;
+
+		Observer(ResultSet rs, String key, int fetchSize) {
+			this.rs = rs;
+			this.key = key;
+			this.fetchSize = fetchSize;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name) && !recorded) { //$NON-NLS-1$
+				recorded = true;
+				record(key, fetchSize, rows, rowWidth(), fetchNanos);
+			}
+			boolean next = "next".equals(name); //$NON-NLS-1$
+			long begin = next ? System.nanoTime() : 0;
+			Object result;
+			try {
+				result = method.invoke(rs, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+			if (next) {
+				fetchNanos += System.nanoTime() - begin;
+				if (Boolean.TRUE.equals(result)) {
+					rows++;
+				}
+			} else if (name.startsWith("get") && args != null && args.length == 1) { //$NON-NLS-1$
+				bytes += width(result);
+			}
+			return result;
+		}
+
+		private long width(Object value) {
+			if (value instanceof String) {
+				return ((String) value).length() * 2;
+			} else if (value instanceof byte[]) {
+				return ((byte[]) value).length;
+			} else if (value == null) {
+				return 1;
+			}
+			return 8;
+		}
+
+		private long rowWidth() {
+			if (rows > 0 && bytes > 0) {
+				return bytes / rows;
+			}
+			// values were not read, use the declared width
+			try {
+				ResultSetMetaData md = rs.getMetaData();
+				long width = 0;
+				for (int i = 1; i <= md.getColumnCount(); i++) {
+					int size = md.getColumnDisplaySize(i);
+					width += (size <= 0 || size > MAX_COLUMN_WIDTH) ? MAX_COLUMN_WIDTH : size;
+				}
+				return width;
+			} catch (SQLException e) {
+				return MAX_COLUMN_WIDTH;
+			}
+		}
+	}
+}
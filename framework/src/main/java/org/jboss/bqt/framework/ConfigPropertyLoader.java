@@ -47,6 +47,12 @@ public class ConfigPropertyLoader {
 
 	private static ConfigPropertyLoader _instance = null;
 
+	/**
+	 * The instance bound to the thread running a scenario, inherited by the
+	 * threads that the scenario starts.
+	 */
+	private static final InheritableThreadLocal<ConfigPropertyLoader> _scenarioInstance = new InheritableThreadLocal<ConfigPropertyLoader>();
+
 	/**
 	 * Contains any overrides specified for the test
 	 */
@@ -61,7 +67,17 @@ public class ConfigPropertyLoader {
 	private ConfigPropertyLoader() {
 	}
 
+	/**
+	 * Returns the instance bound to the current thread by {@link #setScenarioInstance(ConfigPropertyLoader)},
+	 * otherwise the shared instance.
+	 * @return ConfigPropertyLoader
+	 */
 	public static synchronized ConfigPropertyLoader getInstance() {
+		ConfigPropertyLoader scenarioInstance = _scenarioInstance.get();
+		if (scenarioInstance != null) {
+			return scenarioInstance;
+		}
+
 		if (_instance != null) {
 			return _instance;
 		}
@@ -75,6 +91,31 @@ public class ConfigPropertyLoader {
 		return _instance;
 	}
 
+	/**
+	 * Creates a new instance that is not shared, so that a scenario can have its own
+	 * configuration while other scenarios are running.
+	 * @return ConfigPropertyLoader
+	 * @see #setScenarioInstance(ConfigPropertyLoader)
+	 */
+	public static ConfigPropertyLoader createInstance() {
+		ConfigPropertyLoader instance = new ConfigPropertyLoader();
+		instance.initialize();
+		return instance;
+	}
+
+	/**
+	 * Binds the instance to the current thread, and the threads it starts, so that
+	 * {@link #getInstance()} returns it.  Pass <code>null</code> to unbind it.
+	 * @param instance
+	 */
+	public static void setScenarioInstance(ConfigPropertyLoader instance) {
+		if (instance == null) {
+			_scenarioInstance.remove();
+		} else {
+			_scenarioInstance.set(instance);
+		}
+	}
+
 	/**
 	 * Called after each test to reset any per test settings.
 	 */
@@ -66,6 +66,8 @@ public interface ConfigPropertyNames {
 		public static final String DATASOURCE_CONNECTION = "datasource"; //$NON-NLS-1$
 		// used for when embedded is running in an appserver
 		public static final String JNDI_CONNECTION = "jndi"; //$NON-NLS-1$
+		// used to borrow driver connections from a pool
+		public static final String POOLED_CONNECTION = "pooled"; //$NON-NLS-1$
 
 	}
 
@@ -78,9 +80,29 @@ public interface ConfigPropertyNames {
 	public interface CONNECTION_STRATEGY_PROPS {
 
 //		public static final String TXN_AUTO_WRAP = "autoCommitTxn";
-//		public static final String AUTOCOMMIT = "autocommit"; //$NON-NLS-1$
-//		public static final String FETCH_SIZE = "fetchSize";
+		// autocommit of the connection, false keeps the cursors of a test case open until it is cleaned up
+		public static final String AUTOCOMMIT = "conn.autocommit"; //$NON-NLS-1$
+		// number of rows fetched in one round trip, 0 uses the driver default
+		public static final String FETCH_SIZE = "conn.fetch.size"; //$NON-NLS-1$
+		// maximum number of rows returned by a query, 0 for no limit
+		public static final String MAX_ROWS = "conn.max.rows"; //$NON-NLS-1$
+		// query timeout in seconds, 0 for no timeout
+		public static final String QUERY_TIMEOUT = "conn.query.timeout"; //$NON-NLS-1$
+		// fetch direction hint: forward, reverse or unknown
+		public static final String FETCH_DIRECTION = "conn.fetch.direction"; //$NON-NLS-1$
+		// prefix of the Teiid execution properties set on the statement, i.e. conn.execution.property.resultSetCacheMode=true
+		public static final String EXECUTION_PROPERTY_PREFIX = "conn.execution.property."; //$NON-NLS-1$
+		// true to learn the fetch size of each query from the previous runs
+		public static final String ADAPTIVE_FETCH_SIZE = "conn.fetch.size.adaptive"; //$NON-NLS-1$
+		// file the adaptive fetch sizes are kept in between runs
+		public static final String ADAPTIVE_FETCH_SIZE_FILE = "conn.fetch.size.adaptive.file"; //$NON-NLS-1$
+		// number of bytes the adaptive fetch size aims to fetch in one round trip
+		public static final String ADAPTIVE_FETCH_SIZE_BYTES = "conn.fetch.size.adaptive.bytes"; //$NON-NLS-1$
+		// true to read the results in a single forward only pass instead of using scroll insensitive result sets
+		public static final String FORWARD_ONLY = "conn.forward.only"; //$NON-NLS-1$
 		public static final String JNDINAME_USERTXN = "usertxn-jndiname"; //$NON-NLS-1$  
+		// number of prepared and callable statements cached per connection, 0 disables the cache
+		public static final String STATEMENT_CACHE_SIZE = "conn.statement.cache.size"; //$NON-NLS-1$
 
 	}
 
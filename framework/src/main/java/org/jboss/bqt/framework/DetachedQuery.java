@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.framework;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
+
+/**
+ * Holds the results of a test case that were read into memory by
+ * {@link AbstractQuery#detachResults()}.  The result set is scrollable and
+ * does not use a connection, the statement is no longer available.
+ */
+class DetachedQuery extends AbstractQuery {
+
+	DetachedQuery(AbstractQuery query) {
+		super(query);
+	}
+
+	void populate(ResultSet rs) throws SQLException {
+		final CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+		rows.populate(rs);
+		rows.beforeFirst();
+		// the cached row set does not implement isClosed()
+		this.internalResultSet = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class[] { ResultSet.class }, new InvocationHandler() {
+					private boolean closed = false;
+
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						String name = method.getName();
+						if ("isClosed".equals(name)) { //$NON-NLS-1$
+							return Boolean.valueOf(closed);
+						} else if ("close".equals(name)) { //$NON-NLS-1$
+							closed = true;
+						}
+						try {
+							return method.invoke(rows, args);
+						} catch (InvocationTargetException e) {
+							throw e.getTargetException();
+						}
+					}
+				});
+	}
+
+	@Override
+	public void before(TestCase testCase) {
+		// the test case was executed by the query the results were detached from
+	}
+
+	@Override
+	public void after() {
+	}
+
+	/**
+	 * Releases the rows, there is no connection to release.
+	 */
+	@Override
+	public void cleanup() {
+		if (this.internalResultSet != null) {
+			try {
+				this.internalResultSet.close();
+			} catch (SQLException e) {
+				// ignore
+			} finally {
+				this.internalResultSet = null;
+			}
+		}
+	}
+
+	@Override
+	public boolean isForwardOnly() {
+		return false;
+	}
+}
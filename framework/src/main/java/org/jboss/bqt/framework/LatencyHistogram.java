@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.framework;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Distribution of the execution times of a query, in nanoseconds.  Values below 64 have a
+ * bucket of their own, larger values are counted in 32 buckets per power of two, so a
+ * percentile is within 2% of the recorded value.  The minimum, maximum and sum are exact.
+ * <br>
+ * The buckets are allocated when the second value is recorded, and only up to the largest
+ * value, so a query that is executed once only keeps its execution time.
+ * Not thread safe.
+ */
+public class LatencyHistogram implements Serializable {
+
+	private static final long serialVersionUID = -2931640713095484402L;
+
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// values below this have a bucket of their own
+	private static final int LINEAR = SUB_BUCKETS * 2;
+
+	private int[] counts;
+	private long count = 0;
+	private long sum = 0;
+	private long min = 0;
+	private long max = 0;
+
+	/**
+	 * @param nanos execution time, a negative value is recorded as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		if (this.count == 0) {
+			this.min = value;
+			this.max = value;
+		} else {
+			if (this.counts == null) {
+				increment(this.min);
+			}
+			increment(value);
+			this.min = Math.min(this.min, value);
+			this.max = Math.max(this.max, value);
+		}
+		this.count++;
+		this.sum += value;
+	}
+
+	/**
+	 * Adds the values recorded by another histogram.
+	 * @param other
+	 */
+	public void merge(LatencyHistogram other) {
+		if (other.count == 0) {
+			return;
+		}
+		if (other.counts == null) {
+			record(other.min);
+			return;
+		}
+		if (this.count > 0 && this.counts == null) {
+			increment(this.min);
+		}
+		ensureCapacity(other.counts.length);
+		for (int i = 0; i < other.counts.length; i++) {
+			this.counts[i] += other.counts[i];
+		}
+		this.min = this.count == 0 ? other.min : Math.min(this.min, other.min);
+		this.max = this.count == 0 ? other.max : Math.max(this.max, other.max);
+		this.count += other.count;
+		this.sum += other.sum;
+	}
+
+	public long getCount() {
+		return this.count;
+	}
+
+	public long getMin() {
+		return this.min;
+	}
+
+	public long getMax() {
+		return this.max;
+	}
+
+	public long getMean() {
+		return this.count == 0 ? 0 : this.sum / this.count;
+	}
+
+	/**
+	 * @param percent between 0 and 100
+	 * @return the value below or at which <code>percent</code> of the values are, 0 when nothing
+	 * was recorded
+	 */
+	public long getPercentile(double percent) {
+		if (this.count == 0) {
+			return 0;
+		}
+		if (this.counts == null || percent >= 100) {
+			return this.max;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percent / 100 * this.count));
+		long seen = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			seen += this.counts[i];
+			if (seen >= rank) {
+				return Math.max(this.min, Math.min(this.max, valueOf(i)));
+			}
+		}
+		return this.max;
+	}
+
+	private void increment(long value) {
+		int index = indexOf(value);
+		ensureCapacity(index + 1);
+		this.counts[index]++;
+	}
+
+	private void ensureCapacity(int length) {
+		if (this.counts == null) {
+			this.counts = new int[Math.max(length, LINEAR)];
+		} else if (this.counts.length < length) {
+			this.counts = Arrays.copyOf(this.counts, Math.max(length, this.counts.length + SUB_BUCKETS));
+		}
+	}
+
+	static int indexOf(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int shift = exponent - SUB_BUCKET_BITS;
+		return LINEAR + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+	}
+
+	/**
+	 * @return the middle of the values counted in the bucket
+	 */
+	static long valueOf(int index) {
+		if (index < LINEAR) {
+			return index;
+		}
+		int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+		long lowest = (long) (SUB_BUCKETS + (index - LINEAR) % SUB_BUCKETS) << shift;
+		return lowest + (1L << (shift - 1));
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.framework;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least recently used cache of the prepared and callable statements of one
+ * connection, keyed by the SQL text.  The statements stay open between executions,
+ * when the cache is full the least recently used statement is closed.  When the cache
+ * is used with another connection, the statements of the previous connection are closed.
+ */
+public class StatementCache {
+
+	private final int maxSize;
+
+	private Connection connection;
+
+	private final LinkedHashMap<String, Statement> statements;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * @param maxSize maximum number of cached statements, 0 disables the cache
+	 */
+	public StatementCache(final int maxSize) {
+		this.maxSize = maxSize;
+		this.statements = new LinkedHashMap<String, Statement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Statement> eldest) {
+				if (size() > StatementCache.this.maxSize) {
+					close(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public boolean isEnabled() {
+		return this.maxSize > 0;
+	}
+
+	/**
+	 * Returns the cached statement for the SQL text and counts a hit, or 
+	 * <code>null</code> and counts a miss.
+	 * 
+	 * @param conn connection the statement is executed on
+	 * @param sql
+	 * @return Statement or <code>null</code>
+	 */
+	public Statement get(Connection conn, String sql) {
+		if (conn != this.connection) {
+			clear();
+			this.connection = conn;
+		}
+		Statement stmt = this.statements.get(sql);
+		if (stmt == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return stmt;
+	}
+
+	/**
+	 * Caches a statement prepared on the connection last passed to {@link #get(Connection, String)}.
+	 * 
+	 * @param sql
+	 * @param stmt
+	 */
+	public void put(String sql, Statement stmt) {
+		this.statements.put(sql, stmt);
+	}
+
+	public boolean contains(Statement stmt) {
+		return stmt != null && this.statements.containsValue(stmt);
+	}
+
+	/**
+	 * Closes and removes all cached statements.
+	 */
+	public void clear() {
+		if (this.statements.isEmpty()) {
+			return;
+		}
+		List<Statement> closing = new ArrayList<Statement>(this.statements.values());
+		this.statements.clear();
+		for (Statement stmt : closing) {
+			close(stmt);
+		}
+		FrameworkPlugin.LOGGER.debug("Statement cache cleared [hits: " + hits + ", misses: " + misses + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	public int size() {
+		return this.statements.size();
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	private static void close(Statement stmt) {
+		try {
+			stmt.close();
+		} catch (SQLException e) {
+			// ignore
+		}
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.framework;
+
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.bqt.core.exception.FrameworkRuntimeException;
+import org.jboss.bqt.core.util.PropertiesUtils;
+
+/**
+ * The statement settings (fetch size, max rows, query timeout, fetch direction and
+ * Teiid execution properties) to use for executing a query.  The settings are
+ * declared per scenario by the {@link ConfigPropertyNames.CONNECTION_STRATEGY_PROPS connection properties},
+ * and can be overridden per query set and per query.  A setting that is not set
+ * leaves the driver default in place.
+ */
+public class StatementTuning {
+
+	/** indicates the setting is not set */
+	public static final int NOT_SET = -1;
+
+	private int fetchSize = NOT_SET;
+	private int maxRows = NOT_SET;
+	private int queryTimeout = NOT_SET;
+	private int fetchDirection = NOT_SET;
+	private Boolean adaptiveFetchSize = null;
+	private Properties executionProperties = new Properties();
+
+	/**
+	 * Creates the scenario level settings from the connection properties.
+	 * @param props
+	 * @return StatementTuning
+	 */
+	public static StatementTuning create(Properties props) {
+		StatementTuning tuning = new StatementTuning();
+		tuning.setFetchSize(PropertiesUtils.getIntProperty(props,
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.FETCH_SIZE, NOT_SET));
+		tuning.setMaxRows(PropertiesUtils.getIntProperty(props,
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.MAX_ROWS, NOT_SET));
+		tuning.setQueryTimeout(PropertiesUtils.getIntProperty(props,
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.QUERY_TIMEOUT, NOT_SET));
+		tuning.setFetchDirection(props.getProperty(
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.FETCH_DIRECTION));
+		if (props.getProperty(ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.ADAPTIVE_FETCH_SIZE) != null) {
+			tuning.setAdaptiveFetchSize(PropertiesUtils.getBooleanProperty(props,
+					ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.ADAPTIVE_FETCH_SIZE, false));
+		}
+		tuning.getExecutionProperties().putAll(PropertiesUtils.getProperties(
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.EXECUTION_PROPERTY_PREFIX + "*", props)); //$NON-NLS-1$
+		return tuning;
+	}
+
+	/**
+	 * Returns new settings where the settings that are set in <code>override</code>
+	 * replace these settings.
+	 * @param override may be <code>null</code>
+	 * @return StatementTuning
+	 */
+	public StatementTuning merge(StatementTuning override) {
+		StatementTuning merged = new StatementTuning();
+		merged.fetchSize = this.fetchSize;
+		merged.maxRows = this.maxRows;
+		merged.queryTimeout = this.queryTimeout;
+		merged.fetchDirection = this.fetchDirection;
+		merged.adaptiveFetchSize = this.adaptiveFetchSize;
+		merged.executionProperties.putAll(this.executionProperties);
+		if (override != null) {
+			if (override.fetchSize != NOT_SET) merged.fetchSize = override.fetchSize;
+			if (override.maxRows != NOT_SET) merged.maxRows = override.maxRows;
+			if (override.queryTimeout != NOT_SET) merged.queryTimeout = override.queryTimeout;
+			if (override.fetchDirection != NOT_SET) merged.fetchDirection = override.fetchDirection;
+			if (override.adaptiveFetchSize != null) merged.adaptiveFetchSize = override.adaptiveFetchSize;
+			merged.executionProperties.putAll(override.executionProperties);
+		}
+		return merged;
+	}
+
+	/**
+	 * Applies the settings to the statement.
+	 * @param stmt
+	 * @param fetchSize the fetch size to use, which can differ from {@link #getFetchSize()} when it is adaptive
+	 * @param reset <code>true</code> when the statement is reused, so the settings that are not set
+	 * 				are put back to the JDBC defaults
+	 * @throws SQLException
+	 */
+	public void apply(Statement stmt, int fetchSize, boolean reset) throws SQLException {
+		if (fetchSize != NOT_SET || reset) {
+			stmt.setFetchSize(Math.max(fetchSize, 0));
+		}
+		if (this.maxRows != NOT_SET || reset) {
+			stmt.setMaxRows(Math.max(this.maxRows, 0));
+		}
+		if (this.queryTimeout != NOT_SET || reset) {
+			stmt.setQueryTimeout(Math.max(this.queryTimeout, 0));
+		}
+		if (this.fetchDirection != NOT_SET) {
+			stmt.setFetchDirection(this.fetchDirection);
+		} else if (reset) {
+			stmt.setFetchDirection(ResultSet.FETCH_FORWARD);
+		}
+		for (Map.Entry<Object, Object> entry : this.executionProperties.entrySet()) {
+			setExecutionProperty(stmt, (String) entry.getKey(), (String) entry.getValue());
+		}
+	}
+
+	/**
+	 * Execution properties are specific to the Teiid driver (TeiidStatement.setExecutionProperty),
+	 * which the framework does not depend on.
+	 */
+	private static void setExecutionProperty(Statement stmt, String name, String value) throws SQLException {
+		try {
+			Method m = stmt.getClass().getMethod("setExecutionProperty", String.class, String.class); //$NON-NLS-1$
+			m.invoke(stmt, name, value);
+		} catch (NoSuchMethodException e) {
+			throw new SQLException("Execution property " + name + " is not supported by statement " + stmt.getClass().getName()); //$NON-NLS-1$ //$NON-NLS-2$
+		} catch (Exception e) {
+			throw new SQLException("Unable to set execution property " + name + ": " + e.getMessage(), e); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	public int getMaxRows() {
+		return maxRows;
+	}
+
+	public void setMaxRows(int maxRows) {
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * @return query timeout in seconds
+	 */
+	public int getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	public void setQueryTimeout(int queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	public int getFetchDirection() {
+		return fetchDirection;
+	}
+
+	public void setFetchDirection(int fetchDirection) {
+		this.fetchDirection = fetchDirection;
+	}
+
+	/**
+	 * @param direction forward, reverse or unknown, <code>null</code> for not set
+	 */
+	public void setFetchDirection(String direction) {
+		if (direction == null || direction.trim().length() == 0) {
+			this.fetchDirection = NOT_SET;
+		} else if ("forward".equalsIgnoreCase(direction.trim())) { //$NON-NLS-1$
+			this.fetchDirection = ResultSet.FETCH_FORWARD;
+		} else if ("reverse".equalsIgnoreCase(direction.trim())) { //$NON-NLS-1$
+			this.fetchDirection = ResultSet.FETCH_REVERSE;
+		} else if ("unknown".equalsIgnoreCase(direction.trim())) { //$NON-NLS-1$
+			this.fetchDirection = ResultSet.FETCH_UNKNOWN;
+		} else {
+			throw new FrameworkRuntimeException("Invalid fetch direction '" + direction + "', must be forward, reverse or unknown"); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+	}
+
+	public boolean isAdaptiveFetchSize() {
+		return adaptiveFetchSize != null && adaptiveFetchSize.booleanValue();
+	}
+
+	public void setAdaptiveFetchSize(boolean adaptiveFetchSize) {
+		this.adaptiveFetchSize = Boolean.valueOf(adaptiveFetchSize);
+	}
+
+	/**
+	 * @return the Teiid execution properties, by name
+	 */
+	public Properties getExecutionProperties() {
+		return executionProperties;
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append("StatementTuning - fetchSize: ");
+		sb.append(fetchSize);
+		sb.append(" maxRows: ");
+		sb.append(maxRows);
+		sb.append(" queryTimeout: ");
+		sb.append(queryTimeout);
+		sb.append(" fetchDirection: ");
+		sb.append(fetchDirection);
+		sb.append(" adaptiveFetchSize: ");
+		sb.append(isAdaptiveFetchSize());
+		sb.append(" executionProperties: ");
+		sb.append(executionProperties);
+		return sb.toString();
+	}
+}
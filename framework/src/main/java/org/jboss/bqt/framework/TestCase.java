@@ -37,6 +37,7 @@ public class TestCase {
 	
 	private ActualTest at = null;
 	private TestResult tr = null;
+	private Object actualResults = null;
 	
 	public TestCase(ActualTest test) {
 		this.at = test;
@@ -74,4 +75,17 @@ public class TestCase {
 	public void setTestResult(TestResult testResult) {
 		this.tr = testResult;
 	}
+
+	/**
+	 * Return the actual results that were read while comparing the results
+	 * of a forward only result set, which cannot be read a second time.
+	 * @return Object, <code>null</code> when the result set can be rewound
+	 */
+	public Object getActualResults() {
+		return this.actualResults;
+	}
+
+	public void setActualResults(Object actualResults) {
+		this.actualResults = actualResults;
+	}
 }
@@ -68,6 +68,13 @@ public class TestResult implements ConfigPropertyNames, Serializable {
 		 * TEST_PRERUN is used to indicate the test has not been executed yet.
 		 */
 		public static final int TEST_PRERUN = 16;
+		
+		/**
+		 * TEST_TIMEOUT - indicates the query did not finish before its deadline
+		 * and was cancelled, or was not executed because the deadline of its
+		 * query set had passed
+		 */
+		public static final int TEST_TIMEOUT = 32;
 	}
 
 	public interface RESULT_STATE_STRING {
@@ -91,6 +98,11 @@ public class TestResult implements ConfigPropertyNames, Serializable {
 		 * {@link RESULT_STATE#TEST_EXECUTION_TIME_EXCEEDED_EXCEPTION occurs}
 		 */
 		public static final String EXEEDED_EXECUTION_TIME = "fail-exceeded-time";
+		/**
+		 * The string value for when a
+		 * {@link RESULT_STATE#TEST_TIMEOUT occurs}
+		 */
+		public static final String TIMEOUT = "fail-timeout";
 
 		/**
 		 * The string value for when a status occurs that hasn't been defined
@@ -99,6 +111,48 @@ public class TestResult implements ConfigPropertyNames, Serializable {
 
 	}
 
+	/**
+	 * The PHASE is the part of a test whose duration is recorded, see
+	 * {@link TestResult#getPhaseNanos(int)}
+	 */
+	public interface PHASE {
+		/**
+		 * CONNECT - getting the connection
+		 */
+		public static final int CONNECT = 0;
+		/**
+		 * PREPARE - creating or preparing the statement and setting it up
+		 */
+		public static final int PREPARE = 1;
+		/**
+		 * EXECUTE - the statement execute
+		 */
+		public static final int EXECUTE = 2;
+		/**
+		 * FIRST_ROW - moving to the first row, which waits for the first rows
+		 */
+		public static final int FIRST_ROW = 3;
+		/**
+		 * FETCH - moving to the next row, for all the rows
+		 */
+		public static final int FETCH = 4;
+		/**
+		 * EXPECTED_RESULTS - loading the expected results
+		 */
+		public static final int EXPECTED_RESULTS = 5;
+		/**
+		 * COMPARE - comparing the results, without the fetch
+		 */
+		public static final int COMPARE = 6;
+		/**
+		 * OUTPUT - writing the expected results or the error files, without the fetch
+		 */
+		public static final int OUTPUT = 7;
+
+		public static final String[] NAMES = {"connect", "prepare", "execute", "firstRow", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+				"fetch", "expectedResults", "compare", "output"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+	}
+
 	/**
 	 * @since
 	 */
@@ -120,6 +174,17 @@ public class TestResult implements ConfigPropertyNames, Serializable {
 	private long updateCount = -1;
 	
 private String resultMode = null;
+
+	private int clientID = 1;
+
+	private boolean reconnected = false;
+
+	private LatencyHistogram latencies = new LatencyHistogram();
+
+	// nanoseconds of each PHASE, -1 when it did not happen
+	private final long[] phaseNanos = {-1, -1, -1, -1, -1, -1, -1, -1};
+
+	private long fetchedRows = 0;
 	
 	public TestResult(final String querySetID, final String queryID) {
 		this.querySetID = querySetID;
@@ -145,6 +210,8 @@ private String resultMode = null;
 			return RESULT_STATE_STRING.FAIL_EXPECTED_EXCEPTION;
 		case RESULT_STATE.TEST_EXECUTION_TIME_EXCEEDED_EXCEPTION:
 			return RESULT_STATE_STRING.EXEEDED_EXECUTION_TIME;
+		case RESULT_STATE.TEST_TIMEOUT:
+			return RESULT_STATE_STRING.TIMEOUT;
 		}
 		return RESULT_STATE_STRING.UNKNOWN;
 	}
@@ -185,6 +252,7 @@ private String resultMode = null;
 		switch (getStatus()) {
 		case RESULT_STATE.TEST_EXECUTION_TIME_EXCEEDED_EXCEPTION:
 		case RESULT_STATE.TEST_EXCEPTION:
+		case RESULT_STATE.TEST_TIMEOUT:
 			return true;
 		}
 		return false;
@@ -268,6 +336,79 @@ private String resultMode = null;
 		this.updateCount = updateCount;
 	}
 
+	/**
+	 * Get the ID of the simulated client that executed the test, starting at 1.
+	 * @return client ID
+	 */
+	public int getClientID() {
+		return clientID;
+	}
+
+	public void setClientID(int clientID) {
+		this.clientID = clientID;
+	}
+
+	/**
+	 * @return <code>true</code> when the test had to open a new connection,
+	 * because a connection exception discarded the previous one
+	 */
+	public boolean isReconnected() {
+		return reconnected;
+	}
+
+	public void setReconnected(boolean reconnected) {
+		this.reconnected = reconnected;
+	}
+
+	/**
+	 * @return the execution times of the statements of the test, in nanoseconds,
+	 * without the warm-up executions
+	 */
+	public LatencyHistogram getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * @param phase {@link PHASE}
+	 * @return nanoseconds spent in the phase, summed over the statements of the test,
+	 * -1 when the phase did not happen
+	 */
+	public long getPhaseNanos(int phase) {
+		return phaseNanos[phase];
+	}
+
+	public void addPhaseNanos(int phase, long nanos) {
+		phaseNanos[phase] = Math.max(phaseNanos[phase], 0) + nanos;
+	}
+
+	/**
+	 * @return number of rows read from the result sets of the test
+	 */
+	public long getFetchedRows() {
+		return fetchedRows;
+	}
+
+	void addFetchedRow() {
+		fetchedRows++;
+	}
+
+	/**
+	 * Starts timing a phase.  The rows fetched during the phase are part of the
+	 * {@link PHASE#FETCH} phase, they are left out of the phase.
+	 * @return the start to pass to {@link #endPhase(int, long)}
+	 */
+	public long beginPhase() {
+		return System.nanoTime() - Math.max(phaseNanos[PHASE.FETCH], 0);
+	}
+
+	/**
+	 * @param phase {@link PHASE}
+	 * @param begin returned by {@link #beginPhase()}
+	 */
+	public void endPhase(int phase, long begin) {
+		addPhaseNanos(phase, System.nanoTime() - Math.max(phaseNanos[PHASE.FETCH], 0) - begin);
+	}
+
 	public long getExecutionTime() {
 		Date starttest = new Date(getBeginTS());
 		Date endtest = new Date(getEndTS());
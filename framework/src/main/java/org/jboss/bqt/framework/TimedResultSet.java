@@ -0,0 +1,81 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.framework;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+/**
+ * Records the time spent in {@link ResultSet#next()} as the {@link TestResult.PHASE#FETCH} phase
+ * of a test, and the first call, which waits for the first rows, as its {@link TestResult.PHASE#FIRST_ROW}
+ * phase.  The rows that are read are counted, see {@link TestResult#getFetchedRows()}.
+ */
+class TimedResultSet implements InvocationHandler {
+
+	private final ResultSet rs;
+	private final TestResult result;
+	private boolean first = true;
+
+	private TimedResultSet(ResultSet rs, TestResult result) {
+		this.rs = rs;
+		this.result = result;
+	}
+
+	/**
+	 * @param rs
+	 * @param result the test whose phases are recorded
+	 * @return ResultSet
+	 */
+	static ResultSet wrap(ResultSet rs, TestResult result) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class[] { ResultSet.class }, new TimedResultSet(rs, result));
+	}
+
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (!"next".equals(method.getName())) { //$NON-NLS-1$
+			try {
+				return method.invoke(rs, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+		long begin = System.nanoTime();
+		try {
+			boolean next = rs.next();
+			if (next) {
+				result.addFetchedRow();
+			}
+			return next;
+		} finally {
+			long nanos = System.nanoTime() - begin;
+			result.addPhaseNanos(TestResult.PHASE.FETCH, nanos);
+			if (first) {
+				result.addPhaseNanos(TestResult.PHASE.FIRST_ROW, nanos);
+				first = false;
+			}
+		}
+	}
+}
@@ -0,0 +1,342 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.jboss.bqt.framework.connection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.bqt.core.exception.FrameworkException;
+import org.jboss.bqt.framework.FrameworkPlugin;
+
+/**
+ * A bounded pool of physical connections used by {@link PooledConnection}.  
+ * The connections handed out are proxies, closing them returns the physical 
+ * connection to the pool.  Idle connections are validated with 
+ * {@link Connection#isValid(int)} before they are handed out again, and are 
+ * closed when they have not been used for the idle timeout.
+ */
+class ConnectionPool {
+
+	/** opens the physical connections */
+	private final DriverConnection factory;
+
+	private final int maxSize;
+	private final int minSize;
+	private final long idleTimeout;
+	private final long waitTimeout;
+	private final int validationTimeout;
+
+	private final Semaphore permits;
+
+	// most recently used first, guarded by this
+	private final LinkedList<IdleConnection> idle = new LinkedList<IdleConnection>();
+
+	// statistics, guarded by this
+	private int open = 0;
+	private int inUse = 0;
+	private int maxInUse = 0;
+	private long borrows = 0;
+	private long totalWait = 0;
+	private long maxWait = 0;
+	private long created = 0;
+	private long evicted = 0;
+	private long invalid = 0;
+
+	ConnectionPool(DriverConnection factory, int maxSize, int minSize,
+			long idleTimeout, long waitTimeout, int validationTimeout) {
+		this.factory = factory;
+		this.maxSize = Math.max(maxSize, 1);
+		this.minSize = Math.min(Math.max(minSize, 0), this.maxSize);
+		this.idleTimeout = idleTimeout;
+		this.waitTimeout = waitTimeout;
+		this.validationTimeout = validationTimeout;
+		this.permits = new Semaphore(this.maxSize, true);
+	}
+
+	/**
+	 * Opens connections until the pool holds its initial size.
+	 * 
+	 * @throws FrameworkException
+	 */
+	void warmUp() throws FrameworkException {
+		while (true) {
+			synchronized (this) {
+				if (open >= minSize) {
+					return;
+				}
+			}
+			Connection conn = factory.createConnection();
+			synchronized (this) {
+				open++;
+				created++;
+				idle.addLast(new IdleConnection(conn));
+			}
+		}
+	}
+
+	/**
+	 * Borrows a connection, waiting at most the wait timeout when all
+	 * connections are in use.
+	 * 
+	 * @return Connection that returns to the pool when closed
+	 * @throws FrameworkException
+	 */
+	Connection borrow() throws FrameworkException {
+		long start = System.currentTimeMillis();
+		try {
+			if (!permits.tryAcquire(waitTimeout, TimeUnit.MILLISECONDS)) {
+				throw new FrameworkException(FrameworkException.ErrorCodes.DB_CONNECTION_EXCEPTION,
+						"Timed out waiting " + waitTimeout + " ms for a pooled connection [in use: " + maxSize + "]."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new FrameworkException(e, FrameworkException.ErrorCodes.BQT_INTERRUPTED,
+					"BQT thread has been interrupted."); //$NON-NLS-1$
+		}
+
+		try {
+			Connection conn = null;
+			while (conn == null) {
+				IdleConnection next;
+				synchronized (this) {
+					next = idle.pollFirst();
+				}
+				if (next == null) {
+					conn = factory.createConnection();
+					synchronized (this) {
+						open++;
+						created++;
+					}
+				} else if (isValid(next.connection)) {
+					conn = next.connection;
+				} else {
+					discard(next.connection);
+					synchronized (this) {
+						invalid++;
+					}
+				}
+			}
+
+			long wait = System.currentTimeMillis() - start;
+			int used;
+			synchronized (this) {
+				borrows++;
+				totalWait += wait;
+				maxWait = Math.max(maxWait, wait);
+				used = ++inUse;
+				maxInUse = Math.max(maxInUse, inUse);
+			}
+			FrameworkPlugin.LOGGER.debug("Borrowed pooled connection [wait: " + wait + " ms, in use: " + used + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new BorrowedConnection(conn));
+		} catch (FrameworkException e) {
+			permits.release();
+			throw e;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	private void giveBack(Connection conn) {
+		boolean reusable;
+		try {
+			if (!conn.getAutoCommit()) {
+				conn.rollback();
+				conn.setAutoCommit(true);
+			}
+			reusable = !conn.isClosed();
+		} catch (SQLException e) {
+			reusable = false;
+		}
+
+		if (reusable) {
+			synchronized (this) {
+				inUse--;
+				idle.addFirst(new IdleConnection(conn));
+			}
+		} else {
+			discard(conn);
+			synchronized (this) {
+				inUse--;
+			}
+		}
+		permits.release();
+		evictIdle();
+	}
+
+	/**
+	 * Closes the connections that have been idle for longer than the idle timeout,
+	 * but keeps the initial size open.
+	 */
+	void evictIdle() {
+		if (idleTimeout <= 0) {
+			return;
+		}
+		long oldest = System.currentTimeMillis() - idleTimeout;
+		LinkedList<Connection> expired = new LinkedList<Connection>();
+		synchronized (this) {
+			Iterator<IdleConnection> it = idle.descendingIterator();
+			while (it.hasNext() && open - expired.size() > minSize) {
+				IdleConnection next = it.next();
+				if (next.idleSince >= oldest) {
+					break;
+				}
+				it.remove();
+				expired.add(next.connection);
+				evicted++;
+			}
+		}
+		for (Connection conn : expired) {
+			discard(conn);
+		}
+	}
+
+	/**
+	 * Closes all idle connections, connections still in use are closed
+	 * when they are returned.
+	 */
+	void close() {
+		LinkedList<IdleConnection> closing;
+		synchronized (this) {
+			closing = new LinkedList<IdleConnection>(idle);
+			idle.clear();
+		}
+		for (IdleConnection next : closing) {
+			discard(next.connection);
+		}
+		FrameworkPlugin.LOGGER.info("Connection pool closed [" + getStatistics() + "]"); //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	synchronized String getStatistics() {
+		return "borrows: " + borrows //$NON-NLS-1$
+				+ ", avg wait: " + (borrows > 0 ? totalWait / borrows : 0) + " ms" //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", max wait: " + maxWait + " ms" //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", in use: " + inUse //$NON-NLS-1$
+				+ ", max in use: " + maxInUse //$NON-NLS-1$
+				+ ", open: " + open //$NON-NLS-1$
+				+ ", created: " + created //$NON-NLS-1$
+				+ ", evicted: " + evicted //$NON-NLS-1$
+				+ ", invalid: " + invalid; //$NON-NLS-1$
+	}
+
+	synchronized int getIdleCount() {
+		return idle.size();
+	}
+
+	synchronized int getInUseCount() {
+		return inUse;
+	}
+
+	private boolean isValid(Connection conn) {
+		try {
+			return conn.isValid(validationTimeout);
+		} catch (SQLException e) {
+			return false;
+		} catch (AbstractMethodError e) {
+			// pre JDBC 4 driver
+			try {
+				return !conn.isClosed();
+			} catch (SQLException sqle) {
+				return false;
+			}
+		}
+	}
+
+	private void discard(Connection conn) {
+		synchronized (this) {
+			open--;
+		}
+		try {
+			conn.close();
+		} catch (SQLException e) {
+			// ignore
+		}
+	}
+
+	private static class IdleConnection {
+		final Connection connection;
+		final long idleSince = System.currentTimeMillis();
+
+		IdleConnection(Connection connection) {
+			this.connection = connection;
+		}
+	}
+
+	/**
+	 * Delegates to the physical connection until the borrower closes it.
+	 */
+	private class BorrowedConnection implements InvocationHandler {
+
+		private final Connection connection;
+		private boolean closed = false;
+
+		BorrowedConnection(Connection connection) {
+			this.connection = connection;
+		}
+
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("close".equals(name) && method.getParameterTypes().length == 0) { //$NON-NLS-1$
+				synchronized (this) {
+					if (closed) {
+						return null;
+					}
+					closed = true;
+				}
+				giveBack(connection);
+				return null;
+			}
+			if ("isClosed".equals(name) && method.getParameterTypes().length == 0) { //$NON-NLS-1$
+				synchronized (this) {
+					if (closed) {
+						return Boolean.TRUE;
+					}
+				}
+			} else if ("equals".equals(name) && method.getParameterTypes().length == 1) { //$NON-NLS-1$
+				return Boolean.valueOf(proxy == args[0]);
+			} else if ("hashCode".equals(name) && method.getParameterTypes().length == 0) { //$NON-NLS-1$
+				return Integer.valueOf(System.identityHashCode(proxy));
+			} else if (method.getDeclaringClass() != Object.class) {
+				synchronized (this) {
+					if (closed) {
+						throw new SQLException("Connection has been returned to the pool."); //$NON-NLS-1$
+					}
+				}
+			}
+			try {
+				return method.invoke(connection, args);
+			} catch (InvocationTargetException e) {
+				throw e.getTargetException();
+			}
+		}
+	}
+}
@@ -30,6 +30,7 @@ import javax.sql.XAConnection;
 import org.jboss.bqt.core.exception.FrameworkException;
 import org.jboss.bqt.core.exception.QueryTestFailedException;
 import org.jboss.bqt.core.util.PropertiesUtils;
+import org.jboss.bqt.framework.ConfigPropertyNames;
 
 /**
  * The ConnectionStrategy is the base class for the different types of connections that are supported for executing queries.
@@ -42,6 +43,8 @@ public abstract class ConnectionStrategy {
 
 	public ConnectionStrategy(Properties props) {
 		this.env = PropertiesUtils.clone(props);
+		this.autoCommit = PropertiesUtils.getBooleanProperty(this.env,
+				ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.AUTOCOMMIT, true);
 
 	}
 
@@ -58,6 +61,25 @@ public abstract class ConnectionStrategy {
 	public abstract Connection getConnection() throws FrameworkException;
 
 
+	/**
+	 * Called when a test case is done with the connection returned by
+	 * {@link #getConnection()}.  Strategies that keep their connection
+	 * open until {@link #shutdown()} do nothing.
+	 */
+	public void release() {
+
+	}
+
+	/**
+	 * Returns <code>true</code> when the connection stays with this strategy after
+	 * {@link #release()}, so statements prepared on it can be reused by the next test case.
+	 * 
+	 * @return <code>true</code> unless {@link #release()} hands the connection back
+	 */
+	public boolean holdsConnection() {
+		return true;
+	}
+
 	/**
 	 * @since
 	 */
@@ -104,13 +126,25 @@ public abstract class ConnectionStrategy {
 	 * @return
 	 */
 	protected FrameworkException translaceSQLException(SQLException sqlEx){
-		String state = sqlEx.getSQLState();
-		// SQL-99 error states
-		if(state != null && state.startsWith("08")){ //$NON-NLS-1$
+		if(isConnectionException(sqlEx)){
 			return new FrameworkException(sqlEx, FrameworkException.ErrorCodes.SERVER_CONNECTION_EXCEPTION, "Server not available.");
 		}
 		return new FrameworkException(sqlEx, FrameworkException.ErrorCodes.DB_CONNECTION_EXCEPTION, "Error while establishing connection.");
 	}
+
+	/**
+	 * Returns <code>true</code> when the SQLState of the exception is of the 
+	 * connection exception class ("08"), which means the connection cannot be used anymore.
+	 * Any other exception leaves the connection usable.
+	 * 
+	 * @param sqlEx SQLException
+	 * @return <code>true</code> for a connection exception
+	 */
+	public static boolean isConnectionException(SQLException sqlEx){
+		String state = sqlEx.getSQLState();
+		// SQL-99 error states
+		return state != null && state.startsWith("08"); //$NON-NLS-1$
+	}
 	
 	/**
 	 * @throws QueryTestFailedException
@@ -63,6 +63,10 @@ public class ConnectionStrategyFactory {
 					.equalsIgnoreCase(ConfigPropertyNames.CONNECTION_TYPES.JNDI_CONNECTION)) {
 				strategy = new JEEConnection(props);
 				FrameworkPlugin.LOGGER.debug("Created JEE Strategy");
+			} else if (type
+					.equalsIgnoreCase(ConfigPropertyNames.CONNECTION_TYPES.POOLED_CONNECTION)) {
+				strategy = new PooledConnection(props);
+				FrameworkPlugin.LOGGER.debug("Created Pooled Strategy");
 			}
 
 			if (strategy == null) {
@@ -111,11 +111,29 @@ public class DriverConnection extends ConnectionStrategy {
 
 		}
 
-		this.connection = getJDBCConnection(this.driver, this.url,
-				this.username, this.pwd);
+		this.connection = createConnection();
 		return this.connection;
 	}
 
+	/**
+	 * Opens a new physical connection.
+	 * 
+	 * @return Connection
+	 * @throws FrameworkException
+	 */
+	protected Connection createConnection() throws FrameworkException {
+		return getJDBCConnection(this.driver, this.url,
+				this.username, this.pwd);
+	}
+
+	protected String getUrl() {
+		return this.url;
+	}
+
+	protected String getUsername() {
+		return this.username;
+	}
+
 	private Connection getJDBCConnection(String driver, String url,
 			String user, String passwd) throws FrameworkException {
 
@@ -0,0 +1,168 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.jboss.bqt.framework.connection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+
+import org.jboss.bqt.core.exception.FrameworkException;
+import org.jboss.bqt.core.exception.QueryTestFailedException;
+import org.jboss.bqt.core.util.PropertiesUtils;
+import org.jboss.bqt.framework.FrameworkPlugin;
+
+/**
+ * The PooledConnection strategy borrows driver connections from a {@link ConnectionPool}
+ * that is shared by all strategies using the same url and user.  The pool is opened to its
+ * initial size when the first strategy is configured, so the first queries of a scenario
+ * don't wait for a connection to be created.  The connection is held from the first
+ * {@link #getConnection()} until {@link #release()}, which is called when a test case 
+ * is cleaned up, or {@link #shutdown()}.
+ */
+public class PooledConnection extends DriverConnection {
+
+	/** maximum number of open connections, default is 10 */
+	public static final String POOL_MAX_SIZE = "conn.pool.max.size"; //$NON-NLS-1$
+	/** number of connections opened before the scenario starts and kept open, default is 1 */
+	public static final String POOL_INITIAL_SIZE = "conn.pool.initial.size"; //$NON-NLS-1$
+	/** milliseconds after which an unused connection is closed, default is 300000 */
+	public static final String POOL_IDLE_TIMEOUT = "conn.pool.idle.timeout"; //$NON-NLS-1$
+	/** milliseconds to wait for a connection when all are in use, default is 30000 */
+	public static final String POOL_WAIT_TIMEOUT = "conn.pool.wait.timeout"; //$NON-NLS-1$
+	/** seconds given to {@link Connection#isValid(int)}, default is 5 */
+	public static final String POOL_VALIDATION_TIMEOUT = "conn.pool.validation.timeout"; //$NON-NLS-1$
+
+	private static final Map<String, ConnectionPool> POOLS = new HashMap<String, ConnectionPool>();
+
+	private ConnectionPool pool;
+
+	private Connection connection;
+
+	public PooledConnection(Properties props) {
+		super(props);
+	}
+
+	@Override
+	void configure() throws QueryTestFailedException {
+		super.configure();
+		this.pool = getPool(this);
+	}
+
+	@Override
+	public synchronized Connection getConnection() throws FrameworkException {
+		if (this.connection != null) {
+			try {
+				if (!this.connection.isClosed()) {
+					return this.connection;
+				}
+			} catch (SQLException e) {
+
+			}
+		}
+		if (this.pool == null) {
+			this.pool = getPool(this);
+		}
+		this.connection = this.pool.borrow();
+		return this.connection;
+	}
+
+	@Override
+	public synchronized void release() {
+		if (this.connection != null) {
+			try {
+				this.connection.close();
+			} catch (SQLException e) {
+				// ignore
+			}
+		}
+		this.connection = null;
+	}
+
+	@Override
+	public void shutdown() {
+		release();
+	}
+
+	@Override
+	public boolean holdsConnection() {
+		return false;
+	}
+
+	/**
+	 * @return statistics of the pool used by this strategy
+	 */
+	public String getPoolStatistics() {
+		return this.pool == null ? "" : this.pool.getStatistics(); //$NON-NLS-1$
+	}
+
+	ConnectionPool getPool() {
+		return this.pool;
+	}
+
+	private static synchronized ConnectionPool getPool(PooledConnection strategy) {
+		String key = strategy.getUrl() + "|" + strategy.getUsername(); //$NON-NLS-1$
+		ConnectionPool pool = POOLS.get(key);
+		if (pool == null) {
+			Properties env = strategy.getEnvironment();
+			pool = new ConnectionPool(strategy,
+					PropertiesUtils.getIntProperty(env, POOL_MAX_SIZE, 10),
+					PropertiesUtils.getIntProperty(env, POOL_INITIAL_SIZE, 1),
+					PropertiesUtils.getLongProperty(env, POOL_IDLE_TIMEOUT, 300000),
+					PropertiesUtils.getLongProperty(env, POOL_WAIT_TIMEOUT, 30000),
+					PropertiesUtils.getIntProperty(env, POOL_VALIDATION_TIMEOUT, 5));
+			try {
+				pool.warmUp();
+			} catch (FrameworkException e) {
+				// the connections will be created on demand, which reports the failure to the test
+				FrameworkPlugin.LOGGER.warn("Unable to open the initial pooled connections: " + e.getMessage()); //$NON-NLS-1$
+			}
+			POOLS.put(key, pool);
+		}
+		return pool;
+	}
+
+	/**
+	 * @return the url and user, and the statistics, of each pool
+	 */
+	public static synchronized String[] getAllPoolStatistics() {
+		String[] statistics = new String[POOLS.size()];
+		int i = 0;
+		for (Map.Entry<String, ConnectionPool> pool : POOLS.entrySet()) {
+			statistics[i++] = pool.getKey() + ": " + pool.getValue().getStatistics(); //$NON-NLS-1$
+		}
+		return statistics;
+	}
+
+	/**
+	 * Closes the idle connections of all pools and forgets the pools, the next
+	 * strategy that is configured creates a new pool.
+	 */
+	public static synchronized void closePools() {
+		for (Iterator<ConnectionPool> it = POOLS.values().iterator(); it.hasNext();) {
+			it.next().close();
+			it.remove();
+		}
+	}
+}
@@ -21,14 +21,49 @@
  */
 package org.jboss.bqt.framework.transaction;
 
+import java.sql.Connection;
+
+import org.jboss.bqt.core.exception.TransactionRuntimeException;
 import org.jboss.bqt.framework.AbstractQuery;
+import org.jboss.bqt.framework.TestCase;
 
 /**
- * This implementation has no transaction controlling logic
+ * This implementation has no transaction controlling logic.
+ * When the connection strategy's autocommit is off, the work of a test case
+ * is committed when the test case is cleaned up, after its results have been read,
+ * which lets drivers stream the results through a server side cursor.
  */
 public class UseDefaultTransaction extends AbstractQuery {
 
 	public UseDefaultTransaction() {
 		super();
 	}
+
+	@Override
+	public void before(TestCase testCase) {
+		super.before(testCase);
+
+		if (!getConnectionStrategy().getAutocommit()) {
+			try {
+				getConnection().setAutoCommit(false);
+			} catch (Exception e) {
+				throw new TransactionRuntimeException(e);
+			}
+		}
+	}
+
+	@Override
+	public void cleanup() {
+		Connection conn = getConnection();
+		if (!getConnectionStrategy().getAutocommit() && conn != null) {
+			try {
+				if (!conn.isClosed() && !conn.getAutoCommit()) {
+					conn.commit();
+				}
+			} catch (Exception e) {
+				debug("Commit of the cursor transaction failed: " + e.getMessage()); //$NON-NLS-1$
+			}
+		}
+		super.cleanup();
+	}
 }
@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.jboss.bqt.framework;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Test;
+
+/**
+ * Tests how the {@link AdaptiveFetchSize} learns the fetch size of a query
+ */
+public class TestAdaptiveFetchSize {
+
+	//===================================================================
+	//ACTUAL TESTS
+	//===================================================================
+
+	@Test
+	public void testFetchSizeFromRowWidth() throws Exception {
+		AdaptiveFetchSize adaptive = new AdaptiveFetchSize(new File("target/unused.properties"), 100000);
+
+		assertEquals(-1, adaptive.getFetchSize("q1", -1));
+
+		// 100 byte rows fill the batch with 1000 rows
+		adaptive.record("q1", -1, 50000, 100, 50000000L);
+		assertEquals(1000, adaptive.getFetchSize("q1", -1));
+
+		// no more rows than the query returns
+		adaptive.record("q2", -1, 5, 100, 50000L);
+		assertEquals(AdaptiveFetchSize.MIN_FETCH_SIZE, adaptive.getFetchSize("q2", -1));
+		assertEquals(101, adaptive.fetchSizeFor(100, 10));
+	}
+
+	@Test
+	public void testSlowerGoesBackToBest() throws Exception {
+		AdaptiveFetchSize adaptive = new AdaptiveFetchSize(new File("target/unused.properties"), 100000);
+
+		adaptive.record("q1", 200, 50000, 100, 50000000L);
+		assertEquals(1000, adaptive.getFetchSize("q1", -1));
+
+		// reading with 1000 was slower than with 200
+		adaptive.record("q1", 1000, 50000, 100, 80000000L);
+		assertEquals(200, adaptive.getFetchSize("q1", -1));
+	}
+
+	@Test
+	public void testSave() throws Exception {
+		File f = new File("target/adaptive_fetch_size.properties");
+		f.delete();
+		AdaptiveFetchSize adaptive = new AdaptiveFetchSize(f, 100000);
+		adaptive.record("q1", -1, 50000, 100, 50000000L);
+		adaptive.save();
+		assertTrue(f.exists());
+	}
+}
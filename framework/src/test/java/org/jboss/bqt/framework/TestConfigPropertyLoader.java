@@ -138,6 +138,40 @@ public class TestConfigPropertyLoader {
     	
     }
     
+    @Test
+    public void testScenarioInstance() throws Exception {
+    	System.setProperty(ConfigPropertyNames.CONFIG_FILE, "configtest.properties");
+
+		ConfigPropertyLoader shared = ConfigPropertyLoader.getInstance();
+		ConfigPropertyLoader scenario = ConfigPropertyLoader.createInstance();
+		assertNotSame(shared, scenario);
+
+		ConfigPropertyLoader.setScenarioInstance(scenario);
+		try {
+			assertSame(scenario, ConfigPropertyLoader.getInstance());
+			
+			scenario.setProperty("override", "scenariovalue");
+			assertEquals("scenariovalue", ConfigPropertyLoader.getInstance().getProperty("override")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertNull(shared.getProperty("override")); //$NON-NLS-1$
+			assertEquals("testmode", scenario.getProperty("bqt.result.mode")); //$NON-NLS-1$ //$NON-NLS-2$
+
+			// threads started by the scenario see the same instance
+			final ConfigPropertyLoader[] inThread = new ConfigPropertyLoader[1];
+			Thread t = new Thread() {
+				public void run() {
+					inThread[0] = ConfigPropertyLoader.getInstance();
+				}
+			};
+			t.start();
+			t.join();
+			assertSame(scenario, inThread[0]);
+		} finally {
+			ConfigPropertyLoader.setScenarioInstance(null);
+		}
+
+		assertSame(shared, ConfigPropertyLoader.getInstance());
+    }
+
     @Test
     public void testMetadataConfigProperties() throws Exception {
     	System.setProperty(ConfigPropertyNames.CONFIG_FILE, "configtest.properties");
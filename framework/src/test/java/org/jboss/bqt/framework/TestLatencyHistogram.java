@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.framework;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the statistics of a {@link LatencyHistogram}
+ */
+public class TestLatencyHistogram {
+
+	//===================================================================
+	//ACTUAL TESTS
+	//===================================================================
+
+	@Test
+	public void testSingleValue() throws Exception {
+		LatencyHistogram h = new LatencyHistogram();
+		assertEquals(0, h.getPercentile(50));
+
+		h.record(1234567);
+		assertEquals(1, h.getCount());
+		assertEquals(1234567, h.getMin());
+		assertEquals(1234567, h.getMean());
+		assertEquals(1234567, h.getPercentile(99));
+	}
+
+	@Test
+	public void testPercentiles() throws Exception {
+		LatencyHistogram h = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			h.record(i * 1000000L);
+		}
+		assertEquals(1000, h.getCount());
+		assertEquals(1000000L, h.getMin());
+		assertEquals(1000000000L, h.getMax());
+		assertEquals(500500000L, h.getMean());
+		assertWithin(500000000L, h.getPercentile(50));
+		assertWithin(950000000L, h.getPercentile(95));
+		assertWithin(990000000L, h.getPercentile(99));
+		assertEquals(1000000000L, h.getPercentile(100));
+	}
+
+	@Test
+	public void testBuckets() throws Exception {
+		for (long v : new long[] {0, 1, 63, 64, 65, 127, 128, 1000, 123456789L, Long.MAX_VALUE / 3}) {
+			assertWithin(v, LatencyHistogram.valueOf(LatencyHistogram.indexOf(v)));
+		}
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		LatencyHistogram a = new LatencyHistogram();
+		a.record(10);
+		LatencyHistogram b = new LatencyHistogram();
+		b.record(20);
+		b.record(30);
+		LatencyHistogram c = new LatencyHistogram();
+		c.record(40);
+
+		LatencyHistogram total = new LatencyHistogram();
+		total.merge(a);
+		total.merge(b);
+		total.merge(c);
+		total.merge(new LatencyHistogram());
+		assertEquals(4, total.getCount());
+		assertEquals(10, total.getMin());
+		assertEquals(40, total.getMax());
+		assertEquals(25, total.getMean());
+		assertEquals(20, total.getPercentile(50));
+		assertEquals(30, total.getPercentile(75));
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue("expected " + expected + " but was " + actual, Math.abs(expected - actual) <= expected * 0.02);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.jboss.bqt.framework;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests the least recently used eviction and the counters of the {@link StatementCache}
+ */
+public class TestStatementCache {
+
+	private final Set<Object> closed = new HashSet<Object>();
+
+	//===================================================================
+	//ACTUAL TESTS
+	//===================================================================
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		StatementCache cache = new StatementCache(2);
+		Connection conn = stub(Connection.class);
+
+		assertNull(cache.get(conn, "select 1"));
+		Statement s1 = stub(Statement.class);
+		cache.put("select 1", s1);
+
+		assertSame(s1, cache.get(conn, "select 1"));
+		assertTrue(cache.contains(s1));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedIsClosed() throws Exception {
+		StatementCache cache = new StatementCache(2);
+		Connection conn = stub(Connection.class);
+		Statement s1 = stub(Statement.class);
+		Statement s2 = stub(Statement.class);
+		Statement s3 = stub(Statement.class);
+
+		cache.get(conn, "1");
+		cache.put("1", s1);
+		cache.get(conn, "2");
+		cache.put("2", s2);
+		// 1 becomes the most recently used
+		cache.get(conn, "1");
+		cache.get(conn, "3");
+		cache.put("3", s3);
+
+		assertEquals(2, cache.size());
+		assertTrue(closed.contains(s2));
+		assertFalse(closed.contains(s1));
+		assertSame(s1, cache.get(conn, "1"));
+	}
+
+	@Test
+	public void testOtherConnectionClosesStatements() throws Exception {
+		StatementCache cache = new StatementCache(2);
+		Statement s1 = stub(Statement.class);
+
+		cache.get(stub(Connection.class), "1");
+		cache.put("1", s1);
+
+		assertNull(cache.get(stub(Connection.class), "1"));
+		assertTrue(closed.contains(s1));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		assertFalse(new StatementCache(0).isEnabled());
+		assertTrue(new StatementCache(1).isEnabled());
+	}
+
+	private <T> T stub(Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if ("close".equals(method.getName())) { //$NON-NLS-1$
+							closed.add(proxy);
+						} else if ("hashCode".equals(method.getName())) { //$NON-NLS-1$
+							return System.identityHashCode(proxy);
+						} else if ("equals".equals(method.getName())) { //$NON-NLS-1$
+							return proxy == args[0];
+						}
+						return null;
+					}
+				}));
+	}
+}
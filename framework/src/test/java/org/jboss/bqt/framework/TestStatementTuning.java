@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.jboss.bqt.framework;
+
+import static org.junit.Assert.*;
+
+import java.sql.ResultSet;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * Tests reading and overriding the {@link StatementTuning} settings
+ */
+public class TestStatementTuning {
+
+	//===================================================================
+	//ACTUAL TESTS
+	//===================================================================
+
+	@Test
+	public void testCreate() throws Exception {
+		Properties props = new Properties();
+		props.setProperty(ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.FETCH_SIZE, "500");
+		props.setProperty(ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.FETCH_DIRECTION, "forward");
+		props.setProperty(ConfigPropertyNames.CONNECTION_STRATEGY_PROPS.EXECUTION_PROPERTY_PREFIX + "resultSetCacheMode", "true");
+
+		StatementTuning tuning = StatementTuning.create(props);
+		assertEquals(500, tuning.getFetchSize());
+		assertEquals(ResultSet.FETCH_FORWARD, tuning.getFetchDirection());
+		assertEquals(StatementTuning.NOT_SET, tuning.getMaxRows());
+		assertEquals(StatementTuning.NOT_SET, tuning.getQueryTimeout());
+		assertFalse(tuning.isAdaptiveFetchSize());
+		assertEquals("true", tuning.getExecutionProperties().getProperty("resultSetCacheMode"));
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		StatementTuning scenario = new StatementTuning();
+		scenario.setFetchSize(500);
+		scenario.setQueryTimeout(60);
+		scenario.getExecutionProperties().setProperty("a", "1");
+
+		StatementTuning query = new StatementTuning();
+		query.setFetchSize(2000);
+		query.setAdaptiveFetchSize(true);
+		query.getExecutionProperties().setProperty("b", "2");
+
+		StatementTuning merged = scenario.merge(query);
+		assertEquals(2000, merged.getFetchSize());
+		assertEquals(60, merged.getQueryTimeout());
+		assertTrue(merged.isAdaptiveFetchSize());
+		assertEquals(2, merged.getExecutionProperties().size());
+
+		// the scenario settings are not changed
+		assertEquals(500, scenario.getFetchSize());
+		assertEquals(500, scenario.merge(null).getFetchSize());
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testInvalidFetchDirection() throws Exception {
+		new StatementTuning().setFetchDirection("sideways");
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.jboss.bqt.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the phases of a {@link TestResult} recorded by a {@link TimedResultSet}.
+ */
+public class TestTimedResultSet {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static final SQLException CLOSED = new SQLException("closed"); //$NON-NLS-1$
+
+	/**
+	 * @return ResultSet of <code>rows</code> rows, the first next() waits <code>firstRowMillis</code>, the others
+	 * <code>nextMillis</code>, getInt(int) returns the row number, getString(int) fails
+	 */
+	private static ResultSet rows(final int rows, final long firstRowMillis, final long nextMillis) {
+		return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+				new Class[] { ResultSet.class }, new InvocationHandler() {
+					private int row = 0;
+
+					public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+						if ("next".equals(method.getName())) { //$NON-NLS-1$
+							Thread.sleep(row == 0 ? firstRowMillis : nextMillis);
+							return Boolean.valueOf(++row <= rows);
+						}
+						if ("getInt".equals(method.getName())) { //$NON-NLS-1$
+							return Integer.valueOf(row);
+						}
+						if ("getString".equals(method.getName())) { //$NON-NLS-1$
+							throw CLOSED;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	@Test
+	public void testFetchPhases() throws Exception {
+		TestResult result = new TestResult("qs", "q1"); //$NON-NLS-1$ //$NON-NLS-2$
+		ResultSet rs = TimedResultSet.wrap(rows(3, 30, 5), result);
+
+		int rows = 0;
+		while (rs.next()) {
+			assertEquals(++rows, rs.getInt(1));
+		}
+		assertEquals(3, rows);
+		// the last next() returns no row
+		assertEquals(3, result.getFetchedRows());
+
+		long firstRow = result.getPhaseNanos(TestResult.PHASE.FIRST_ROW);
+		long fetch = result.getPhaseNanos(TestResult.PHASE.FETCH);
+		assertTrue(firstRow >= 30 * MILLIS);
+		// the first row and the three next() after it
+		assertTrue(fetch >= firstRow + 3 * 5 * MILLIS);
+
+		// only the first next() is the first row
+		rs.next();
+		assertEquals(firstRow, result.getPhaseNanos(TestResult.PHASE.FIRST_ROW));
+		assertTrue(result.getPhaseNanos(TestResult.PHASE.FETCH) > fetch);
+		assertEquals(-1, result.getPhaseNanos(TestResult.PHASE.EXECUTE));
+	}
+
+	@Test
+	public void testEmptyResult() throws Exception {
+		TestResult result = new TestResult("qs", "q1"); //$NON-NLS-1$ //$NON-NLS-2$
+		ResultSet rs = TimedResultSet.wrap(rows(0, 0, 0), result);
+
+		assertFalse(rs.next());
+		assertEquals(0, result.getFetchedRows());
+		assertTrue(result.getPhaseNanos(TestResult.PHASE.FIRST_ROW) >= 0);
+		assertEquals(result.getPhaseNanos(TestResult.PHASE.FIRST_ROW), result.getPhaseNanos(TestResult.PHASE.FETCH));
+	}
+
+	@Test
+	public void testExceptionOfResultSet() throws Exception {
+		TestResult result = new TestResult("qs", "q1"); //$NON-NLS-1$ //$NON-NLS-2$
+		ResultSet rs = TimedResultSet.wrap(rows(1, 0, 0), result);
+		try {
+			rs.getString(1);
+			fail();
+		} catch (SQLException e) {
+			assertSame(CLOSED, e);
+		}
+	}
+
+	/**
+	 * The rows fetched while comparing are part of the fetch, not of the compare.
+	 */
+	@Test
+	public void testPhaseWithoutFetch() throws Exception {
+		TestResult result = new TestResult("qs", "q1"); //$NON-NLS-1$ //$NON-NLS-2$
+		ResultSet rs = TimedResultSet.wrap(rows(5, 10, 10), result);
+
+		long begin = result.beginPhase();
+		while (rs.next()) {
+			// compared
+		}
+		result.endPhase(TestResult.PHASE.COMPARE, begin);
+
+		long fetch = result.getPhaseNanos(TestResult.PHASE.FETCH);
+		assertTrue(fetch >= 6 * 10 * MILLIS);
+		assertTrue(result.getPhaseNanos(TestResult.PHASE.COMPARE) >= 0);
+		assertTrue(result.getPhaseNanos(TestResult.PHASE.COMPARE) < fetch / 2);
+
+		// the phases of the statements of a test are summed
+		ResultSet second = TimedResultSet.wrap(rows(2, 10, 0), result);
+		while (second.next()) {
+			// compared
+		}
+		assertEquals(7, result.getFetchedRows());
+		assertTrue(result.getPhaseNanos(TestResult.PHASE.FIRST_ROW) >= 2 * 10 * MILLIS);
+		assertTrue(result.getPhaseNanos(TestResult.PHASE.FETCH) >= fetch + 10 * MILLIS);
+	}
+}
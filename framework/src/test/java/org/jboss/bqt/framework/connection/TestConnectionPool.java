@@ -0,0 +1,144 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+package org.jboss.bqt.framework.connection;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.Properties;
+
+import org.jboss.bqt.core.exception.FrameworkException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests borrowing, validation and eviction of the {@link ConnectionPool}
+ */
+public class TestConnectionPool {
+
+	private StubConnectionFactory factory;
+
+	@Before
+	public void setUp() throws Exception {
+		Properties props = new Properties();
+		props.setProperty(DriverConnection.DS_URL, "jdbc:stub"); //$NON-NLS-1$
+		props.setProperty(DriverConnection.DS_DRIVER, Object.class.getName());
+		factory = new StubConnectionFactory(props);
+	}
+
+	//===================================================================
+	//ACTUAL TESTS
+	//===================================================================
+
+	@Test
+	public void testWarmUpAndReuse() throws Exception {
+		ConnectionPool pool = new ConnectionPool(factory, 2, 2, 0, 100, 1);
+		pool.warmUp();
+		assertEquals(2, factory.created);
+		assertEquals(2, pool.getIdleCount());
+
+		Connection c = pool.borrow();
+		assertEquals(1, pool.getInUseCount());
+		c.close();
+		assertTrue(c.isClosed());
+		assertEquals(0, pool.getInUseCount());
+
+		pool.borrow().close();
+		assertEquals(2, factory.created);
+	}
+
+	@Test
+	public void testBoundedSize() throws Exception {
+		ConnectionPool pool = new ConnectionPool(factory, 1, 0, 0, 50, 1);
+		Connection c = pool.borrow();
+		try {
+			pool.borrow();
+			fail("pool of one connection should time out");
+		} catch (FrameworkException e) {
+			assertEquals(FrameworkException.ErrorCodes.DB_CONNECTION_EXCEPTION, e.getCode());
+		}
+		c.close();
+		pool.borrow().close();
+		assertEquals(1, factory.created);
+	}
+
+	@Test
+	public void testInvalidConnectionIsReplaced() throws Exception {
+		ConnectionPool pool = new ConnectionPool(factory, 1, 1, 0, 100, 1);
+		pool.warmUp();
+		factory.valid = false;
+		pool.borrow().close();
+		assertEquals(2, factory.created);
+		assertEquals(1, factory.closed);
+	}
+
+	@Test
+	public void testIdleEviction() throws Exception {
+		ConnectionPool pool = new ConnectionPool(factory, 3, 1, 1, 100, 1);
+		Connection c1 = pool.borrow();
+		Connection c2 = pool.borrow();
+		Connection c3 = pool.borrow();
+		c1.close();
+		c2.close();
+		c3.close();
+		Thread.sleep(10);
+		pool.evictIdle();
+		// the initial size is kept open
+		assertEquals(1, pool.getIdleCount());
+		assertEquals(2, factory.closed);
+	}
+
+	/**
+	 * Creates connections that only answer isValid, isClosed and close.
+	 */
+	private static class StubConnectionFactory extends DriverConnection {
+		int created = 0;
+		int closed = 0;
+		boolean valid = true;
+
+		StubConnectionFactory(Properties props) {
+			super(props);
+		}
+
+		@Override
+		protected Connection createConnection() throws FrameworkException {
+			created++;
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, new InvocationHandler() {
+						public Object invoke(Object proxy, Method method, Object[] args) {
+							String name = method.getName();
+							if ("isValid".equals(name)) { //$NON-NLS-1$
+								return valid;
+							} else if ("getAutoCommit".equals(name) || "isClosed".equals(name)) { //$NON-NLS-1$ //$NON-NLS-2$
+								return "getAutoCommit".equals(name); //$NON-NLS-1$
+							} else if ("close".equals(name)) { //$NON-NLS-1$
+								closed++;
+							}
+							return null;
+						}
+					});
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.jboss.bqt.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.jboss.bqt.client.TestClient;
+import org.jboss.bqt.core.util.FileUtils;
+import org.jboss.bqt.core.util.ObjectConverterUtil;
+import org.jboss.bqt.core.util.UnitTestUtil;
+import org.jboss.bqt.framework.ConfigPropertyNames;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * End to end throughput benchmark on a generated data set in an embedded H2 database:
+ * wide, decimal and LOB tables of {@link #ROWS} rows (the LOB table has 1 of 100 of them).
+ * The expected results of the queries are generated, then compared, in ordered and unordered
+ * compares, and the queries whose results always differ write their error files.
+ * <br>
+ * The time, heap and garbage collection of each run are written to <code>largedata-report.txt</code>,
+ * in {@link #DIR}.  The data set is kept, a later run with the same number of rows reuses it.
+ * <br>
+ * Not run by default, run with: <code>mvn install -Pintegration -Dtest=TestLargeDataIntegration [-Dbqt.largedata.rows=2000000]</code>
+ */
+@SuppressWarnings("nls")
+public class TestLargeDataIntegration {
+
+	/**
+	 * Number of rows of the wide and decimal tables, default is 1000000.
+	 */
+	public static final String ROWS = "bqt.largedata.rows";
+
+	private static final File DIR = new File("target/largedata").getAbsoluteFile();
+	private static final String QUERY_SET = "large_data_queries";
+
+	private static PrintWriter report;
+
+	@BeforeClass
+	public static void beforeEach() throws Exception {
+		long rows = Long.getLong(ROWS, 1000000);
+		DIR.mkdirs();
+		System.setProperty("largedata.dir", DIR.getPath());
+		System.setProperty("project.data.path", UnitTestUtil.getTestDataPath());
+		System.setProperty("output.dir", new File(DIR, "output").getPath());
+		System.setProperty(ConfigPropertyNames.CONFIG_FILE, UnitTestUtil.getTestDataPath() + File.separator + "largedata_config.properties");
+
+		report = new PrintWriter(new File(DIR, "largedata-report.txt"), "UTF-8");
+		report.println("Large data benchmark, " + rows + " rows, max heap " + mb(Runtime.getRuntime().maxMemory()) + " MB");
+		report.println();
+		report.println(String.format("%-10s %10s %13s %13s %8s %10s", "Phase", "Time(ms)", "PeakHeap(MB)", "HeapAfter(MB)", "GCs", "GCTime(ms)"));
+
+		long begin = System.currentTimeMillis();
+		boolean loaded = loadDataSet(rows);
+		report(loaded ? "load" : "reuse", begin);
+
+		// the expected results are generated with the queries, remove those of a previous run
+		File querySets = new File(DIR, "query_sets");
+		FileUtils.removeDirectoryAndChildren(querySets);
+		File queries = new File(querySets, QUERY_SET + File.separator + "test_queries");
+		queries.mkdirs();
+		FileUtils.copyDirectoryContentsRecursively(new File(UnitTestUtil.getTestDataPath(), "query_sets" + File.separator
+				+ QUERY_SET + File.separator + "test_queries"), queries);
+		FileUtils.removeDirectoryAndChildren(new File(DIR, "output"));
+	}
+
+	@Test
+	public void testGenerateAndCompare() throws Exception {
+		try {
+			run("generate");
+
+			File expected = new File(DIR, "query_sets" + File.separator + QUERY_SET + File.separator + "expected_results");
+			assertEquals("Expected results generated", 7, FileUtils.findAllFilesInDirectory(
+					new File(expected, "large_data").getPath()).length);
+
+			run("compare");
+
+			File errors = new File(DIR, "output" + File.separator + "largedata_scenario" + File.separator + "errors_for_compare");
+			File[] errorFiles = FileUtils.findAllFilesInDirectoryRecursively(errors.getPath());
+			assertTrue("Error files written", errorFiles != null && errorFiles.length > 0);
+			for (File f : errorFiles) {
+				assertTrue("Unexpected error file " + f, f.getName().startsWith("large_data_errors"));
+			}
+		} finally {
+			report.close();
+		}
+	}
+
+	private static void run(String resultMode) {
+		System.setProperty("result.mode", resultMode);
+		resetPeaks();
+		long begin = System.currentTimeMillis();
+		new TestClient().runTest();
+		report(resultMode, begin);
+	}
+
+	/**
+	 * Loads the data set, unless it was loaded with the same number of rows.
+	 * @return <code>true</code> when loaded
+	 */
+	private static boolean loadDataSet(long rows) throws Exception {
+		Class.forName("org.h2.Driver");
+		Connection c = DriverManager.getConnection("jdbc:h2:file:" + DIR.getPath() + "/db", "", "");
+		try {
+			Statement s = c.createStatement();
+			try {
+				ResultSet rs = s.executeQuery("SELECT ROW_COUNT FROM LARGE_DATA_INFO");
+				if (rs.next() && rs.getLong(1) == rows) {
+					return false;
+				}
+			} catch (SQLException e) {
+				// not loaded
+			}
+			String script = ObjectConverterUtil.convertFileToString(new File(UnitTestUtil.getTestDataPath(), "large-data-schema.sql"));
+			script = script.replace("${rows}", String.valueOf(rows)).replace("${lob.rows}", String.valueOf(Math.max(rows / 100, 1)));
+			for (String sql : script.replaceAll("(?m)^--.*$", "").split(";")) {
+				if (sql.trim().length() > 0) {
+					s.execute(sql);
+				}
+			}
+			s.close();
+			return true;
+		} finally {
+			c.close();
+		}
+	}
+
+	private static void resetPeaks() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			pool.resetPeakUsage();
+		}
+	}
+
+	private static void report(String phase, long begin) {
+		long time = System.currentTimeMillis() - begin;
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		long gcs = 0;
+		long gcTime = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcs += gc.getCollectionCount();
+			gcTime += gc.getCollectionTime();
+		}
+		System.gc();
+		long after = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+		String line = String.format("%-10s %10d %13d %13d %8d %10d", phase, time, mb(peak), mb(after), gcs, gcTime);
+		report.println(line);
+		report.flush();
+		System.out.println("Large data benchmark: " + line);
+	}
+
+	private static long mb(long bytes) {
+		return bytes / (1024 * 1024);
+	}
+}
@@ -0,0 +1,82 @@
+-- Data set of the large data benchmark, see TestLargeDataIntegration.
+-- ${rows} is replaced by the number of rows of the wide and decimal tables,
+-- ${lob.rows} by the number of rows of the LOB table.
+
+DROP ALL OBJECTS;
+
+CREATE TABLE WIDE_TABLE
+(
+   ID integer,
+   GROUP_ID integer,
+   CODE char(8),
+   NAME varchar(64),
+   DESCRIPTION varchar(256),
+   CITY varchar(64),
+   STATE varchar(32),
+   STATUS char(10),
+   QUANTITY integer,
+   PRICE decimal(12,2),
+   RATIO double,
+   FLAG boolean,
+   CREATED timestamp,
+   UPDATED timestamp,
+   BIRTH date,
+   CATEGORY varchar(32),
+   SUBCATEGORY varchar(32),
+   SCORE integer,
+   VOLUME bigint,
+   RANK smallint,
+   WEIGHT real,
+   CONSTRAINT WIDE_TABLE_PK PRIMARY KEY(ID)
+);
+
+INSERT INTO WIDE_TABLE
+   SELECT X, MOD(X, 1000), 'C' || MOD(X, 97), 'name_' || X, REPEAT('description ', MOD(X, 20) + 1),
+      'city_' || MOD(X, 500), 'state_' || MOD(X, 50), CASEWHEN(MOD(X, 3) = 0, 'closed', 'open'),
+      MOD(X * 7, 10000), X / 100.0, X / 7.0, MOD(X, 2) = 0,
+      DATEADD('SECOND', X, TIMESTAMP '2010-01-01 00:00:00'), DATEADD('MINUTE', X, TIMESTAMP '2012-01-01 00:00:00'),
+      DATEADD('DAY', MOD(X, 20000), DATE '1950-01-01'), 'category_' || MOD(X, 11), 'subcategory_' || MOD(X, 131),
+      X * 3, X * 1000000, MOD(X, 30000), X / 3.0
+   FROM SYSTEM_RANGE(1, ${rows});
+
+CREATE TABLE DECIMAL_TABLE
+(
+   ID integer,
+   ACCOUNT_ID integer,
+   D01 decimal(38,10),
+   D02 decimal(38,10),
+   D03 decimal(38,10),
+   D04 decimal(38,10),
+   D05 decimal(38,10),
+   D06 decimal(20,4),
+   D07 decimal(20,4),
+   D08 decimal(20,4),
+   D09 decimal(12,2),
+   D10 decimal(12,2),
+   CONSTRAINT DECIMAL_TABLE_PK PRIMARY KEY(ID)
+);
+
+INSERT INTO DECIMAL_TABLE
+   SELECT X, MOD(X, 5000), X / 3.0, X / 7.0, X / 11.0, X * 1.0000000001, 1 / (X + 0.5),
+      X / 13.0, X * 0.0001, MOD(X, 10007) / 17.0, X / 100.0, MOD(X, 1000) / 100.0
+   FROM SYSTEM_RANGE(1, ${rows});
+
+CREATE TABLE LOB_TABLE
+(
+   ID integer,
+   DOC clob,
+   DATA blob,
+   CONSTRAINT LOB_TABLE_PK PRIMARY KEY(ID)
+);
+
+INSERT INTO LOB_TABLE
+   SELECT X, REPEAT('lorem ipsum ' || X || ' ', 100), STRINGTOUTF8(REPEAT('blob' || X, 200))
+   FROM SYSTEM_RANGE(1, ${lob.rows});
+
+-- the number of rows the data set was loaded with, a later run with the same number reuses it
+CREATE TABLE LARGE_DATA_INFO
+(
+   ROW_COUNT bigint
+);
+
+INSERT INTO LARGE_DATA_INFO VALUES (${rows});